@@ -0,0 +1,154 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.MapEntry;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import io.masterkun.ai.proto.ToolProto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The formatter {@link ProtoUtils#formatString} used before {@link ProtoFormatter}, kept as the
+ * baseline of {@link ProtoFormatterBenchmark}.
+ */
+final class LegacyProtoFormatter {
+
+    public static String formatString(MessageOrBuilder message) {
+        StringBuilder builder = new StringBuilder();
+        List<Integer> list = new ArrayList<>();
+
+        Map<Descriptors.FieldDescriptor, Object> fields = message.getAllFields();
+        boolean formatLevel = fields
+                .keySet()
+                .stream()
+                .anyMatch(LegacyProtoFormatter::isFieldComposite);
+        if (!formatLevel && fields.size() == 1) {
+            builder.append(fields.values().iterator().next());
+        } else {
+            formatTo(message, builder, list, formatLevel);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Determines if a field is composite (message type or repeated).
+     *
+     * @param field The field descriptor to check
+     * @return true if the field is a message type or repeated, false otherwise
+     */
+    private static boolean isFieldComposite(Descriptors.FieldDescriptor field) {
+        return field.getType() == Descriptors.FieldDescriptor.Type.MESSAGE || field.isRepeated();
+    }
+
+    private static void formatTo(Object message, StringBuilder builder, List<Integer> level,
+                                 boolean formatLevel) {
+        if (message == null) {
+            builder.append("null");
+        } else if (message instanceof CharSequence) {
+            builder.append('\'').append(message).append('\'');
+        } else if (message instanceof ByteString byteString) {
+            builder.append('\'').append(byteString.toStringUtf8()).append('\'');
+        } else if (message instanceof MessageOrBuilder proto) {
+            level.add(1);
+            boolean first = true;
+            for (Descriptors.FieldDescriptor field : proto.getDescriptorForType().getFields()) {
+                Object value = proto.getField(field);
+                if (field.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                    if (value.equals(field.getDefaultValue())) {
+                        continue;
+                    }
+                } else if (value instanceof List<?> l) {
+                    if (l.isEmpty()) {
+                        continue;
+                    }
+                } else if (value instanceof Map<?, ?> m) {
+                    if (m.isEmpty()) {
+                        continue;
+                    }
+                } else if (value instanceof Message m) {
+                    if (m.equals(m.getDefaultInstanceForType())) {
+                        continue;
+                    }
+                }
+                if (first) {
+                    first = false;
+                }
+                formatLevel(level, builder, formatLevel);
+                String name = field.getOptions().hasExtension(ToolProto.fieldDesc) ?
+                        field.getOptions().getExtension(ToolProto.fieldDesc) :
+                        field.getName();
+                builder.append(name).append(": ");
+                formatTo(value, builder, level, formatLevel);
+                level.set(level.size() - 1, level.get(level.size() - 1) + 1);
+            }
+            level.remove(level.size() - 1);
+        } else if (message instanceof Iterable<?> iterable) {
+            boolean first = true;
+            level.add(1);
+            boolean singleLine = false;
+            for (Object o : iterable) {
+                if (first) {
+                    first = false;
+                    singleLine =
+                            !((o instanceof MapEntry<?, ?> e && e.getValue() instanceof MessageOrBuilder) ||
+                              o instanceof MessageOrBuilder);
+                    if (singleLine) {
+                        builder.append('[');
+                    }
+                } else {
+                    builder.append(", ");
+                }
+                if (o instanceof MapEntry<?, ?> e) {
+                    if (e.getValue() instanceof MessageOrBuilder m) {
+                        formatLevel(level, builder, formatLevel);
+                        builder.append(e.getKey()).append(": ");
+                        formatTo(m, builder, level, formatLevel);
+                    } else {
+                        formatTo(e.getValue(), builder.append(e.getKey()).append(": "), level,
+                                formatLevel);
+                    }
+                } else if (o instanceof MessageOrBuilder m) {
+                    formatLevel(level, builder, formatLevel);
+                    formatTo(m, builder, level, formatLevel);
+                } else {
+                    formatTo(o, builder, level, formatLevel);
+                }
+                level.set(level.size() - 1, level.get(level.size() - 1) + 1);
+            }
+            level.remove(level.size() - 1);
+            if (singleLine) {
+                builder.append(']');
+            }
+        } else if (message instanceof Map<?, ?> map) {
+            boolean first = true;
+            builder.append('{');
+            for (Map.Entry<?, ?> o : map.entrySet()) {
+                if (first) {
+                    first = false;
+                } else {
+                    builder.append(", ");
+                }
+                formatTo(o.getValue(), builder.append(o.getKey()).append(": "), level, formatLevel);
+            }
+            builder.append('}');
+        } else {
+            builder.append(message);
+        }
+    }
+
+    private static void formatLevel(List<Integer> level, StringBuilder builder,
+                                    boolean formatLevel) {
+        builder.append("\n");
+        builder.append("  ".repeat(level.size() - 1));
+        if (formatLevel) {
+            builder.append(level.stream()
+                    .map(Object::toString)
+                    .collect(Collectors.joining(".", "", ". ")));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import io.masterkun.toolcall.proto.ForTestProto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ProtoFormatter} with the previous formatter on a response with many repeated
+ * nested messages, as generated and as dynamic message like the bridge receives them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtoFormatterBenchmark {
+
+    @Param({"10", "1000"})
+    public int elements;
+
+    @Param({"false", "true"})
+    public boolean dynamic;
+
+    private Message message;
+    private ProtoFormatter formatter;
+
+    @Setup
+    public void setUp() throws InvalidProtocolBufferException {
+        ForTestProto.TestReq.Builder builder = ForTestProto.TestReq.newBuilder()
+                .setMessage("benchmark");
+        for (int i = 0; i < elements; i++) {
+            builder.addElems(ForTestProto.Elem1.newBuilder()
+                    .setA1(i)
+                    .setA2(i % 2 == 0)
+                    .setA3(ByteString.copyFromUtf8("element " + i)));
+            builder.addList("item " + i);
+            builder.putMap3("key " + i, ForTestProto.Elem3.newBuilder()
+                    .setC1(i)
+                    .addC6(i / 2.0)
+                    .setC7(ForTestProto.TestEnum.BBB)
+                    .build());
+        }
+        ForTestProto.TestReq req = builder.build();
+        message = dynamic ?
+                DynamicMessage.parseFrom(ForTestProto.TestReq.getDescriptor(), req.toByteString()) :
+                req;
+        formatter = new ProtoFormatter();
+        if (!formatter.format(message).equals(LegacyProtoFormatter.formatString(message))) {
+            throw new IllegalStateException("Formatters disagree");
+        }
+    }
+
+    @Benchmark
+    public String legacy() {
+        return LegacyProtoFormatter.formatString(message);
+    }
+
+    @Benchmark
+    public String formatter() {
+        return formatter.format(message);
+    }
+}
@@ -33,5 +33,14 @@ public interface BridgeTool<TC extends BridgeToolCallback<?>, C extends BridgeTo
         return createToolCallback(toolGroup().toolGroupSet().registration().getChannelHolder());
     }
 
+    /**
+     * Runs the code paths of a call on synthetic data, so the first real call does not pay for
+     * lazy initialization and cold code. Tools without such paths do nothing.
+     *
+     * @param rounds How often the synthetic data is encoded and decoded
+     */
+    default void warmUp(int rounds) {
+    }
+
     BridgeToolGroup<? extends BridgeTool<TC, C>, C> toolGroup();
 }
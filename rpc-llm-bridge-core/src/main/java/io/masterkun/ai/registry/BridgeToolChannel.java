@@ -1,5 +1,7 @@
 package io.masterkun.ai.registry;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interface representing a communication channel in the rpc-llm bridge framework. This interface
  * extends AutoCloseable to ensure proper resource management for channels that may hold
@@ -9,6 +11,16 @@ package io.masterkun.ai.registry;
  * tool invocations across the bridge.
  */
 public interface BridgeToolChannel extends AutoCloseable {
+    /**
+     * Starts connecting if the channel connects lazily, and returns a future completed once the
+     * channel is ready for calls. Channels without a connection state are always ready.
+     *
+     * @return A future completed when the channel is ready, or failed if it cannot get ready
+     */
+    default CompletableFuture<Void> whenReady() {
+        return CompletableFuture.completedFuture(null);
+    }
+
     @Override
     void close();
 }
@@ -1,11 +1,18 @@
 package io.masterkun.ai.registry;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
 import java.util.Map;
 
 /**
  * A holder class for lazily creating and caching communication channels in the rpc-llm bridge framework.
  * This class implements the lazy initialization pattern with double-checked locking to ensure
  * that channels are created only when needed and only once, even in multi-threaded environments.
+ * <p>
+ * A holder with an idle timeout registers with a {@link BridgeToolChannelReaper}, which closes its
+ * channel once it has not been used for that long. The channel is then created again on the
+ * next call of {@link #get()}.
  */
 public class BridgeToolChannelHolder<C extends BridgeToolChannel> implements AutoCloseable {
     /** The factory used to create channel instances */
@@ -17,9 +24,23 @@ public class BridgeToolChannelHolder<C extends BridgeToolChannel> implements Aut
     /** Configuration options for the channel */
     private final Map<String, String> channelOptions;
 
+    /** How long the channel may be unused before it is reaped, or null to keep it */
+    private final Duration idleTimeout;
+
+    /** The reaper this holder is registered with, or null */
+    private final BridgeToolChannelReaper reaper;
+
     /** The lazily initialized channel instance */
     private volatile C channel;
 
+    /** When the channel was last returned by {@link #get()}, in {@link System#nanoTime()} */
+    private volatile long lastUsed = System.nanoTime();
+
+    /** Whether the channel has been reaped since it was last created */
+    private boolean reaped;
+
+    private boolean closed;
+
     /**
      * Creates a new channel holder with the specified factory and connection parameters.
      *
@@ -30,9 +51,36 @@ public class BridgeToolChannelHolder<C extends BridgeToolChannel> implements Aut
     public BridgeToolChannelHolder(BridgeToolChannelFactory<C> factory,
                                    String targetAddress,
                                    Map<String, String> channelOptions) {
+        this(factory, targetAddress, channelOptions, null, null);
+    }
+
+    /**
+     * Creates a new channel holder whose channel is closed by the reaper once it has been idle
+     * for the given timeout.
+     *
+     * @param factory The factory to use for creating channel instances
+     * @param targetAddress The address of the target service or endpoint
+     * @param channelOptions Configuration options for the channel
+     * @param idleTimeout How long the channel may be unused before it is reaped, or null to keep it
+     * @param reaper The reaper to register with, required if an idle timeout is given
+     */
+    public BridgeToolChannelHolder(BridgeToolChannelFactory<C> factory,
+                                   String targetAddress,
+                                   Map<String, String> channelOptions,
+                                   @Nullable Duration idleTimeout,
+                                   @Nullable BridgeToolChannelReaper reaper) {
+        if (idleTimeout != null && (reaper == null || idleTimeout.isNegative())) {
+            throw new IllegalArgumentException("Invalid idle timeout " + idleTimeout +
+                                               " with reaper " + reaper);
+        }
         this.factory = factory;
         this.targetAddress = targetAddress;
         this.channelOptions = channelOptions;
+        this.idleTimeout = idleTimeout;
+        this.reaper = idleTimeout == null ? null : reaper;
+        if (this.reaper != null) {
+            this.reaper.register(this);
+        }
     }
 
     /**
@@ -40,22 +88,89 @@ public class BridgeToolChannelHolder<C extends BridgeToolChannel> implements Aut
      * This method uses double-checked locking to ensure thread safety.
      *
      * @return The channel instance
+     * @throws IllegalStateException if the holder has been closed
      */
     public C get() {
-        if (channel == null) {
-            synchronized (this) {
-                if (channel == null) {
-                    channel = factory.create(targetAddress, channelOptions);
-                }
+        if (idleTimeout != null) {
+            // Marked as used before the channel is read, so the reaper either sees the use when
+            // it checks again after clearing the channel, or this reads the cleared channel
+            lastUsed = System.nanoTime();
+        }
+        C current = channel;
+        if (current == null) {
+            current = create();
+        }
+        return current;
+    }
+
+    private synchronized C create() {
+        C current = channel;
+        if (current == null) {
+            if (closed) {
+                throw new IllegalStateException("Channel holder is closed: " + targetAddress);
+            }
+            long start = System.nanoTime();
+            channel = current = factory.create(targetAddress, channelOptions);
+            if (reaper != null) {
+                reaper.created(current, reaped, start);
             }
+            reaped = false;
         }
-        return channel;
+        return current;
+    }
+
+    /**
+     * Returns whether the holder currently holds a channel, which is not the case before first
+     * use and after the channel has been reaped.
+     *
+     * @return true if the channel is live
+     */
+    public boolean isLive() {
+        return channel != null;
+    }
+
+    /**
+     * Closes the channel if it has not been used for the idle timeout.
+     *
+     * @param now The current time in {@link System#nanoTime()}
+     * @return true if the channel has been closed
+     */
+    boolean reapIfIdle(long now) {
+        C current;
+        synchronized (this) {
+            current = channel;
+            long used = lastUsed;
+            if (current == null || idleTimeout == null || now - used < idleTimeout.toNanos()) {
+                return false;
+            }
+            channel = null;
+            if (lastUsed != used) {
+                // Used while being cleared, so the caller may already hold the channel
+                channel = current;
+                return false;
+            }
+            reaped = true;
+        }
+        current.close();
+        return true;
     }
 
     @Override
     public void close() {
-        if (channel != null) {
-            channel.close();
+        C current;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current = channel;
+            channel = null;
+        }
+        if (reaper != null) {
+            reaper.unregister(this);
+        }
+        if (current != null) {
+            current.close();
         }
     }
 }
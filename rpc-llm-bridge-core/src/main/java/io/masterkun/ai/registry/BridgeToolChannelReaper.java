@@ -0,0 +1,183 @@
+package io.masterkun.ai.registry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closes the channels of registered {@link BridgeToolChannelHolder}s that have been idle for their
+ * idle timeout, bounding the connections, file descriptors and keepalive timers of a bridge with
+ * many rarely called registrations. A reaped channel is created again by the next call.
+ * <p>
+ * The reaper also keeps the counters of its holders: how many channels are live and have been
+ * reaped, and how long it took a reaped channel to get ready again, see {@link #stats()}.
+ * <p>
+ * This class is thread-safe.
+ */
+public class BridgeToolChannelReaper implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(BridgeToolChannelReaper.class);
+    private static final Duration GLOBAL_INTERVAL = Duration.ofSeconds(10);
+    private static volatile BridgeToolChannelReaper global;
+
+    private final Set<BridgeToolChannelHolder<?>> holders = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder reaped = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder readyReconnects = new LongAdder();
+    private final LongAdder reconnectNanos = new LongAdder();
+    private final AtomicLong maxReconnectNanos = new AtomicLong();
+    private final LongAdder failedReconnects = new LongAdder();
+
+    /**
+     * Creates a reaper that only reaps when {@link #reap()} is called.
+     */
+    public BridgeToolChannelReaper() {
+        this.scheduler = null;
+    }
+
+    /**
+     * Creates a reaper checking its holders periodically on a daemon thread.
+     *
+     * @param interval The time between two checks, which is the precision of the idle timeouts
+     */
+    public BridgeToolChannelReaper(Duration interval) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bridge-tool-channel-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(interval.toMillis(), 1);
+        scheduler.scheduleWithFixedDelay(this::reapQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the reaper shared by all registrations of the process, which checks its holders
+     * every 10 seconds.
+     *
+     * @return The global reaper
+     */
+    public static BridgeToolChannelReaper global() {
+        BridgeToolChannelReaper reaper = global;
+        if (reaper == null) {
+            synchronized (BridgeToolChannelReaper.class) {
+                reaper = global;
+                if (reaper == null) {
+                    global = reaper = new BridgeToolChannelReaper(GLOBAL_INTERVAL);
+                }
+            }
+        }
+        return reaper;
+    }
+
+    void register(BridgeToolChannelHolder<?> holder) {
+        holders.add(holder);
+    }
+
+    void unregister(BridgeToolChannelHolder<?> holder) {
+        holders.remove(holder);
+    }
+
+    /**
+     * Records the creation of a channel, and the time a reaped channel takes to get ready again.
+     */
+    void created(BridgeToolChannel channel, boolean reconnect, long start) {
+        if (!reconnect) {
+            return;
+        }
+        reconnects.increment();
+        channel.whenReady().whenComplete((v, e) -> {
+            if (e != null) {
+                failedReconnects.increment();
+                return;
+            }
+            long nanos = System.nanoTime() - start;
+            reconnectNanos.add(nanos);
+            readyReconnects.increment();
+            maxReconnectNanos.accumulateAndGet(nanos, Math::max);
+        });
+    }
+
+    /**
+     * Closes the channels that have been idle for the idle timeout of their holder.
+     *
+     * @return The number of closed channels
+     */
+    public int reap() {
+        long now = System.nanoTime();
+        int count = 0;
+        for (BridgeToolChannelHolder<?> holder : holders) {
+            if (holder.reapIfIdle(now)) {
+                count++;
+            }
+        }
+        reaped.add(count);
+        return count;
+    }
+
+    private void reapQuietly() {
+        try {
+            int count = reap();
+            if (count > 0) {
+                LOG.debug("Reaped {} idle channels", count);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to reap idle channels", e);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the channel counters of the registered holders.
+     *
+     * @return The reaper statistics
+     */
+    public Stats stats() {
+        int live = 0;
+        int idle = 0;
+        for (BridgeToolChannelHolder<?> holder : holders) {
+            if (holder.isLive()) {
+                live++;
+            } else {
+                idle++;
+            }
+        }
+        long ready = readyReconnects.sum();
+        long total = reconnectNanos.sum();
+        return new Stats(live, idle, reaped.sum(), reconnects.sum(), failedReconnects.sum(),
+                Duration.ofNanos(ready > 0 ? total / ready : 0),
+                Duration.ofNanos(maxReconnectNanos.get()));
+    }
+
+    /**
+     * Stops the periodic checks. Channels already reaped stay closed until they are used again.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Channel counters of the holders of a reaper.
+     *
+     * @param live                 Holders with an open channel
+     * @param idle                 Holders without a channel, never used or reaped
+     * @param reaped               Channels closed because they were idle
+     * @param reconnects           Channels created again after being reaped
+     * @param failedReconnects     Recreated channels that did not get ready
+     * @param meanReconnectLatency The mean time from recreating a channel until it was ready,
+     *                             of the reconnects that completed
+     * @param maxReconnectLatency  The longest time from recreating a channel until it was ready
+     */
+    public record Stats(int live, int idle, long reaped, long reconnects, long failedReconnects,
+                        Duration meanReconnectLatency, Duration maxReconnectLatency) {
+    }
+}
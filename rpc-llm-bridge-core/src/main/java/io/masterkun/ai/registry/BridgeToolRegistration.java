@@ -1,7 +1,12 @@
 package io.masterkun.ai.registry;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Interface representing a registration of a tool group set in the rpc-llm bridge framework. A
@@ -59,6 +64,57 @@ public interface BridgeToolRegistration<S extends BridgeToolGroupSet<?, C, T>,
         groupSet().reloadByAutoDiscovery(getChannelHolder());
     }
 
+    /**
+     * Warms up this registration before it takes calls. The channel starts connecting first, the
+     * tools are warmed up meanwhile, see {@link BridgeTool#warmUp(int)}, and then the channel is
+     * given the rest of the timeout to get ready.
+     *
+     * @param timeout The maximum time to wait for the channel
+     * @param rounds  How often each tool encodes and decodes its synthetic data
+     * @return true if the channel is ready, false if it did not get ready in time
+     */
+    default boolean warmUp(Duration timeout, int rounds) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        CompletableFuture<Void> ready = getChannelHolder().get().whenReady();
+        for (var group : groupSet().getGroups()) {
+            for (T tool : group.tools()) {
+                tool.warmUp(rounds);
+            }
+        }
+        try {
+            ready.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of calls through this registration that have not completed yet.
+     * Registrations not tracking their calls return 0.
+     *
+     * @return The number of in-flight calls
+     */
+    default int inFlightCalls() {
+        return 0;
+    }
+
+    /**
+     * Closes this registration once its in-flight calls have completed, waiting at most for the
+     * timeout, and cancels the calls still running then. Registrations not tracking their calls
+     * close at once.
+     *
+     * @param timeout The maximum time to wait for the in-flight calls
+     * @return The number of calls cancelled because they did not complete in time
+     */
+    default int drainAndClose(Duration timeout) {
+        close();
+        return 0;
+    }
+
     default void close() {
         getChannelHolder().close();
     }
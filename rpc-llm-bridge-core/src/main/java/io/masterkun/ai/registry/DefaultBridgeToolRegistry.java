@@ -1,10 +1,13 @@
 package io.masterkun.ai.registry;
 
 import io.masterkun.ai.tool.BridgeToolCallback;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Default implementation of BridgeToolRegistry that uses a BridgeToolRegistrationStore for storage.
@@ -15,32 +18,79 @@ public class DefaultBridgeToolRegistry implements BridgeToolRegistry {
     /** The store used to manage registrations */
     private final BridgeToolRegistrationStore store;
 
+    /** The maximum time to wait for the channel of a new registration, or null to not warm up */
+    private final Duration warmUpTimeout;
+
+    /** How often the tools of a new registration encode and decode synthetic data */
+    private final int warmUpRounds;
+
     /**
      * Creates a new registry with the specified registration store.
      */
     public DefaultBridgeToolRegistry(BridgeToolRegistrationStore store) {
+        this(store, null, 0);
+    }
+
+    /**
+     * Creates a new registry warming up registrations before they are added to the store, see
+     * {@link BridgeToolRegistration#warmUp(Duration, int)}.
+     *
+     * @param store         The store used to manage registrations
+     * @param warmUpTimeout The maximum time to wait for the channel of a registration, or null
+     *                      to not warm up
+     * @param warmUpRounds  How often the tools of a registration encode and decode synthetic data
+     */
+    public DefaultBridgeToolRegistry(BridgeToolRegistrationStore store,
+                                     @Nullable Duration warmUpTimeout, int warmUpRounds) {
         this.store = store;
+        this.warmUpTimeout = warmUpTimeout;
+        this.warmUpRounds = warmUpRounds;
     }
 
     /**
-     * Registers a tool registration by adding it to the store.
+     * Registers a tool registration by adding it to the store, after warming it up if enabled.
      */
     @Override
     public void register(BridgeToolRegistration<?,?,?> registration) {
+        warmUp(registration);
         store.add(registration);
         LOG.info("Register tools: {}", registration);
     }
 
+    /**
+     * Warms up a registration if enabled. A registration whose channel does not get ready in
+     * time, or whose warm-up fails, is still registered, as calls may succeed later.
+     */
+    private void warmUp(BridgeToolRegistration<?,?,?> registration) {
+        if (warmUpTimeout == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            boolean ready = registration.warmUp(warmUpTimeout, warmUpRounds);
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (ready) {
+                LOG.info("Warmed up {} in {} ms", registration.name(), millis);
+            } else {
+                LOG.warn("Channel of {} not ready after {} ms", registration.name(), millis);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to warm up {}", registration.name(), e);
+        }
+    }
+
     @Override
     public void registerByAutoDiscovery(BridgeToolRegistration<?, ?, ?> registration) {
 
     }
 
     /**
-     * Updates an existing registration in the store.
+     * Updates an existing registration in the store, after warming up the new registration if
+     * enabled.
      */
     @Override
     public void updateRegistration(BridgeToolRegistration<?,?,?> registration) {
+        warmUp(registration);
         store.update(registration);
     }
 
@@ -1,23 +1,78 @@
 package io.masterkun.ai.registry;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 /**
  * In-memory implementation of BridgeToolRegistrationStore that stores registrations in a
  * ConcurrentHashMap.
+ * <p>
+ * A replaced or removed registration is not closed in place: the new registration takes the
+ * calls at once, while the old one drains its in-flight calls on a background thread, up to the
+ * drain timeout, before it is closed, see {@link BridgeToolRegistration#drainAndClose(Duration)}.
+ * Reloading the tools of a backend thus neither fails the calls already running nor blocks the
+ * other registrations. The durations of the drains and the calls cancelled because they did not
+ * complete in time are counted, see {@link #stats()}.
  */
 public class MemoryBridgeToolRegistrationStore implements BridgeToolRegistrationStore {
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryBridgeToolRegistrationStore.class);
+    private static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
     /**
      * Map storing registrations by name
      */
     private final Map<String, BridgeToolRegistration<?, ?, ?>> groupSetMap =
             new ConcurrentHashMap<>();
 
+    /** The maximum time a replaced registration waits for its in-flight calls */
+    private final Duration drainTimeout;
+
+    /** Runs the drains of replaced registrations, off the caller and the map locks */
+    private final ExecutorService drainExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "bridge-tool-registration-drain");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger draining = new AtomicInteger();
+    private final LongAdder drained = new LongAdder();
+    private final LongAdder abandonedCalls = new LongAdder();
+    private final LongAdder drainNanos = new LongAdder();
+    private final AtomicLong maxDrainNanos = new AtomicLong();
+
+    /**
+     * Creates a store giving replaced registrations 30 seconds to complete their calls.
+     */
+    public MemoryBridgeToolRegistrationStore() {
+        this(DEFAULT_DRAIN_TIMEOUT);
+    }
+
+    /**
+     * Creates a store giving replaced registrations the given time to complete their calls.
+     *
+     * @param drainTimeout The maximum time a replaced or removed registration waits for its
+     *                     in-flight calls before they are cancelled
+     */
+    public MemoryBridgeToolRegistrationStore(Duration drainTimeout) {
+        if (drainTimeout.isNegative()) {
+            throw new IllegalArgumentException("Invalid drain timeout: " + drainTimeout);
+        }
+        this.drainTimeout = drainTimeout;
+    }
+
     /**
      * Adds a registration to the store, throwing an exception if it already exists.
      */
@@ -38,10 +93,12 @@ public class MemoryBridgeToolRegistrationStore implements BridgeToolRegistration
     }
 
     /**
-     * Updates a registration using a function that transforms the existing registration.
+     * Updates a registration using a function that transforms the existing registration. The
+     * replaced registration is drained and closed in the background.
      */
     @Override
     public void update(String name, Function<BridgeToolRegistration<?, ?, ?>, BridgeToolRegistration<?, ?, ?>> updater) {
+        BridgeToolRegistration<?, ?, ?>[] replaced = new BridgeToolRegistration<?, ?, ?>[1];
         groupSetMap.compute(name, (n, r) -> {
             if (r == null) {
                 throw new IllegalArgumentException("Registration does not exist: " + name);
@@ -50,24 +107,69 @@ public class MemoryBridgeToolRegistrationStore implements BridgeToolRegistration
             if (newed == null) {
                 throw new IllegalArgumentException("Registration cannot be null: " + name);
             }
-            if (newed != r) {
-                r.close();
-            }
+            replaced[0] = newed != r ? r : null;
             return newed;
         });
+        if (replaced[0] != null) {
+            retire(replaced[0]);
+        }
     }
 
     /**
-     * Removes a registration from the store and closes it.
+     * Removes a registration from the store, and drains and closes it in the background.
      */
     @Override
     public void remove(String name) {
         BridgeToolRegistration<?,?,?> remove = groupSetMap.remove(name);
         if (remove != null) {
-            remove.close();
+            retire(remove);
+        }
+    }
+
+    private void retire(BridgeToolRegistration<?, ?, ?> registration) {
+        draining.incrementAndGet();
+        try {
+            drainExecutor.execute(() -> drain(registration));
+        } catch (RuntimeException e) {
+            draining.decrementAndGet();
+            LOG.warn("Failed to schedule the drain of {}, closing it now", registration.name(), e);
+            registration.close();
+        }
+    }
+
+    private void drain(BridgeToolRegistration<?, ?, ?> registration) {
+        long start = System.nanoTime();
+        try {
+            int abandoned = registration.drainAndClose(drainTimeout);
+            if (abandoned > 0) {
+                abandonedCalls.add(abandoned);
+                LOG.warn("Cancelled {} calls of {} still running after {}", abandoned,
+                        registration.name(), drainTimeout);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to drain {}", registration.name(), e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            drainNanos.add(nanos);
+            maxDrainNanos.accumulateAndGet(nanos, Math::max);
+            drained.increment();
+            draining.decrementAndGet();
         }
     }
 
+    /**
+     * Returns a snapshot of the drain counters of the registrations replaced or removed from this
+     * store.
+     *
+     * @return The drain statistics
+     */
+    public Stats stats() {
+        long count = drained.sum();
+        return new Stats(draining.get(), count, abandonedCalls.sum(),
+                Duration.ofNanos(count > 0 ? drainNanos.sum() / count : 0),
+                Duration.ofNanos(maxDrainNanos.get()));
+    }
+
     /**
      * Retrieves a registration by name, throwing an exception if it doesn't exist.
      */
@@ -107,4 +209,18 @@ public class MemoryBridgeToolRegistrationStore implements BridgeToolRegistration
         }
         return tStream.toList();
     }
+
+    /**
+     * Drain counters of the replaced and removed registrations of a store.
+     *
+     * @param draining          Registrations still waiting for their in-flight calls
+     * @param drained           Registrations closed after draining
+     * @param abandonedCalls    Calls cancelled because they did not complete within the drain
+     *                          timeout
+     * @param meanDrainDuration The mean time from replacing a registration until it was closed
+     * @param maxDrainDuration  The longest time from replacing a registration until it was closed
+     */
+    public record Stats(int draining, long drained, long abandonedCalls,
+                        Duration meanDrainDuration, Duration maxDrainDuration) {
+    }
 }
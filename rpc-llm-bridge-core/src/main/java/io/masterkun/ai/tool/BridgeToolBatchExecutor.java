@@ -0,0 +1,54 @@
+package io.masterkun.ai.tool;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Executes the tool calls of one LLM turn concurrently. LLMs often request several tools in a
+ * single message, and running them together makes the turn take as long as the slowest call
+ * instead of the sum of all calls.
+ * <p>
+ * Results are returned in the order of the calls. A failing call never fails the batch, its error
+ * is reported in the corresponding {@link BridgeToolCallResult}.
+ */
+public interface BridgeToolBatchExecutor {
+
+    /**
+     * Starts all calls and returns a stage that completes when every call has completed, failed or
+     * timed out. Cancelling the returned stage cancels all calls that are still running.
+     *
+     * @param calls   The tool calls to execute
+     * @param timeout The deadline shared by the whole batch. Calls still running when it expires
+     *                fail with a {@link java.util.concurrent.TimeoutException}
+     * @return A stage that completes with the results, in the order of the calls
+     */
+    CompletionStage<List<BridgeToolCallResult<?>>> executeAsync(List<? extends BridgeToolCall<?>> calls,
+                                                                Duration timeout);
+
+    /**
+     * Executes all calls and waits for their results.
+     *
+     * @param calls   The tool calls to execute
+     * @param timeout The deadline shared by the whole batch
+     * @return The results, in the order of the calls
+     * @throws CancellationException if the current thread is interrupted while waiting
+     */
+    default List<BridgeToolCallResult<?>> execute(List<? extends BridgeToolCall<?>> calls,
+                                                  Duration timeout) {
+        CompletableFuture<List<BridgeToolCallResult<?>>> future =
+                executeAsync(calls, timeout).toCompletableFuture();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while executing tool calls");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch execution failed", e.getCause());
+        }
+    }
+}
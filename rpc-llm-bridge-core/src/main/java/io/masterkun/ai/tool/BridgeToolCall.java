@@ -0,0 +1,14 @@
+package io.masterkun.ai.tool;
+
+/**
+ * A single tool invocation of a batch, as requested by the LLM.
+ *
+ * @param callback    The tool to call
+ * @param toolInput   The input string for the tool operation
+ * @param toolContext The tool context
+ * @param <T>         The type of result returned by the tool
+ */
+public record BridgeToolCall<T>(BridgeToolCallback<T> callback,
+                                String toolInput,
+                                BridgeToolContext toolContext) {
+}
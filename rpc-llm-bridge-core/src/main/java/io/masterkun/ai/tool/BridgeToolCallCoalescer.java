@@ -0,0 +1,188 @@
+package io.masterkun.ai.tool;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent tool calls into a single in-flight call. The first caller of a key
+ * starts the call, and callers of the same key that arrive before it completes share its outcome.
+ * Once the call completes, the next caller starts a new one, so results are never reused after
+ * completion.
+ * <p>
+ * Every caller gets its own future. A caller that cancels or abandons its future does not affect
+ * the others, and the shared call is only cancelled once all of its callers have given up.
+ * <p>
+ * Keys are expected to be canonical and to cover everything that is sent with the call, e.g. the
+ * tool name, the tool input and the forwarded tool context. Deadlines are not part of the key, but
+ * a caller only joins a call whose deadline is not earlier than its own, so no caller gets less
+ * time than it asked for. A caller with a later deadline starts a new call, which the following
+ * callers of the key join. This class is thread-safe.
+ *
+ * @param <V> The type of call results
+ */
+public class BridgeToolCallCoalescer<V> {
+    private final Map<String, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Executes a call, or joins the in-flight call of the same key.
+     *
+     * @param key  The canonical key of the call
+     * @param call Starts the call if there is no in-flight call of the key
+     * @return A future of this caller that completes with the outcome of the shared call
+     */
+    public CompletableFuture<V> execute(String key, Supplier<? extends CompletableFuture<V>> call) {
+        return execute(key, null, call);
+    }
+
+    /**
+     * Executes a call, or joins the in-flight call of the same key if its deadline is not earlier
+     * than the given one.
+     *
+     * @param key      The canonical key of the call
+     * @param deadline The deadline of the caller, or null if it has none
+     * @param call     Starts the call with the deadline of the caller if it cannot join one
+     * @return A future of this caller that completes with the outcome of the shared call
+     */
+    public CompletableFuture<V> execute(String key, @Nullable Instant deadline,
+                                        Supplier<? extends CompletableFuture<V>> call) {
+        while (true) {
+            Flight<V> flight = flights.get(key);
+            if (flight == null || flight.endsBefore(deadline)) {
+                Flight<V> created = new Flight<>(deadline);
+                boolean started = flight == null ? flights.putIfAbsent(key, created) == null :
+                        flights.replace(key, flight, created);
+                if (started) {
+                    calls.increment();
+                    CompletableFuture<V> caller = created.join();
+                    created.start(key, call, flights);
+                    return caller;
+                }
+                continue;
+            }
+            CompletableFuture<V> caller = flight.join();
+            if (caller != null) {
+                coalesced.increment();
+                return caller;
+            }
+            // The flight completed or was abandoned while joining, start over
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Returns the number of calls in flight.
+     *
+     * @return The number of distinct keys currently executing
+     */
+    public int inFlight() {
+        return flights.size();
+    }
+
+    /**
+     * Returns a snapshot of the coalescer counters.
+     *
+     * @return The coalescer statistics
+     */
+    public Stats stats() {
+        return new Stats(calls.sum(), coalesced.sum());
+    }
+
+    /**
+     * Coalescer counters since the coalescer was created.
+     *
+     * @param calls     Calls that were actually started
+     * @param coalesced Calls that joined an in-flight call instead of starting one
+     */
+    public record Stats(long calls, long coalesced) {
+    }
+
+    /**
+     * A shared in-flight call and the number of callers still waiting for it.
+     */
+    private static class Flight<V> {
+        private final CompletableFuture<V> source = new CompletableFuture<>();
+        private final Instant deadline;
+        private int waiters;
+        private boolean closed;
+
+        Flight(@Nullable Instant deadline) {
+            this.deadline = deadline;
+        }
+
+        boolean endsBefore(@Nullable Instant other) {
+            return deadline != null && (other == null || deadline.isBefore(other));
+        }
+
+        CompletableFuture<V> join() {
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                waiters++;
+            }
+            CompletableFuture<V> caller = new CompletableFuture<>();
+            source.whenComplete((r, e) -> {
+                if (e != null) {
+                    caller.completeExceptionally(e);
+                } else {
+                    caller.complete(r);
+                }
+            });
+            caller.whenComplete((r, e) -> {
+                if (!source.isDone()) {
+                    // The caller gave up before the shared call completed
+                    leave();
+                }
+            });
+            return caller;
+        }
+
+        void start(String key, Supplier<? extends CompletableFuture<V>> call,
+                   Map<String, Flight<V>> flights) {
+            source.whenComplete((r, e) -> {
+                synchronized (this) {
+                    closed = true;
+                }
+                flights.remove(key, this);
+            });
+            CompletableFuture<V> future;
+            try {
+                future = call.get();
+            } catch (Throwable e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<V> running = future;
+            running.whenComplete((r, e) -> {
+                if (e != null) {
+                    source.completeExceptionally(e);
+                } else {
+                    source.complete(r);
+                }
+            });
+            source.whenComplete((r, e) -> {
+                if (e instanceof CancellationException) {
+                    running.cancel(true);
+                }
+            });
+        }
+
+        private void leave() {
+            synchronized (this) {
+                if (--waiters > 0 || closed) {
+                    return;
+                }
+                closed = true;
+            }
+            source.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.masterkun.ai.tool;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The outcome of a single tool invocation of a batch. Exactly one of {@code result} and
+ * {@code error} is meaningful, depending on {@link #isSuccess()}.
+ *
+ * @param call   The tool invocation
+ * @param result The result of the tool operation if it succeeded
+ * @param error  The failure of the tool operation, or null if it succeeded
+ * @param <T>    The type of result returned by the tool
+ */
+public record BridgeToolCallResult<T>(BridgeToolCall<T> call,
+                                      @Nullable T result,
+                                      @Nullable Throwable error) {
+
+    /**
+     * Returns whether the tool operation completed successfully.
+     *
+     * @return true if the tool operation succeeded
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
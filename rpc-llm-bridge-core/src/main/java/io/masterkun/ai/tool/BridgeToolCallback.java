@@ -1,5 +1,8 @@
 package io.masterkun.ai.tool;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * Interface for tool callbacks in the rpc-llm bridge framework. This interface defines the contract for
  * components that can execute tool operations and return results of a specific type.
@@ -36,4 +39,22 @@ public interface BridgeToolCallback<T> {
      * @return The result of the tool operation
      */
     T call(String toolInput, BridgeToolContext toolContext);
+
+    /**
+     * Executes the tool operation asynchronously. Implementations backed by a non-blocking
+     * transport should override this method so that no thread is held while waiting for the
+     * result. The default implementation runs {@link #call(String, BridgeToolContext)} on the
+     * calling thread and returns an already completed stage.
+     *
+     * @param toolInput   The input string for the tool operation
+     * @param toolContext The tool context
+     * @return A stage that completes with the result of the tool operation
+     */
+    default CompletionStage<T> callAsync(String toolInput, BridgeToolContext toolContext) {
+        try {
+            return CompletableFuture.completedFuture(call(toolInput, toolContext));
+        } catch (Throwable e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package io.masterkun.ai.tool;
 
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -7,6 +8,13 @@ import java.util.Map;
 public class BridgeToolContext {
     public static BridgeToolContext EMPTY = new BridgeToolContext(Collections.emptyMap());
     public static final String TOOL_CALL_HISTORY = "TOOL_CALL_HISTORY";
+    /**
+     * Key of the absolute deadline of the tool call, as an {@link Instant}. A deadline shortens
+     * the timeout configured for the tool, and a call whose deadline already passed is not
+     * started. It is not forwarded as part of the context, because the transport propagates
+     * deadlines itself.
+     */
+    public static final String TOOL_CALL_DEADLINE = "TOOL_CALL_DEADLINE";
 
     private final Map<String, Object> context;
 
@@ -23,6 +31,22 @@ public class BridgeToolContext {
         return (List<Map<String, Object>>) context.get(TOOL_CALL_HISTORY);
     }
 
+    /**
+     * Returns the deadline of the tool call, if the caller has a limited time budget.
+     *
+     * @return The deadline, or null if there is none
+     */
+    public Instant getDeadline() {
+        Object deadline = context.get(TOOL_CALL_DEADLINE);
+        if (deadline instanceof Instant instant) {
+            return instant;
+        }
+        if (deadline instanceof Number epochMillis) {
+            return Instant.ofEpochMilli(epochMillis.longValue());
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return context.toString();
@@ -0,0 +1,158 @@
+package io.masterkun.ai.tool;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded cache for the results of idempotent tools. Entries expire after their time-to-live,
+ * and the least recently used entries are evicted once the number of entries or their total
+ * weight exceeds the configured bounds. Hits, misses, evictions and expirations are counted.
+ * <p>
+ * Keys are expected to be canonical, i.e. equal inputs of the same tool must produce equal keys.
+ * This class is thread-safe.
+ *
+ * @param <V> The type of cached results
+ */
+public class BridgeToolResultCache<V> {
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToIntFunction<? super V> weigher;
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private long weight;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries The maximum number of entries
+     * @param maxWeight  The maximum total weight of all entries
+     * @param weigher    Computes the weight of a result, e.g. its serialized size
+     * @throws IllegalArgumentException if a bound is not positive
+     */
+    public BridgeToolResultCache(int maxEntries, long maxWeight,
+                                 ToIntFunction<? super V> weigher) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the cached result of a key.
+     *
+     * @param key The canonical key
+     * @return The cached result, or null if there is none or it has expired
+     */
+    @Nullable
+    public V get(String key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return entry.value;
+                }
+                entries.remove(key);
+                weight -= entry.weight;
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches a result. Results heavier than the whole cache are not cached.
+     *
+     * @param key   The canonical key
+     * @param value The result
+     * @param ttl   How long the result stays valid
+     */
+    public void put(String key, V value, Duration ttl) {
+        int entryWeight = key.length() + weigher.applyAsInt(value);
+        if (entryWeight > maxWeight || ttl.isNegative() || ttl.isZero()) {
+            return;
+        }
+        Entry<V> entry = new Entry<>(value, entryWeight, System.nanoTime() + ttl.toNanos());
+        synchronized (entries) {
+            Entry<V> old = entries.put(key, entry);
+            if (old != null) {
+                weight -= old.weight;
+            }
+            weight += entryWeight;
+            Iterator<Map.Entry<String, Entry<V>>> it = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+                Entry<V> eldest = it.next().getValue();
+                it.remove();
+                weight -= eldest.weight;
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Returns the number of cached entries, including expired ones not removed yet.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the total weight of the cached entries.
+     *
+     * @return The total weight
+     */
+    public long weight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache counters.
+     *
+     * @return The cache statistics
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    /**
+     * Cache counters since the cache was created.
+     *
+     * @param hits        Lookups that returned a cached result
+     * @param misses      Lookups that found no valid result
+     * @param evictions   Entries removed to stay within the bounds
+     * @param expirations Entries removed because their time-to-live passed
+     */
+    public record Stats(long hits, long misses, long evictions, long expirations) {
+    }
+
+    private record Entry<V>(V value, int weight, long expiresAt) {
+    }
+}
@@ -0,0 +1,104 @@
+package io.masterkun.ai.tool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+/**
+ * A callback for tools that produce their result incrementally, e.g. search or log-tail services.
+ * Partial results are published as they arrive through {@link #callStream}, and the plain
+ * {@code call} methods aggregate all partial results into a list, so streaming tools can be used
+ * wherever a {@link BridgeToolCallback} is expected.
+ * <p>
+ * Implementations are expected to bound the stream, e.g. by an item or byte budget, and to stop
+ * the producer once the budget is used up or the subscriber cancels.
+ *
+ * @param <T> The type of partial results returned by the tool
+ */
+public interface BridgeToolStreamCallback<T> extends BridgeToolCallback<List<T>> {
+
+    /**
+     * Executes the tool operation and publishes its partial results. Every subscription executes
+     * the tool once, and the stream only advances as far as the subscriber requests.
+     *
+     * @param toolInput   The input string for the tool operation
+     * @param toolContext The tool context
+     * @return A publisher of the partial results
+     */
+    Flow.Publisher<T> callStream(String toolInput, BridgeToolContext toolContext);
+
+    /**
+     * Executes the tool operation and collects all partial results. Completing the returned stage
+     * early, e.g. by cancelling it, cancels the stream.
+     *
+     * @param toolInput   The input string for the tool operation
+     * @param toolContext The tool context
+     * @return A stage that completes with all partial results in order
+     */
+    @Override
+    default CompletionStage<List<T>> callAsync(String toolInput, BridgeToolContext toolContext) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+        callStream(toolInput, toolContext).subscribe(new Flow.Subscriber<>() {
+            private final List<T> items = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                future.whenComplete((r, e) -> {
+                    if (e != null) {
+                        subscription.cancel();
+                    }
+                });
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T item) {
+                items.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                future.complete(items);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Executes the tool operation and waits for all partial results.
+     *
+     * @param toolInput   The input string for the tool operation
+     * @param toolContext The tool context
+     * @return All partial results in order
+     */
+    @Override
+    default List<T> call(String toolInput, BridgeToolContext toolContext) {
+        CompletableFuture<List<T>> future = callAsync(toolInput, toolContext).toCompletableFuture();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Thread interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.masterkun.ai.tool;
+
+/**
+ * Thrown when a tool call does not complete before its deadline, either because the deadline of
+ * the tool itself expired or because the remaining budget of the caller ran out. Callers can
+ * treat it as final for the current turn instead of retrying.
+ */
+public class BridgeToolTimeoutException extends RuntimeException {
+
+    public BridgeToolTimeoutException(String message) {
+        super(message);
+    }
+
+    public BridgeToolTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,234 @@
+package io.masterkun.ai.tool;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Default implementation of {@link BridgeToolBatchExecutor}. Every call is dispatched through
+ * {@link BridgeToolCallback#callAsync(String, BridgeToolContext)} on an executor, so callbacks that
+ * only implement the blocking {@code call} still run in parallel.
+ * <p>
+ * Concurrency is bounded per key, where the key of a call is derived from its callback, e.g. the
+ * registration or channel it belongs to. Calls over the limit wait in a queue without holding a
+ * thread, and are failed without being started if the batch deadline expires while they wait.
+ */
+public class DefaultBridgeToolBatchExecutor implements BridgeToolBatchExecutor {
+    private static final Object GLOBAL_KEY = new Object();
+
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final Function<BridgeToolCallback<?>, Object> keyFunction;
+    private final Map<Object, Limiter> limiters = new ConcurrentHashMap<>();
+    // The keys released by tasks run inline by a release on this thread, see release(Object)
+    private final ThreadLocal<ArrayDeque<Object>> releasing = new ThreadLocal<>();
+
+    /**
+     * Creates an executor with a single concurrency limit shared by all calls.
+     *
+     * @param executor       The executor the calls are dispatched on
+     * @param maxConcurrency The maximum number of calls running at the same time
+     */
+    public DefaultBridgeToolBatchExecutor(Executor executor, int maxConcurrency) {
+        this(executor, maxConcurrency, callback -> GLOBAL_KEY);
+    }
+
+    /**
+     * Creates an executor with a concurrency limit per key.
+     *
+     * @param executor       The executor the calls are dispatched on
+     * @param maxConcurrency The maximum number of calls with the same key running at the same time
+     * @param keyFunction    Derives the concurrency key of a call from its callback
+     * @throws IllegalArgumentException if maxConcurrency is not positive
+     */
+    public DefaultBridgeToolBatchExecutor(Executor executor, int maxConcurrency,
+                                          Function<BridgeToolCallback<?>, Object> keyFunction) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.maxConcurrency = maxConcurrency;
+        this.keyFunction = Objects.requireNonNull(keyFunction);
+    }
+
+    @Override
+    public CompletionStage<List<BridgeToolCallResult<?>>> executeAsync(List<? extends BridgeToolCall<?>> calls,
+                                                                       Duration timeout) {
+        long timeoutNanos = timeout.toNanos();
+        List<CompletableFuture<?>> items = new ArrayList<>(calls.size());
+        List<CompletableFuture<BridgeToolCallResult<?>>> results = new ArrayList<>(calls.size());
+        for (BridgeToolCall<?> call : calls) {
+            results.add(start(call, timeoutNanos, items));
+        }
+        CompletableFuture<List<BridgeToolCallResult<?>>> batch = CompletableFuture
+                .allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(v -> {
+                    List<BridgeToolCallResult<?>> list = new ArrayList<>(results.size());
+                    for (CompletableFuture<BridgeToolCallResult<?>> result : results) {
+                        list.add(result.join());
+                    }
+                    return list;
+                });
+        batch.whenComplete((r, e) -> {
+            if (e instanceof CancellationException) {
+                for (CompletableFuture<?> item : items) {
+                    item.cancel(true);
+                }
+            }
+        });
+        return batch;
+    }
+
+    private <T> CompletableFuture<BridgeToolCallResult<?>> start(BridgeToolCall<T> call,
+                                                                 long timeoutNanos,
+                                                                 List<CompletableFuture<?>> items) {
+        CompletableFuture<T> item = new CompletableFuture<>();
+        item.orTimeout(timeoutNanos, TimeUnit.NANOSECONDS);
+        items.add(item);
+        Object key = keyFunction.apply(call.callback());
+        acquire(key, () -> run(key, call, item));
+        return item.handle((r, e) -> new BridgeToolCallResult<>(call, r, unwrap(e)));
+    }
+
+    /**
+     * Returns the executor a callback is dispatched on. Subclasses can dispatch non-blocking
+     * callbacks directly.
+     *
+     * @param callback The callback to dispatch
+     * @return The executor to dispatch the callback on
+     */
+    protected Executor executorFor(BridgeToolCallback<?> callback) {
+        return executor;
+    }
+
+    private <T> void run(Object key, BridgeToolCall<T> call, CompletableFuture<T> item) {
+        if (item.isDone()) {
+            // Timed out or cancelled while waiting for a permit
+            release(key);
+            return;
+        }
+        try {
+            executorFor(call.callback()).execute(() -> invoke(key, call, item));
+        } catch (RejectedExecutionException e) {
+            item.completeExceptionally(e);
+            release(key);
+        }
+    }
+
+    private <T> void invoke(Object key, BridgeToolCall<T> call, CompletableFuture<T> item) {
+        if (item.isDone()) {
+            release(key);
+            return;
+        }
+        CompletableFuture<T> future;
+        try {
+            future = call.callback()
+                    .callAsync(call.toolInput(), call.toolContext())
+                    .toCompletableFuture();
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> running = future;
+        running.whenComplete((r, e) -> {
+            if (e != null) {
+                item.completeExceptionally(unwrap(e));
+            } else {
+                item.complete(r);
+            }
+            release(key);
+        });
+        item.whenComplete((r, e) -> {
+            if (e != null) {
+                // Propagate the batch deadline and cancellation to the running call
+                running.cancel(true);
+            }
+        });
+    }
+
+    private void acquire(Object key, Runnable task) {
+        boolean[] start = new boolean[1];
+        limiters.compute(key, (k, limiter) -> {
+            if (limiter == null) {
+                limiter = new Limiter();
+            }
+            if (limiter.running < maxConcurrency) {
+                limiter.running++;
+                start[0] = true;
+            } else {
+                limiter.queue.add(task);
+            }
+            return limiter;
+        });
+        if (start[0]) {
+            task.run();
+        }
+    }
+
+    /**
+     * Releases a permit of a key, handing it to the next queued task if any. Queued tasks may
+     * complete inline and release again, e.g. expired calls or callbacks completing synchronously
+     * on a direct executor, so releases nested in a running release are only recorded and drained
+     * by the outermost one, keeping the stack flat however long the queue is.
+     */
+    private void release(Object key) {
+        ArrayDeque<Object> pending = releasing.get();
+        if (pending != null) {
+            pending.add(key);
+            return;
+        }
+        pending = new ArrayDeque<>();
+        releasing.set(pending);
+        try {
+            Object next = key;
+            do {
+                Runnable task = poll(next);
+                if (task != null) {
+                    task.run();
+                }
+            } while ((next = pending.poll()) != null);
+        } finally {
+            releasing.remove();
+        }
+    }
+
+    private Runnable poll(Object key) {
+        Runnable[] next = new Runnable[1];
+        limiters.computeIfPresent(key, (k, limiter) -> {
+            next[0] = limiter.queue.poll();
+            if (next[0] == null) {
+                limiter.running--;
+            }
+            return limiter.running == 0 ? null : limiter;
+        });
+        return next[0];
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) &&
+               e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    /**
+     * Concurrency state of one key, only accessed inside {@code compute} of the limiter map.
+     */
+    private static class Limiter {
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private int running;
+    }
+}
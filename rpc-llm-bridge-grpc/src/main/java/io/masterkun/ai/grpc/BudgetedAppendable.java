@@ -0,0 +1,164 @@
+package io.masterkun.ai.grpc;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * A string buffer with a hard cap on the UTF-8 size of its content, used to format results
+ * without materializing more than the budget of the tool. An append that would exceed the cap
+ * writes what still fits and throws {@link BudgetExceededException}, which stops the formatter.
+ * <p>
+ * Formatters report every complete top-level item, e.g. an element of a repeated field or a table
+ * row, to {@link #itemWritten()}. If the budget is exceeded the content is cut back to the last
+ * item, and a summary of the omitted items is appended instead, see {@link #truncate(int)}.
+ */
+final class BudgetedAppendable implements Appendable {
+    // Room kept for the summary, which is at most "\n…and 2,147,483,647 more items", and the
+    // closing bracket of a JSON array
+    private static final int SUMMARY_BYTES = 33;
+
+    private final StringBuilder builder = new StringBuilder();
+    private final int limit;
+    private int bytes;
+    private int markedLength;
+    private int items;
+
+    /**
+     * Creates a buffer whose content and summary together stay within the given size.
+     *
+     * @param maxBytes The maximum UTF-8 size in bytes
+     */
+    BudgetedAppendable(int maxBytes) {
+        this.limit = Math.max(0, maxBytes - SUMMARY_BYTES);
+    }
+
+    @Override
+    public BudgetedAppendable append(CharSequence csq) throws IOException {
+        CharSequence text = csq == null ? "null" : csq;
+        return append(text, 0, text.length());
+    }
+
+    @Override
+    public BudgetedAppendable append(CharSequence csq, int start, int end) throws IOException {
+        CharSequence text = csq == null ? "null" : csq;
+        int size = bytes;
+        for (int i = start; i < end; i++) {
+            int n = utf8Length(text.charAt(i));
+            if (size + n > limit) {
+                builder.append(text, start, i);
+                bytes = size;
+                throw new BudgetExceededException();
+            }
+            size += n;
+        }
+        builder.append(text, start, end);
+        bytes = size;
+        return this;
+    }
+
+    @Override
+    public BudgetedAppendable append(char c) throws IOException {
+        int n = utf8Length(c);
+        if (bytes + n > limit) {
+            throw new BudgetExceededException();
+        }
+        builder.append(c);
+        bytes += n;
+        return this;
+    }
+
+    /**
+     * Marks the end of a complete top-level item.
+     */
+    void itemWritten() {
+        markedLength = builder.length();
+        items++;
+    }
+
+    /**
+     * Returns the number of top-level items written completely.
+     */
+    int items() {
+        return items;
+    }
+
+    /**
+     * Returns the content after the budget has been exceeded. The content is cut back to the
+     * last complete item if there is one, followed by the number of omitted items, or just by an
+     * ellipsis if the number is unknown.
+     *
+     * @param totalItems The number of top-level items of the result, 0 if unknown
+     * @return The truncated content
+     */
+    String truncate(int totalItems) {
+        if (items > 0) {
+            builder.setLength(markedLength);
+        }
+        return summarize(totalItems - items);
+    }
+
+    /**
+     * Returns the content of a JSON array after the budget has been exceeded. The array is cut
+     * back to the last complete element and closed, so the content stays valid JSON, followed by
+     * the number of omitted elements.
+     *
+     * @param totalItems The number of elements of the array
+     * @return The truncated content
+     */
+    String truncateArray(int totalItems) {
+        if (items > 0) {
+            builder.setLength(markedLength);
+        } else {
+            builder.setLength(0);
+            builder.append('[');
+        }
+        builder.append(']');
+        return summarize(totalItems - items);
+    }
+
+    /**
+     * Returns the content followed by the number of omitted items, or just by an ellipsis if the
+     * number is unknown.
+     *
+     * @param omitted The number of items left out of the content, 0 if unknown
+     * @return The content with the summary
+     */
+    String summarize(int omitted) {
+        if (omitted > 0) {
+            builder.append("\n…and ")
+                    .append(String.format(Locale.ROOT, "%,d", omitted))
+                    .append(omitted == 1 ? " more item" : " more items");
+        } else {
+            builder.append('…');
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+
+    private static int utf8Length(char c) {
+        if (c < 0x80) {
+            return 1;
+        } else if (c < 0x800) {
+            return 2;
+        } else if (Character.isHighSurrogate(c)) {
+            // The whole pair, so that it is never split
+            return 4;
+        } else if (Character.isLowSurrogate(c)) {
+            return 0;
+        }
+        return 3;
+    }
+
+    /**
+     * Thrown when an append would exceed the budget.
+     */
+    static class BudgetExceededException extends IOException {
+        BudgetExceededException() {
+            super("Result budget exceeded");
+        }
+    }
+}
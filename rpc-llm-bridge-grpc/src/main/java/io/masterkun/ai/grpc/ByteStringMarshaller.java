@@ -0,0 +1,88 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A pass-through marshaller for messages that are already encoded in protobuf wire format. The
+ * stream reports its length and drains the bytes directly into the transport buffer, so the
+ * encoded message is not copied again.
+ */
+public class ByteStringMarshaller implements MethodDescriptor.Marshaller<ByteString> {
+    public static final ByteStringMarshaller INSTANCE = new ByteStringMarshaller();
+
+    private ByteStringMarshaller() {
+    }
+
+    @Override
+    public InputStream stream(ByteString value) {
+        return new ByteStringInputStream(value);
+    }
+
+    @Override
+    public ByteString parse(InputStream stream) {
+        try {
+            return ByteString.readFrom(stream);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class ByteStringInputStream extends InputStream implements KnownLength,
+            Drainable {
+        private ByteString data;
+        private InputStream partial;
+
+        private ByteStringInputStream(ByteString data) {
+            this.data = data;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            int written;
+            if (data != null) {
+                written = data.size();
+                data.writeTo(target);
+                data = null;
+            } else if (partial != null) {
+                written = (int) partial.transferTo(target);
+                partial = null;
+            } else {
+                written = 0;
+            }
+            return written;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return partial().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return partial().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (data != null) {
+                return data.size();
+            }
+            return partial == null ? 0 : partial.available();
+        }
+
+        private InputStream partial() {
+            if (data != null) {
+                partial = data.newInput();
+                data = null;
+            }
+            return partial == null ? InputStream.nullInputStream() : partial;
+        }
+    }
+}
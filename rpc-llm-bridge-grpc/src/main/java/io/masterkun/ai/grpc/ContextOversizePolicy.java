@@ -0,0 +1,16 @@
+package io.masterkun.ai.grpc;
+
+/**
+ * Controls what happens to a tool context value whose encoded size exceeds the limits of the
+ * registration.
+ */
+public enum ContextOversizePolicy {
+    /**
+     * String values are cut to fit and end with an ellipsis, other values are dropped.
+     */
+    TRUNCATE,
+    /**
+     * The value is not forwarded at all.
+     */
+    DROP
+}
@@ -0,0 +1,56 @@
+package io.masterkun.ai.grpc;
+
+import io.masterkun.ai.tool.BridgeToolCallback;
+import io.masterkun.ai.tool.DefaultBridgeToolBatchExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A batch executor for gRPC tools. gRPC callbacks are started directly on the calling thread,
+ * because {@link GrpcBridgeToolCallback#callAsync} never blocks, and all calls to the same backend
+ * are multiplexed over the channel of its registration. Concurrency is limited per channel, so one
+ * slow backend cannot be flooded by a single turn. Other callbacks are dispatched on a fallback
+ * executor and share one limit per callback.
+ */
+public class GrpcBridgeToolBatchExecutor extends DefaultBridgeToolBatchExecutor {
+    private static final Executor DIRECT = Runnable::run;
+
+    /**
+     * Creates an executor that runs non-gRPC callbacks on the common pool.
+     *
+     * @param maxConcurrencyPerChannel The maximum number of concurrent calls per channel
+     */
+    public GrpcBridgeToolBatchExecutor(int maxConcurrencyPerChannel) {
+        this(maxConcurrencyPerChannel, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an executor.
+     *
+     * @param maxConcurrencyPerChannel The maximum number of concurrent calls per channel
+     * @param fallbackExecutor         The executor for callbacks that are not gRPC callbacks
+     */
+    public GrpcBridgeToolBatchExecutor(int maxConcurrencyPerChannel, Executor fallbackExecutor) {
+        super(fallbackExecutor, maxConcurrencyPerChannel, GrpcBridgeToolBatchExecutor::keyOf);
+    }
+
+    private static Object keyOf(BridgeToolCallback<?> callback) {
+        if (callback instanceof GrpcBridgeToolCallback<?> grpcCallback) {
+            return grpcCallback.getChannel();
+        }
+        if (callback instanceof GrpcBridgeToolStreamCallback<?> streamCallback) {
+            return streamCallback.getChannel();
+        }
+        return callback;
+    }
+
+    @Override
+    protected Executor executorFor(BridgeToolCallback<?> callback) {
+        if (callback instanceof GrpcBridgeToolCallback<?> ||
+            callback instanceof GrpcBridgeToolStreamCallback<?>) {
+            return DIRECT;
+        }
+        return super.executorFor(callback);
+    }
+}
@@ -1,20 +1,39 @@
 package io.masterkun.ai.grpc;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors;
-import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.Message;
 import io.grpc.CallOptions;
 import io.grpc.Channel;
+import io.grpc.ClientCall;
 import io.grpc.ClientInterceptors;
-import io.grpc.ManagedChannel;
+import io.grpc.Deadline;
 import io.grpc.MethodDescriptor;
+import io.grpc.Status;
 import io.grpc.stub.ClientCalls;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.ai.tool.BridgeToolCallCoalescer;
 import io.masterkun.ai.tool.BridgeToolCallback;
 import io.masterkun.ai.tool.BridgeToolContext;
 import io.masterkun.ai.tool.BridgeToolDefinition;
 import io.masterkun.ai.tool.BridgeToolMetadata;
+import io.masterkun.ai.tool.BridgeToolResultCache;
+import io.masterkun.ai.tool.BridgeToolTimeoutException;
 import org.checkerframework.checker.units.qual.C;
 
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 /**
  * A callback implementation for gRPC bridge tools. This class handles the execution of gRPC method
  * calls based on tool inputs. It acts as a bridge between the MCP service framework and gRPC
@@ -23,20 +42,24 @@ import org.checkerframework.checker.units.qual.C;
  * @param <T> The response message type from the gRPC service
  */
 public class GrpcBridgeToolCallback<T extends Message> implements BridgeToolCallback<T> {
+    private static final BridgeToolMetadata DEFAULT_METADATA = new BridgeToolMetadata() {
+    };
 
     private final GrpcBridgeToolDefinition<T> definition;
     private final BridgeToolMetadata metadata;
-    private final ManagedChannel channel;
+    private final Channel channel;
+    private final GrpcBridgeToolMethod<T> toolMethod;
+    private final BridgeToolResultCache<Message> resultCache;
+    private final BridgeToolCallCoalescer<Message> coalescer;
 
     /**
      * Constructs a GrpcBridgeToolCallback with the specified gRPC method and channel.
      *
      * @param method  The gRPC method descriptor
-     * @param channel The managed channel for communication with the gRPC service
+     * @param channel The channel for communication with the gRPC service
      */
-    public GrpcBridgeToolCallback(MethodDescriptor<?, T> method, ManagedChannel channel) {
-        this(GrpcBridgeToolDefinition.of(method), new BridgeToolMetadata() {
-        }, channel);
+    public GrpcBridgeToolCallback(MethodDescriptor<?, T> method, Channel channel) {
+        this(GrpcBridgeToolDefinition.of(method), DEFAULT_METADATA, channel);
     }
 
     /**
@@ -44,25 +67,59 @@ public class GrpcBridgeToolCallback<T extends Message> implements BridgeToolCall
      *
      * @param definition The gRPC bridge tool definition
      * @param metadata   The bridge tool metadata
-     * @param channel    The managed channel for communication with the gRPC service
+     * @param channel    The channel for communication with the gRPC service
      */
     public GrpcBridgeToolCallback(GrpcBridgeToolDefinition<T> definition,
-                                  BridgeToolMetadata metadata, ManagedChannel channel) {
+                                  BridgeToolMetadata metadata, Channel channel) {
+        this(definition, metadata, channel, null);
+    }
+
+    /**
+     * Constructs a GrpcBridgeToolCallback that caches the results of cacheable tools.
+     *
+     * @param definition  The gRPC bridge tool definition
+     * @param metadata    The bridge tool metadata
+     * @param channel     The channel for communication with the gRPC service
+     * @param resultCache The cache of tool results, or null to disable caching
+     */
+    public GrpcBridgeToolCallback(GrpcBridgeToolDefinition<T> definition,
+                                  BridgeToolMetadata metadata, Channel channel,
+                                  @Nullable BridgeToolResultCache<Message> resultCache) {
+        this(definition, metadata, channel, resultCache, null);
+    }
+
+    /**
+     * Constructs a GrpcBridgeToolCallback that caches the results of cacheable tools and
+     * coalesces identical concurrent calls of coalesced tools.
+     *
+     * @param definition  The gRPC bridge tool definition
+     * @param metadata    The bridge tool metadata
+     * @param channel     The channel for communication with the gRPC service
+     * @param resultCache The cache of tool results, or null to disable caching
+     * @param coalescer   The coalescer of in-flight calls, or null to disable coalescing
+     */
+    public GrpcBridgeToolCallback(GrpcBridgeToolDefinition<T> definition,
+                                  BridgeToolMetadata metadata, Channel channel,
+                                  @Nullable BridgeToolResultCache<Message> resultCache,
+                                  @Nullable BridgeToolCallCoalescer<Message> coalescer) {
         this.definition = definition;
         this.metadata = metadata;
         this.channel = channel;
+        this.toolMethod = definition.getToolMethod();
+        this.resultCache = toolMethod.isCacheable() ? resultCache : null;
+        this.coalescer = toolMethod.isCoalesced() ? coalescer : null;
     }
 
     /**
      * Factory method to create a GrpcBridgeToolCallback instance.
      *
      * @param method  The gRPC method descriptor
-     * @param channel The managed channel for communication with the gRPC service
+     * @param channel The channel for communication with the gRPC service
      * @param <T>     The response message type
      * @return A new GrpcBridgeToolCallback instance
      */
     public static <T extends Message> GrpcBridgeToolCallback<T> of(MethodDescriptor<?, T> method,
-                                                                   ManagedChannel channel) {
+                                                                   Channel channel) {
         return new GrpcBridgeToolCallback<>(method, channel);
     }
 
@@ -71,12 +128,62 @@ public class GrpcBridgeToolCallback<T extends Message> implements BridgeToolCall
      * descriptor.
      *
      * @param method  The protobuf method descriptor
-     * @param channel The managed channel for communication with the gRPC service
+     * @param channel The channel for communication with the gRPC service
      * @return A new GrpcBridgeToolCallback instance
      */
     public static GrpcBridgeToolCallback<? extends Message> of(Descriptors.MethodDescriptor method,
-                                                               ManagedChannel channel) {
-        return new GrpcBridgeToolCallback<>(GrpcUtils.toGrpcMethod(method), channel);
+                                                               Channel channel) {
+        return of(GrpcBridgeToolMethod.of(method), channel);
+    }
+
+    /**
+     * Factory method to create a GrpcBridgeToolCallback instance from a compiled method. This is
+     * the cheapest way to create callbacks repeatedly, as nothing is resolved again.
+     *
+     * @param toolMethod The compiled gRPC method
+     * @param channel    The channel for communication with the gRPC service
+     * @param <T>        The response message type
+     * @return A new GrpcBridgeToolCallback instance
+     */
+    public static <T extends Message> GrpcBridgeToolCallback<T> of(GrpcBridgeToolMethod<T> toolMethod,
+                                                                   Channel channel) {
+        return of(toolMethod, channel, null);
+    }
+
+    /**
+     * Factory method to create a GrpcBridgeToolCallback instance from a compiled method, which
+     * caches the results of the tool if the method is cacheable.
+     *
+     * @param toolMethod  The compiled gRPC method
+     * @param channel     The channel for communication with the gRPC service
+     * @param resultCache The cache of tool results, usually shared by a registration, or null
+     * @param <T>         The response message type
+     * @return A new GrpcBridgeToolCallback instance
+     */
+    public static <T extends Message> GrpcBridgeToolCallback<T> of(GrpcBridgeToolMethod<T> toolMethod,
+                                                                   Channel channel,
+                                                                   @Nullable BridgeToolResultCache<Message> resultCache) {
+        return of(toolMethod, channel, resultCache, null);
+    }
+
+    /**
+     * Factory method to create a GrpcBridgeToolCallback instance from a compiled method, which
+     * caches results and coalesces calls as configured by the method.
+     *
+     * @param toolMethod  The compiled gRPC method
+     * @param channel     The channel for communication with the gRPC service
+     * @param resultCache The cache of tool results, usually shared by a registration, or null
+     * @param coalescer   The coalescer of in-flight calls, usually shared by a registration, or
+     *                    null
+     * @param <T>         The response message type
+     * @return A new GrpcBridgeToolCallback instance
+     */
+    public static <T extends Message> GrpcBridgeToolCallback<T> of(GrpcBridgeToolMethod<T> toolMethod,
+                                                                   Channel channel,
+                                                                   @Nullable BridgeToolResultCache<Message> resultCache,
+                                                                   @Nullable BridgeToolCallCoalescer<Message> coalescer) {
+        return new GrpcBridgeToolCallback<>(toolMethod.getDefinition(), DEFAULT_METADATA, channel,
+                resultCache, coalescer);
     }
 
     /**
@@ -100,8 +207,17 @@ public class GrpcBridgeToolCallback<T extends Message> implements BridgeToolCall
     }
 
     /**
-     * Executes the gRPC call with the provided tool input. Converts the JSON input to a protobuf
-     * message and makes a blocking unary call to the gRPC service.
+     * Returns the channel the calls of this callback are sent over.
+     *
+     * @return The channel
+     */
+    Channel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Executes the gRPC call with the provided tool input and waits for the response. This is a
+     * thin blocking wrapper around {@link #callAsync(String, BridgeToolContext)}.
      *
      * @param toolInput The JSON input for the gRPC method
      * @param toolContext The tool context
@@ -109,17 +225,264 @@ public class GrpcBridgeToolCallback<T extends Message> implements BridgeToolCall
      */
     @Override
     public T call(String toolInput, BridgeToolContext toolContext) {
-        @SuppressWarnings("unchecked")
-        var method = (MethodDescriptor<DynamicMessage, T>) definition.getMethod();
-        Descriptors.Descriptor descriptor = GrpcUtils.getInputDescriptor(method);
-        DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
-        ProtoUtils.fromJson(toolInput, builder);
+        CompletableFuture<T> future = callAsync(toolInput, toolContext);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw Status.CANCELLED
+                    .withDescription("Thread interrupted")
+                    .withCause(e)
+                    .asRuntimeException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            if (cause instanceof Error err) {
+                throw err;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Executes the gRPC call asynchronously. Transcodes the JSON input directly into protobuf wire
+     * format and starts a non-blocking unary call with the pre-encoded request, so no thread is
+     * held while the backend is working. Cancelling the returned future cancels the underlying
+     * RPC.
+     * <p>
+     * The call deadline is the tool timeout, shortened by the deadline in the tool context if there
+     * is one. A call that runs out of time fails with a {@link BridgeToolTimeoutException}.
+     * <p>
+     * Results of cacheable tools are looked up in the result cache by the tool name, the
+     * canonical tool input and the tool context, and only successful results are cached. Calls of
+     * coalesced tools join an identical in-flight call if there is one, where identical means the
+     * same canonical input and the same forwarded tool context. A call only joins if the deadline
+     * of the in-flight call is not earlier than the one in its own tool context.
+     * <p>
+     * If the tool offers the response fields argument and the input has it, the result only
+     * contains the selected fields.
+     *
+     * @param toolInput   The JSON input for the gRPC method
+     * @param toolContext The tool context
+     * @return A future that completes with the response from the gRPC service
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<T> callAsync(String toolInput, BridgeToolContext toolContext) {
+        if (resultCache == null && coalescer == null) {
+            return doCallAsync(toolInput, toolContext);
+        }
+        String input;
+        try {
+            input = JSONUtils.canonicalizeJson(toolInput);
+        } catch (RuntimeException e) {
+            // Invalid input, let the call report the error
+            return doCallAsync(toolInput, toolContext);
+        }
+        String cacheKey = null;
+        if (resultCache != null) {
+            cacheKey = callKey(input, toolContext, false);
+            // Keys contain the tool name, so the cached result has the response type of this tool
+            T cached = (T) resultCache.get(cacheKey);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        String resultKey = cacheKey;
+        Supplier<CompletableFuture<Message>> call = () -> {
+            CompletableFuture<T> future = doCallAsync(toolInput, toolContext);
+            if (resultKey != null) {
+                future.thenAccept(result -> {
+                    if (result != null) {
+                        resultCache.put(resultKey, result, toolMethod.getCacheTtl());
+                    }
+                });
+            }
+            return (CompletableFuture<Message>) future;
+        };
+        CompletableFuture<Message> future = coalescer == null ? call.get() :
+                coalescer.execute(callKey(input, toolContext, true),
+                        toolContext == null ? null : toolContext.getDeadline(), call);
+        return (CompletableFuture<T>) future;
+    }
+
+    /**
+     * Builds the cache or coalescing key of a call from the canonical tool input and the part of
+     * the tool context that is forwarded to the backend. The call history is left out of cache
+     * keys as it changes with every call.
+     */
+    private String callKey(String input, BridgeToolContext toolContext, boolean withHistory) {
+        StringBuilder key = new StringBuilder(toolMethod.getName())
+                .append('\n')
+                .append(input);
+        if (toolContext != null && !toolContext.getContext().isEmpty()) {
+            Map<String, Object> context = toolMethod.getContextCodec().select(toolContext);
+            if (!withHistory) {
+                context.remove(BridgeToolContext.TOOL_CALL_HISTORY);
+            }
+            if (!context.isEmpty()) {
+                key.append('\n').append(JSONUtils.toCanonicalJson(context));
+            }
+        }
+        return key.toString();
+    }
+
+    private CompletableFuture<T> doCallAsync(String toolInput, BridgeToolContext toolContext) {
+        List<String> fields = toolMethod.hasResponseFieldsArgument() ?
+                responseFields(toolInput) : null;
+        CompletableFuture<T> future = callWithRetry(toolInput, toolContext);
+        if (fields == null) {
+            return future;
+        }
+        // Cached and coalesced results are the selected ones, as the argument is part of the key
+        CompletableFuture<T> result = future.thenApply(r -> r == null ? null :
+                ProtoProjection.select(r, fields));
+        result.whenComplete((r, e) -> future.cancel(false));
+        return result;
+    }
+
+    /**
+     * Returns the paths passed in the response fields argument of a tool input, as an array or a
+     * comma-separated string, or null if there are none.
+     */
+    @Nullable
+    static List<String> responseFields(String toolInput) {
+        if (toolInput == null ||
+            !toolInput.contains(GrpcBridgeToolMethod.RESPONSE_FIELDS_ARGUMENT)) {
+            return null;
+        }
+        JsonNode node;
+        try {
+            JsonNode input = JSONUtils.fromJson(toolInput, JsonNode.class);
+            node = input == null ? null : input.get(GrpcBridgeToolMethod.RESPONSE_FIELDS_ARGUMENT);
+        } catch (RuntimeException e) {
+            // Invalid input, let the call report the error
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        if (node != null && node.isTextual()) {
+            fields.addAll(Arrays.asList(node.asText().split(",")));
+        } else if (node != null && node.isArray()) {
+            for (JsonNode element : node) {
+                if (element.isTextual()) {
+                    fields.add(element.asText());
+                }
+            }
+        }
+        fields.removeIf(String::isBlank);
+        return fields.isEmpty() ? null : fields;
+    }
+
+    private CompletableFuture<T> callWithRetry(String toolInput, BridgeToolContext toolContext) {
+        CompletableFuture<T> future = doCallAsync(toolInput, toolContext, false);
+        if (!toolMethod.getContextCodec().isByReference()) {
+            return future;
+        }
+        // Retry once with the full context if the server does not know the referenced one
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((r, e) -> {
+            if (e == null) {
+                result.complete(r);
+            } else if (!result.isDone() && GrpcToolContextCodec.isContextMiss(e)) {
+                CompletableFuture<T> retry = doCallAsync(toolInput, toolContext, true);
+                result.whenComplete((rr, ee) -> retry.cancel(false));
+                retry.whenComplete((rr, ee) -> {
+                    if (ee == null) {
+                        result.complete(rr);
+                    } else {
+                        result.completeExceptionally(ee);
+                    }
+                });
+            } else {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((r, e) -> future.cancel(false));
+        return result;
+    }
+
+    private CompletableFuture<T> doCallAsync(String toolInput, BridgeToolContext toolContext,
+                                             boolean fullContext) {
+        ByteString request;
+        try {
+            request = toolMethod.getTranscoder().transcode(toolInput);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CallOptions callOptions = CallOptions.DEFAULT;
+        Deadline deadline = deadline(toolMethod, toolContext);
+        if (deadline != null) {
+            if (deadline.isExpired()) {
+                return CompletableFuture.failedFuture(new BridgeToolTimeoutException(
+                        "Deadline of tool " + toolMethod.getName() + " expired before the call"));
+            }
+            callOptions = callOptions.withDeadline(deadline);
+        }
         Channel channel = this.channel;
         if (toolContext != null && toolContext != BridgeToolContext.EMPTY) {
             // 传递工具调用上下文
-            var interceptor = new GrpcToolContextClientInterceptor(toolContext);
+            var interceptor = new GrpcToolContextClientInterceptor(toolContext,
+                    toolMethod.getContextCodec(), fullContext);
             channel = ClientInterceptors.intercept(channel, interceptor);
         }
-        return ClientCalls.blockingUnaryCall(channel, method, CallOptions.DEFAULT, builder.build());
+        ClientCall<ByteString, T> call = channel.newCall(toolMethod.getRawMethod(), callOptions);
+        UnaryResponseObserver<T> observer = new UnaryResponseObserver<>();
+        ClientCalls.asyncUnaryCall(call, request, observer);
+        // Registered after the request is sent, as the deadline may already fail the future
+        // while the call is starting
+        observer.future.whenComplete((r, e) -> {
+            if (e != null) {
+                // No-op if the call has already been closed by the server
+                call.cancel("Tool call cancelled", e);
+            }
+        });
+        return observer.future;
+    }
+
+    /**
+     * Resolves the deadline of a call, which is the earlier one of the tool timeout and the
+     * deadline passed in the tool context.
+     */
+    @Nullable
+    static Deadline deadline(GrpcBridgeToolMethod<?> toolMethod, BridgeToolContext toolContext) {
+        Duration timeout = toolMethod.getTimeout();
+        Deadline deadline = timeout == null ? null :
+                Deadline.after(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        Instant budget = toolContext == null ? null : toolContext.getDeadline();
+        if (budget != null) {
+            long remaining = Duration.between(Instant.now(), budget).toNanos();
+            Deadline contextDeadline = Deadline.after(remaining, TimeUnit.NANOSECONDS);
+            deadline = deadline == null ? contextDeadline : deadline.minimum(contextDeadline);
+        }
+        return deadline;
+    }
+
+    /**
+     * Adapts the response of a unary call to a {@link CompletableFuture}.
+     */
+    private static class UnaryResponseObserver<T> implements StreamObserver<T> {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T value;
+
+        @Override
+        public void onNext(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (Status.fromThrowable(t).getCode() == Status.Code.DEADLINE_EXCEEDED) {
+                t = new BridgeToolTimeoutException(t.getMessage(), t);
+            }
+            future.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            future.complete(value);
+        }
     }
 }
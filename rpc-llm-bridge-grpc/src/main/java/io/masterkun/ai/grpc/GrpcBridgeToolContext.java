@@ -1,35 +1,63 @@
 package io.masterkun.ai.grpc;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import io.grpc.Context;
 import io.grpc.Metadata;
 import io.masterkun.ai.tool.BridgeToolContext;
 
+import javax.annotation.Nullable;
+
+/**
+ * Access to the tool context forwarded with the current call. The context is only decoded when a
+ * service accesses it, so calls of methods that do not use it pay nothing for it.
+ */
 public class GrpcBridgeToolContext {
-    static final Metadata.Key<BridgeToolContext> METADATA_KEY =
-            Metadata.Key.of("tool-context-bin", new ToolContextMarshaller());
-    static final Context.Key<BridgeToolContext> CONTEXT_KEY = Context.key("tool-context");
+    /**
+     * The legacy header with the whole context encoded as JSON, still accepted by servers.
+     */
+    static final Metadata.Key<byte[]> METADATA_KEY =
+            Metadata.Key.of("tool-context-bin", Metadata.BINARY_BYTE_MARSHALLER);
+    /**
+     * The header with the forwarded context encoded by {@link GrpcToolContextCodec}.
+     */
+    static final Metadata.Key<byte[]> ENCODED_METADATA_KEY =
+            Metadata.Key.of("tool-context-pb-bin", Metadata.BINARY_BYTE_MARSHALLER);
+    /**
+     * The header with the hash of a context the server has received before.
+     */
+    static final Metadata.Key<byte[]> REFERENCE_METADATA_KEY =
+            Metadata.Key.of("tool-context-ref-bin", Metadata.BINARY_BYTE_MARSHALLER);
+    /**
+     * The trailer the server adds when it does not know a referenced context.
+     */
+    static final Metadata.Key<String> MISS_METADATA_KEY =
+            Metadata.Key.of("tool-context-miss", Metadata.ASCII_STRING_MARSHALLER);
+    static final Context.Key<LazyToolContext> CONTEXT_KEY = Context.key("tool-context");
 
     /**
      * Retrieves the current tool context from the gRPC Context.
-     * If no context is set, returns an empty context.
+     * If no context is set, returns an empty context. The context is decoded on the first call
+     * and reused afterwards.
      *
      * @return The current BridgeToolContext or EMPTY if none exists
+     * @throws IllegalArgumentException if the forwarded context is malformed
      */
     public static BridgeToolContext current() {
-        BridgeToolContext context = CONTEXT_KEY.get();
-        return context != null ? context : BridgeToolContext.EMPTY;
+        LazyToolContext context = CONTEXT_KEY.get();
+        return context != null ? context.get() : BridgeToolContext.EMPTY;
     }
 
-    private static class ToolContextMarshaller implements Metadata.BinaryMarshaller<BridgeToolContext> {
-        @Override
-        public byte[] toBytes(BridgeToolContext value) {
-            return JSONUtils.toJsonBytes(value.getContext());
-        }
-        @Override
-        public BridgeToolContext parseBytes(byte[] serialized) {
-            return new BridgeToolContext(JSONUtils.fromJson(serialized, new TypeReference<>() {
-            }));
-        }
+    /**
+     * Retrieves a single value of the current tool context, without decoding the other values.
+     *
+     * @param key  The key of the value
+     * @param type The type to convert the value to
+     * @param <T>  The value type
+     * @return The value, or null if there is no context or it has no value for the key
+     * @throws IllegalArgumentException if the forwarded context is malformed
+     */
+    @Nullable
+    public static <T> T get(String key, Class<T> type) {
+        LazyToolContext context = CONTEXT_KEY.get();
+        return context != null ? context.get(key, type) : null;
     }
 }
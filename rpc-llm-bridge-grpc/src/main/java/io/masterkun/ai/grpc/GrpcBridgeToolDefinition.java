@@ -13,22 +13,15 @@ import io.masterkun.ai.tool.BridgeToolResultConverterProvider;
  * @param <T> The response message type from the gRPC service
  */
 public class GrpcBridgeToolDefinition<T extends Message> implements BridgeToolDefinition<T> {
-    private final MethodDescriptor<?, T> method;
-    private final String name;
-    private final String description;
+    private final GrpcBridgeToolMethod<T> toolMethod;
 
     /**
      * Private constructor for creating a GrpcBridgeToolDefinition.
      *
-     * @param method      The gRPC method descriptor
-     * @param name        The name of the tool
-     * @param description The description of the tool
+     * @param toolMethod The compiled gRPC method
      */
-    private GrpcBridgeToolDefinition(MethodDescriptor<?, T> method, String name,
-                                     String description) {
-        this.method = method;
-        this.name = name;
-        this.description = description;
+    private GrpcBridgeToolDefinition(GrpcBridgeToolMethod<T> toolMethod) {
+        this.toolMethod = toolMethod;
     }
 
     /**
@@ -45,12 +38,23 @@ public class GrpcBridgeToolDefinition<T extends Message> implements BridgeToolDe
         if (method.getType() != MethodDescriptor.MethodType.UNARY) {
             throw new IllegalArgumentException("Only unary method is supported");
         }
-        String name = GrpcUtils.getMethodName(method);
-        String description = GrpcUtils.getMethodDesc(method);
-        if (description == null) {
-            description = StringUtils.toDescStr(name);
+        return GrpcBridgeToolMethod.of(method).getDefinition();
+    }
+
+    /**
+     * Creates a GrpcBridgeToolDefinition from a compiled gRPC method. Prefer
+     * {@link GrpcBridgeToolMethod#getDefinition()}, which reuses the definition instance.
+     *
+     * @param toolMethod The compiled gRPC method
+     * @param <T>        The response message type
+     * @return A new GrpcBridgeToolDefinition instance
+     * @throws IllegalArgumentException if the method is not a unary method
+     */
+    static <T extends Message> GrpcBridgeToolDefinition<T> of(GrpcBridgeToolMethod<T> toolMethod) {
+        if (toolMethod.getMethod().getType() != MethodDescriptor.MethodType.UNARY) {
+            throw new IllegalArgumentException("Only unary method is supported");
         }
-        return new GrpcBridgeToolDefinition<>(method, name, description);
+        return new GrpcBridgeToolDefinition<>(toolMethod);
     }
 
     /**
@@ -60,7 +64,7 @@ public class GrpcBridgeToolDefinition<T extends Message> implements BridgeToolDe
      */
     @Override
     public String name() {
-        return name;
+        return toolMethod.getName();
     }
 
     /**
@@ -70,18 +74,18 @@ public class GrpcBridgeToolDefinition<T extends Message> implements BridgeToolDe
      */
     @Override
     public String description() {
-        return description;
+        return toolMethod.getDescription();
     }
 
     /**
      * Returns the JSON schema for the input of the tool. This schema is derived from the input
-     * message type of the gRPC method.
+     * message type of the gRPC method and generated only once.
      *
      * @return The JSON schema for the tool input
      */
     @Override
     public String inputSchema() {
-        return GrpcUtils.getInputSchema(method);
+        return toolMethod.getInputSchema();
     }
 
     /**
@@ -92,7 +96,7 @@ public class GrpcBridgeToolDefinition<T extends Message> implements BridgeToolDe
      */
     @Override
     public BridgeToolResultConverterProvider<T> resultConverter() {
-        return GrpcBridgeToolResultConverter::new;
+        return toolMethod::getResultConverter;
     }
 
     /**
@@ -101,6 +105,15 @@ public class GrpcBridgeToolDefinition<T extends Message> implements BridgeToolDe
      * @return The gRPC method descriptor
      */
     MethodDescriptor<?, T> getMethod() {
-        return method;
+        return toolMethod.getMethod();
+    }
+
+    /**
+     * Returns the compiled gRPC method of this tool definition.
+     *
+     * @return The compiled gRPC method
+     */
+    public GrpcBridgeToolMethod<T> getToolMethod() {
+        return toolMethod;
     }
 }
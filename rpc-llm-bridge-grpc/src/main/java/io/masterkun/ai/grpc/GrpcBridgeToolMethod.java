@@ -0,0 +1,549 @@
+package io.masterkun.ai.grpc;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.MethodDescriptor;
+import io.grpc.protobuf.ProtoMethodDescriptorSupplier;
+import io.masterkun.ai.proto.ToolProto;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * The compiled invocation plan of a gRPC method exposed as a tool. Everything that only depends on
+ * the method descriptor is resolved once here: the gRPC method descriptors and marshallers, the
+ * input and output message descriptors, the tool name and description, the JSON transcoder, the
+ * input and output schemas and the result converter. Definitions and callbacks share the same plan, so the
+ * call path does not perform any descriptor lookup.
+ * <p>
+ * Instances are immutable and thread-safe, the schemas are generated on first access.
+ *
+ * @param <T> The response message type from the gRPC service
+ */
+public class GrpcBridgeToolMethod<T extends Message> {
+    /**
+     * The suffix of the name of the page tool of a paged tool.
+     */
+    public static final String PAGE_TOOL_SUFFIX = ".nextPage";
+    /**
+     * The name of the optional tool argument selecting the fields of the result.
+     */
+    public static final String RESPONSE_FIELDS_ARGUMENT = "response_fields";
+
+    private final MethodDescriptor<?, T> method;
+    private final MethodDescriptor<ByteString, T> rawMethod;
+    private final Descriptors.MethodDescriptor protoMethod;
+    private final String name;
+    private final String description;
+    private final ProtoJsonTranscoder transcoder;
+    private final GrpcBridgeToolResultConverter<T> resultConverter;
+    private final SchemaProfile schemaProfile;
+    private final Duration timeout;
+    private final Duration cacheTtl;
+    private final boolean coalesced;
+    private final int streamMaxItems;
+    private final int streamMaxBytes;
+    private final GrpcToolContextCodec contextCodec;
+    private final boolean responseFields;
+    private volatile String inputSchema;
+    private volatile String outputSchema;
+    private volatile GrpcBridgeToolDefinition<T> definition;
+    private volatile GrpcBridgeToolStreamDefinition<T> streamDefinition;
+
+    private GrpcBridgeToolMethod(MethodDescriptor<?, T> method,
+                                 Descriptors.MethodDescriptor protoMethod,
+                                 GrpcBridgeToolOptions options,
+                                 @Nullable GrpcBridgeToolResultPages pages) {
+        this.method = method;
+        this.protoMethod = protoMethod;
+        GrpcBridgeMethodDescriptor descriptor = GrpcBridgeMethodDescriptor.fromDescriptor(protoMethod);
+        this.name = GrpcUtils.getMethodName(descriptor);
+        String desc = GrpcUtils.getMethodDesc(descriptor);
+        this.description = desc == null ? StringUtils.toDescStr(name) : desc;
+        this.transcoder = ProtoJsonTranscoder.of(protoMethod.getInputType());
+        ResultFormat format = ResultFormat.fromProto(
+                protoMethod.getOptions().getExtension(ToolProto.methodResultFormat));
+        if (format == null) {
+            format = options.getResultFormat();
+        }
+        int resultMaxBytes = protoMethod.getOptions().hasExtension(ToolProto.resultMaxBytes) ?
+                protoMethod.getOptions().getExtension(ToolProto.resultMaxBytes) :
+                options.getDefaultResultMaxBytes();
+        int pageSize = protoMethod.getOptions().hasExtension(ToolProto.pageSize) ?
+                protoMethod.getOptions().getExtension(ToolProto.pageSize) :
+                options.getDefaultPageSize();
+        if (method.getType() != MethodDescriptor.MethodType.UNARY) {
+            // Streams are bounded by their stream budgets instead
+            pageSize = 0;
+        }
+        this.resultConverter = new GrpcBridgeToolResultConverter<>(
+                format == null ? ResultFormat.OUTLINE : format, resultMaxBytes, pageSize, pages,
+                name + PAGE_TOOL_SUFFIX);
+        SchemaProfile profile = SchemaProfile.fromProto(
+                protoMethod.getOptions().getExtension(ToolProto.methodSchemaProfile));
+        if (profile == null) {
+            profile = options.getSchemaProfile();
+        }
+        this.schemaProfile = profile == null ? SchemaProfile.STANDARD : profile;
+        if (protoMethod.getOptions().hasExtension(ToolProto.methodTimeout)) {
+            this.timeout = Duration.ofMillis(Integer.toUnsignedLong(
+                    protoMethod.getOptions().getExtension(ToolProto.methodTimeout)));
+        } else {
+            this.timeout = options.getDefaultMethodTimeout();
+        }
+        if (!protoMethod.getOptions().getExtension(ToolProto.methodCacheable)) {
+            this.cacheTtl = null;
+        } else if (protoMethod.getOptions().hasExtension(ToolProto.cacheTtl)) {
+            this.cacheTtl = Duration.ofMillis(Integer.toUnsignedLong(
+                    protoMethod.getOptions().getExtension(ToolProto.cacheTtl)));
+        } else {
+            this.cacheTtl = options.getDefaultCacheTtl();
+        }
+        if (protoMethod.getOptions().hasExtension(ToolProto.methodCoalesce)) {
+            this.coalesced = protoMethod.getOptions().getExtension(ToolProto.methodCoalesce);
+        } else {
+            this.coalesced = options.isCoalesceCalls();
+        }
+        this.streamMaxItems = protoMethod.getOptions().hasExtension(ToolProto.streamMaxItems) ?
+                protoMethod.getOptions().getExtension(ToolProto.streamMaxItems) :
+                options.getDefaultStreamMaxItems();
+        this.streamMaxBytes = protoMethod.getOptions().hasExtension(ToolProto.streamMaxBytes) ?
+                protoMethod.getOptions().getExtension(ToolProto.streamMaxBytes) :
+                options.getDefaultStreamMaxBytes();
+        this.contextCodec = GrpcToolContextCodec.of(options,
+                protoMethod.getOptions().getExtension(ToolProto.contextKeys));
+        boolean fieldsArgument = protoMethod.getOptions().hasExtension(ToolProto.methodResponseFields) ?
+                protoMethod.getOptions().getExtension(ToolProto.methodResponseFields) :
+                options.isResponseFieldsArgument();
+        // Not offered if the request has a field of the same name
+        this.responseFields = fieldsArgument && protoMethod.getInputType()
+                .findFieldByName(RESPONSE_FIELDS_ARGUMENT) == null;
+        // Results kept by the result cache or the page buffer, and results of which only some
+        // fields are selected, must not pin the whole response through aliased bytes fields
+        boolean aliasing = cacheTtl == null && resultConverter.getPageSize() == 0 &&
+                           !responseFields;
+        ProtoProjection projection = ProtoProjection.of(protoMethod.getOutputType());
+        this.rawMethod = method.toBuilder(ByteStringMarshaller.INSTANCE,
+                ProtoResponseMarshaller.of(method.getResponseMarshaller(), projection,
+                        aliasing)).build();
+    }
+
+    /**
+     * Compiles the plan of a gRPC method descriptor, e.g. one from generated gRPC stubs.
+     *
+     * @param method The gRPC method descriptor
+     * @param <T>    The response message type
+     * @return The compiled method
+     * @throws IllegalArgumentException if the schema descriptor is not a
+     *                                  ProtoMethodDescriptorSupplier
+     */
+    public static <T extends Message> GrpcBridgeToolMethod<T> of(MethodDescriptor<?, T> method) {
+        return of(method, new GrpcBridgeToolOptions());
+    }
+
+    /**
+     * Compiles the plan of a gRPC method descriptor with the tool settings of a registration.
+     *
+     * @param method  The gRPC method descriptor
+     * @param options The tool settings, overridden by the method options
+     * @param <T>     The response message type
+     * @return The compiled method
+     * @throws IllegalArgumentException if the schema descriptor is not a
+     *                                  ProtoMethodDescriptorSupplier
+     */
+    public static <T extends Message> GrpcBridgeToolMethod<T> of(MethodDescriptor<?, T> method,
+                                                                 GrpcBridgeToolOptions options) {
+        Object obj = method.getSchemaDescriptor();
+        if (!(obj instanceof ProtoMethodDescriptorSupplier supplier)) {
+            throw new IllegalArgumentException("Schema descriptor is not a " +
+                                               "ProtoMethodDescriptorSupplier");
+        }
+        return new GrpcBridgeToolMethod<>(method, supplier.getMethodDescriptor(), options, null);
+    }
+
+    /**
+     * Compiles the plan of a protobuf method descriptor. Requests and responses are handled as
+     * dynamic messages.
+     *
+     * @param method The protobuf method descriptor
+     * @return The compiled method
+     */
+    public static GrpcBridgeToolMethod<? extends Message> of(Descriptors.MethodDescriptor method) {
+        return of(method, new GrpcBridgeToolOptions());
+    }
+
+    /**
+     * Compiles the plan of a protobuf method descriptor with the tool settings of a registration.
+     *
+     * @param method  The protobuf method descriptor
+     * @param options The tool settings, overridden by the method options
+     * @return The compiled method
+     */
+    public static GrpcBridgeToolMethod<? extends Message> of(Descriptors.MethodDescriptor method,
+                                                             GrpcBridgeToolOptions options) {
+        return of(method, options, null);
+    }
+
+    /**
+     * Compiles the plan of a protobuf method descriptor with the tool settings of a registration,
+     * whose large results are paged through the given buffer if the method is paged.
+     *
+     * @param method  The protobuf method descriptor
+     * @param options The tool settings, overridden by the method options
+     * @param pages   The buffer of paged results, usually shared by a registration, or null to
+     *                disable paging
+     * @return The compiled method
+     */
+    public static GrpcBridgeToolMethod<? extends Message> of(Descriptors.MethodDescriptor method,
+                                                             GrpcBridgeToolOptions options,
+                                                             @Nullable GrpcBridgeToolResultPages pages) {
+        return new GrpcBridgeToolMethod<>(GrpcUtils.toGrpcMethod(method), method, options, pages);
+    }
+
+    /**
+     * Returns the gRPC method descriptor.
+     *
+     * @return The gRPC method descriptor
+     */
+    public MethodDescriptor<?, T> getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the gRPC method descriptor that sends requests already encoded in protobuf wire
+     * format. Its response marshaller parses responses with a single copy, see
+     * {@link ProtoResponseMarshaller}, and skips the fields excluded by the {@code field_exclude}
+     * option. Responses of cacheable, paged and field-selecting tools are parsed without
+     * aliasing, as their results outlive the call.
+     *
+     * @return The gRPC method descriptor with a pass-through request marshaller
+     */
+    public MethodDescriptor<ByteString, T> getRawMethod() {
+        return rawMethod;
+    }
+
+    /**
+     * Returns the protobuf method descriptor.
+     *
+     * @return The protobuf method descriptor
+     */
+    public Descriptors.MethodDescriptor getProtoMethod() {
+        return protoMethod;
+    }
+
+    /**
+     * Returns the descriptor of the input message.
+     *
+     * @return The input message descriptor
+     */
+    public Descriptors.Descriptor getInputType() {
+        return protoMethod.getInputType();
+    }
+
+    /**
+     * Returns the descriptor of the output message.
+     *
+     * @return The output message descriptor
+     */
+    public Descriptors.Descriptor getOutputType() {
+        return protoMethod.getOutputType();
+    }
+
+    /**
+     * Returns the tool name.
+     *
+     * @return The tool name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the tool description.
+     *
+     * @return The tool description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the transcoder of the input message.
+     *
+     * @return The JSON transcoder
+     */
+    public ProtoJsonTranscoder getTranscoder() {
+        return transcoder;
+    }
+
+    /**
+     * Returns the result converter. The converter is stateless and shared by all callbacks.
+     *
+     * @return The result converter
+     */
+    public GrpcBridgeToolResultConverter<T> getResultConverter() {
+        return resultConverter;
+    }
+
+    /**
+     * Returns whether large results of this tool are returned page by page, with the further
+     * pages fetched by the page tool named {@link #getPageToolName()}.
+     *
+     * @return true if the tool is paged
+     */
+    public boolean isPaged() {
+        return resultConverter.getPageSize() > 0;
+    }
+
+    /**
+     * Returns the name of the tool fetching the next page of a paged result of this tool.
+     *
+     * @return The page tool name
+     */
+    public String getPageToolName() {
+        return name + PAGE_TOOL_SUFFIX;
+    }
+
+    /**
+     * Returns the profile the schemas of this tool are rendered with.
+     *
+     * @return The schema profile
+     */
+    public SchemaProfile getSchemaProfile() {
+        return schemaProfile;
+    }
+
+    /**
+     * Returns the timeout of a single call of this tool.
+     *
+     * @return The timeout, or null if calls have no deadline
+     */
+    @Nullable
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns whether the results of this tool may be cached.
+     *
+     * @return true if the method is marked as cacheable
+     */
+    public boolean isCacheable() {
+        return cacheTtl != null;
+    }
+
+    /**
+     * Returns how long a cached result of this tool stays valid.
+     *
+     * @return The time-to-live of cached results, or null if the tool is not cacheable
+     */
+    @Nullable
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * Returns whether identical concurrent calls of this tool share one in-flight call.
+     *
+     * @return true if calls are coalesced
+     */
+    public boolean isCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * Returns whether this is a server-streaming method.
+     *
+     * @return true if the method returns a stream of messages
+     */
+    public boolean isServerStreaming() {
+        return method.getType() == MethodDescriptor.MethodType.SERVER_STREAMING;
+    }
+
+    /**
+     * Returns the maximum number of messages read from a stream of this tool.
+     *
+     * @return The item budget, or 0 if unbounded
+     */
+    public int getStreamMaxItems() {
+        return streamMaxItems;
+    }
+
+    /**
+     * Returns the maximum total serialized size of the messages read from a stream of this tool.
+     *
+     * @return The byte budget, or 0 if unbounded
+     */
+    public int getStreamMaxBytes() {
+        return streamMaxBytes;
+    }
+
+    /**
+     * Returns the codec of the tool context forwarded to this method.
+     *
+     * @return The tool context codec
+     */
+    public GrpcToolContextCodec getContextCodec() {
+        return contextCodec;
+    }
+
+    /**
+     * Returns whether the tool offers the {@value #RESPONSE_FIELDS_ARGUMENT} argument, with which
+     * the LLM selects the fields of the result.
+     *
+     * @return true if the argument is in the input schema
+     */
+    public boolean hasResponseFieldsArgument() {
+        return responseFields;
+    }
+
+    /**
+     * Returns the JSON schema of the input message, generated on first access. The schema
+     * includes the {@value #RESPONSE_FIELDS_ARGUMENT} argument if the tool offers it.
+     *
+     * @return The JSON schema for the tool input
+     */
+    public String getInputSchema() {
+        String schema = inputSchema;
+        if (schema == null) {
+            schema = ProtoUtils.getJsonSchema(getInputType(), schemaProfile);
+            if (responseFields) {
+                schema = addResponseFieldsArgument(schema);
+            }
+            inputSchema = schema;
+        }
+        return schema;
+    }
+
+    private String addResponseFieldsArgument(String schema) {
+        ObjectNode node = JSONUtils.fromJson(schema, ObjectNode.class);
+        ObjectNode argument = node.withObjectProperty("properties").putObject(RESPONSE_FIELDS_ARGUMENT);
+        argument.put("type", "array");
+        argument.putObject("items").put("type", "string");
+        StringBuilder fields = new StringBuilder();
+        for (Descriptors.FieldDescriptor field : getOutputType().getFields()) {
+            if (!ProtoProjection.isExcluded(field)) {
+                fields.append(fields.isEmpty() ? "" : ", ").append(field.getName());
+            }
+        }
+        argument.put("description", "Optional. Only the fields of the result at these " +
+                                    "dot-separated paths are returned, e.g. \"a.b\". Top-level " +
+                                    "fields: " + fields);
+        return schemaProfile == SchemaProfile.STANDARD ?
+                node.toPrettyString() : JSONUtils.toJson(node);
+    }
+
+    /**
+     * Returns the JSON schema of the output message, generated on first access.
+     *
+     * @return The JSON schema for the tool output
+     */
+    public String getOutputSchema() {
+        String schema = outputSchema;
+        if (schema == null) {
+            outputSchema = schema = ProtoUtils.getJsonSchema(getOutputType(), schemaProfile);
+        }
+        return schema;
+    }
+
+    /**
+     * Returns the tool definition of this method, created on first access.
+     *
+     * @return The tool definition
+     * @throws IllegalArgumentException if the method is not a unary method
+     */
+    public GrpcBridgeToolDefinition<T> getDefinition() {
+        GrpcBridgeToolDefinition<T> def = definition;
+        if (def == null) {
+            definition = def = GrpcBridgeToolDefinition.of(this);
+        }
+        return def;
+    }
+
+    /**
+     * Returns the streaming tool definition of this method, created on first access.
+     *
+     * @return The streaming tool definition
+     * @throws IllegalArgumentException if the method is not a server-streaming method
+     */
+    public GrpcBridgeToolStreamDefinition<T> getStreamDefinition() {
+        GrpcBridgeToolStreamDefinition<T> def = streamDefinition;
+        if (def == null) {
+            streamDefinition = def = GrpcBridgeToolStreamDefinition.of(this);
+        }
+        return def;
+    }
+
+    /**
+     * Runs the request and response paths of this method on synthetic messages, so the first
+     * call neither builds the schemas and the definition nor runs cold code. A sample request
+     * with every field set is transcoded from JSON, and a sample response is parsed with the
+     * response marshaller and formatted with the result converter.
+     *
+     * @param rounds How often the sample messages are encoded and decoded
+     */
+    public void warmUp(int rounds) {
+        getInputSchema();
+        getOutputSchema();
+        if (isServerStreaming()) {
+            getStreamDefinition();
+        } else {
+            getDefinition();
+        }
+        String request;
+        try {
+            request = JsonFormat.printer().print(sample(getInputType(), 0));
+        } catch (InvalidProtocolBufferException e) {
+            throw new RuntimeException(e);
+        }
+        ByteString response = sample(getOutputType(), 0).toByteString();
+        for (int i = 0; i < rounds; i++) {
+            transcoder.transcode(request);
+            // A single element of each repeated field is never paged
+            resultConverter.convert(rawMethod.getResponseMarshaller().parse(response.newInput()));
+        }
+    }
+
+    /**
+     * Creates a message with every field set, one element per repeated field and only the first
+     * field of each oneof. Well-known types and messages nested deeper than three levels are
+     * left unset.
+     */
+    private static Message sample(Descriptors.Descriptor type, int depth) {
+        DynamicMessage.Builder builder = DynamicMessage.newBuilder(type);
+        for (Descriptors.FieldDescriptor field : type.getFields()) {
+            Descriptors.OneofDescriptor oneof = field.getRealContainingOneof();
+            if (oneof != null && oneof.getField(0) != field) {
+                continue;
+            }
+            Object value = switch (field.getJavaType()) {
+                case INT -> 1;
+                case LONG -> 1L;
+                case FLOAT -> 1.5f;
+                case DOUBLE -> 1.5;
+                case BOOLEAN -> true;
+                case STRING -> "sample";
+                case BYTE_STRING -> ByteString.copyFromUtf8("sample");
+                case ENUM -> field.getEnumType().getValues()
+                        .get(field.getEnumType().getValues().size() - 1);
+                case MESSAGE -> depth >= 3 ||
+                                field.getMessageType().getFullName().startsWith("google.protobuf.") ?
+                        null : sample(field.getMessageType(), depth + 1);
+            };
+            if (value == null) {
+                continue;
+            }
+            if (field.isRepeated()) {
+                builder.addRepeatedField(field, value);
+            } else {
+                builder.setField(field, value);
+            }
+        }
+        return builder.build();
+    }
+}
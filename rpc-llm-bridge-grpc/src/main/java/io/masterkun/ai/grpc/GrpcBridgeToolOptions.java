@@ -0,0 +1,217 @@
+package io.masterkun.ai.grpc;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tool-level settings of a registration. These are the defaults for all tools of the
+ * registration, and method options in the proto definitions take precedence over them.
+ */
+public class GrpcBridgeToolOptions {
+    private SchemaProfile schemaProfile;
+    private ResultFormat resultFormat;
+    // UTF-8 size of a rendered result in bytes, unbounded if 0
+    private int defaultResultMaxBytes;
+    private Duration defaultMethodTimeout;
+    private Duration defaultCacheTtl = Duration.ofMinutes(1);
+    private int resultCacheMaxEntries = 1024;
+    // Total serialized size of the cached results in bytes
+    private long resultCacheMaxWeight = 16 * 1024 * 1024;
+    private boolean coalesceCalls;
+    private int defaultStreamMaxItems = 100;
+    // Total serialized size of the messages of a stream in bytes
+    private int defaultStreamMaxBytes = 256 * 1024;
+    // Forwarded tool context keys, all keys except the call history if null
+    private List<String> contextKeys;
+    private boolean compressContext;
+    private boolean contextByReference;
+    // Also send the JSON tool-context-bin header read by servers before tool-context-pb-bin
+    private boolean legacyContextHeader;
+    // Encoded sizes of the forwarded tool context in bytes
+    private int contextMaxValueBytes = 1024;
+    private int contextMaxBytes = 4096;
+    private ContextOversizePolicy contextOversizePolicy = ContextOversizePolicy.TRUNCATE;
+    // Elements of the largest repeated field per page, paging is disabled if 0
+    private int defaultPageSize;
+    private Duration pageBufferTtl = Duration.ofMinutes(10);
+    private int pageBufferMaxEntries = 256;
+    // Total serialized size of the paged results in bytes
+    private long pageBufferMaxWeight = 32 * 1024 * 1024;
+    private boolean responseFieldsArgument;
+
+    public SchemaProfile getSchemaProfile() {
+        return schemaProfile;
+    }
+
+    public void setSchemaProfile(SchemaProfile schemaProfile) {
+        this.schemaProfile = schemaProfile;
+    }
+
+    public ResultFormat getResultFormat() {
+        return resultFormat;
+    }
+
+    public void setResultFormat(ResultFormat resultFormat) {
+        this.resultFormat = resultFormat;
+    }
+
+    public int getDefaultResultMaxBytes() {
+        return defaultResultMaxBytes;
+    }
+
+    public void setDefaultResultMaxBytes(int defaultResultMaxBytes) {
+        this.defaultResultMaxBytes = defaultResultMaxBytes;
+    }
+
+    public Duration getDefaultMethodTimeout() {
+        return defaultMethodTimeout;
+    }
+
+    public void setDefaultMethodTimeout(Duration defaultMethodTimeout) {
+        this.defaultMethodTimeout = defaultMethodTimeout;
+    }
+
+    public Duration getDefaultCacheTtl() {
+        return defaultCacheTtl;
+    }
+
+    public void setDefaultCacheTtl(Duration defaultCacheTtl) {
+        this.defaultCacheTtl = defaultCacheTtl;
+    }
+
+    public int getResultCacheMaxEntries() {
+        return resultCacheMaxEntries;
+    }
+
+    public void setResultCacheMaxEntries(int resultCacheMaxEntries) {
+        this.resultCacheMaxEntries = resultCacheMaxEntries;
+    }
+
+    public long getResultCacheMaxWeight() {
+        return resultCacheMaxWeight;
+    }
+
+    public void setResultCacheMaxWeight(long resultCacheMaxWeight) {
+        this.resultCacheMaxWeight = resultCacheMaxWeight;
+    }
+
+    public boolean isCoalesceCalls() {
+        return coalesceCalls;
+    }
+
+    public void setCoalesceCalls(boolean coalesceCalls) {
+        this.coalesceCalls = coalesceCalls;
+    }
+
+    public int getDefaultStreamMaxItems() {
+        return defaultStreamMaxItems;
+    }
+
+    public void setDefaultStreamMaxItems(int defaultStreamMaxItems) {
+        this.defaultStreamMaxItems = defaultStreamMaxItems;
+    }
+
+    public int getDefaultStreamMaxBytes() {
+        return defaultStreamMaxBytes;
+    }
+
+    public void setDefaultStreamMaxBytes(int defaultStreamMaxBytes) {
+        this.defaultStreamMaxBytes = defaultStreamMaxBytes;
+    }
+
+    public List<String> getContextKeys() {
+        return contextKeys;
+    }
+
+    public void setContextKeys(List<String> contextKeys) {
+        this.contextKeys = contextKeys;
+    }
+
+    public boolean isCompressContext() {
+        return compressContext;
+    }
+
+    public void setCompressContext(boolean compressContext) {
+        this.compressContext = compressContext;
+    }
+
+    public boolean isContextByReference() {
+        return contextByReference;
+    }
+
+    public void setContextByReference(boolean contextByReference) {
+        this.contextByReference = contextByReference;
+    }
+
+    public boolean isLegacyContextHeader() {
+        return legacyContextHeader;
+    }
+
+    public void setLegacyContextHeader(boolean legacyContextHeader) {
+        this.legacyContextHeader = legacyContextHeader;
+    }
+
+    public int getContextMaxValueBytes() {
+        return contextMaxValueBytes;
+    }
+
+    public void setContextMaxValueBytes(int contextMaxValueBytes) {
+        this.contextMaxValueBytes = contextMaxValueBytes;
+    }
+
+    public int getContextMaxBytes() {
+        return contextMaxBytes;
+    }
+
+    public void setContextMaxBytes(int contextMaxBytes) {
+        this.contextMaxBytes = contextMaxBytes;
+    }
+
+    public ContextOversizePolicy getContextOversizePolicy() {
+        return contextOversizePolicy;
+    }
+
+    public void setContextOversizePolicy(ContextOversizePolicy contextOversizePolicy) {
+        this.contextOversizePolicy = contextOversizePolicy;
+    }
+
+    public int getDefaultPageSize() {
+        return defaultPageSize;
+    }
+
+    public void setDefaultPageSize(int defaultPageSize) {
+        this.defaultPageSize = defaultPageSize;
+    }
+
+    public Duration getPageBufferTtl() {
+        return pageBufferTtl;
+    }
+
+    public void setPageBufferTtl(Duration pageBufferTtl) {
+        this.pageBufferTtl = pageBufferTtl;
+    }
+
+    public int getPageBufferMaxEntries() {
+        return pageBufferMaxEntries;
+    }
+
+    public void setPageBufferMaxEntries(int pageBufferMaxEntries) {
+        this.pageBufferMaxEntries = pageBufferMaxEntries;
+    }
+
+    public long getPageBufferMaxWeight() {
+        return pageBufferMaxWeight;
+    }
+
+    public void setPageBufferMaxWeight(long pageBufferMaxWeight) {
+        this.pageBufferMaxWeight = pageBufferMaxWeight;
+    }
+
+    public boolean isResponseFieldsArgument() {
+        return responseFieldsArgument;
+    }
+
+    public void setResponseFieldsArgument(boolean responseFieldsArgument) {
+        this.responseFieldsArgument = responseFieldsArgument;
+    }
+}
@@ -0,0 +1,66 @@
+package io.masterkun.ai.grpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.protobuf.Message;
+import io.masterkun.ai.tool.BridgeToolCallback;
+import io.masterkun.ai.tool.BridgeToolContext;
+import io.masterkun.ai.tool.BridgeToolDefinition;
+
+/**
+ * A callback of the page tool generated for a paged gRPC bridge tool. Pages are sliced from the
+ * result buffered by the first call of the paged tool, so the backend is not called again.
+ */
+public class GrpcBridgeToolPageCallback implements BridgeToolCallback<String> {
+    private final GrpcBridgeToolPageDefinition definition;
+    private final GrpcBridgeToolResultConverter<? extends Message> resultConverter;
+
+    /**
+     * Constructs a GrpcBridgeToolPageCallback with the specified definition.
+     *
+     * @param definition The page tool definition
+     */
+    public GrpcBridgeToolPageCallback(GrpcBridgeToolPageDefinition definition) {
+        this.definition = definition;
+        this.resultConverter = definition.getToolMethod().getResultConverter();
+    }
+
+    /**
+     * Factory method to create the page tool callback of a compiled method.
+     *
+     * @param toolMethod The compiled gRPC method
+     * @return A new GrpcBridgeToolPageCallback instance
+     * @throws IllegalArgumentException if the method is not paged
+     */
+    public static GrpcBridgeToolPageCallback of(GrpcBridgeToolMethod<? extends Message> toolMethod) {
+        return new GrpcBridgeToolPageCallback(GrpcBridgeToolPageDefinition.of(toolMethod));
+    }
+
+    /**
+     * Returns the tool definition associated with this callback.
+     *
+     * @return The page tool definition
+     */
+    @Override
+    public BridgeToolDefinition<String> getToolDefinition() {
+        return definition;
+    }
+
+    /**
+     * Returns the page the cursor in the tool input points to.
+     *
+     * @param toolInput   The JSON input with the cursor
+     * @param toolContext The tool context, not used
+     * @return The rendered page
+     * @throws IllegalArgumentException if the input has no cursor, or the cursor is malformed or
+     *                                  expired
+     */
+    @Override
+    public String call(String toolInput, BridgeToolContext toolContext) {
+        JsonNode input = JSONUtils.fromJson(toolInput, JsonNode.class);
+        JsonNode cursor = input == null ? null : input.get("cursor");
+        if (cursor == null || !cursor.isTextual()) {
+            throw new IllegalArgumentException("Missing cursor");
+        }
+        return resultConverter.convertPage(cursor.asText());
+    }
+}
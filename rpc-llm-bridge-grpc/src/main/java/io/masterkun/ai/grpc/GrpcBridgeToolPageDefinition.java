@@ -0,0 +1,88 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.Message;
+import io.masterkun.ai.tool.BridgeToolDefinition;
+import io.masterkun.ai.tool.BridgeToolResultConverterProvider;
+
+/**
+ * A definition of the page tool generated for a paged gRPC bridge tool. The page tool takes the
+ * cursor returned with a page and returns the next page of the same result, which is already
+ * rendered, so its result converter passes the text through.
+ */
+public class GrpcBridgeToolPageDefinition implements BridgeToolDefinition<String> {
+    private static final String INPUT_SCHEMA = """
+            {"type":"object","properties":{"cursor":{"type":"string",\
+            "description":"The cursor returned with the previous page"}},\
+            "required":["cursor"]}""";
+
+    private final GrpcBridgeToolMethod<? extends Message> toolMethod;
+
+    private GrpcBridgeToolPageDefinition(GrpcBridgeToolMethod<? extends Message> toolMethod) {
+        this.toolMethod = toolMethod;
+    }
+
+    /**
+     * Creates the page tool definition of a compiled gRPC method.
+     *
+     * @param toolMethod The compiled gRPC method
+     * @return A new GrpcBridgeToolPageDefinition instance
+     * @throws IllegalArgumentException if the method is not paged
+     */
+    public static GrpcBridgeToolPageDefinition of(GrpcBridgeToolMethod<? extends Message> toolMethod) {
+        if (!toolMethod.isPaged()) {
+            throw new IllegalArgumentException("Method is not paged: " + toolMethod.getName());
+        }
+        return new GrpcBridgeToolPageDefinition(toolMethod);
+    }
+
+    /**
+     * Returns the name of the page tool, which is the name of the paged tool with the
+     * {@link GrpcBridgeToolMethod#PAGE_TOOL_SUFFIX}.
+     *
+     * @return The tool name
+     */
+    @Override
+    public String name() {
+        return toolMethod.getPageToolName();
+    }
+
+    /**
+     * Returns the description of the page tool.
+     *
+     * @return The tool description
+     */
+    @Override
+    public String description() {
+        return "Returns the next page of a result of the tool " + toolMethod.getName() +
+               ", using the cursor at the end of the previous page";
+    }
+
+    /**
+     * Returns the JSON schema for the input of the page tool, an object with the cursor.
+     *
+     * @return The JSON schema for the tool input
+     */
+    @Override
+    public String inputSchema() {
+        return INPUT_SCHEMA;
+    }
+
+    /**
+     * Returns a provider of a converter that returns the rendered page as is.
+     *
+     * @return A provider for creating result converters
+     */
+    @Override
+    public BridgeToolResultConverterProvider<String> resultConverter() {
+        return () -> result -> result;
+    }
+
+    /**
+     * Returns the compiled gRPC method whose results are paged.
+     *
+     * @return The compiled gRPC method
+     */
+    public GrpcBridgeToolMethod<? extends Message> getToolMethod() {
+        return toolMethod;
+    }
+}
@@ -1,25 +1,415 @@
 package io.masterkun.ai.grpc;
 
+import com.google.protobuf.Descriptors;
 import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
 import io.masterkun.ai.tool.BridgeToolResultConverter;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * A converter for transforming gRPC response messages to string representations. This class is
  * responsible for converting protobuf Message objects to formatted strings that can be returned as
- * tool results in the MCP framework.
+ * tool results in the MCP framework. The text is rendered in the {@link ResultFormat} of the
+ * tool.
+ * <p>
+ * If the tool has a result budget, formatting stops once the text reaches the budget, so an
+ * oversized result is never materialized. The text is cut back to the last complete item and
+ * ends with the number of omitted items, like {@code …and 4,812 more items}. JSON stays valid:
+ * arrays of messages are closed after the last complete element, and a single message is
+ * rendered again with as many elements of its largest repeated field as fit.
+ * <p>
+ * If the tool is paged, a result whose largest repeated field has more elements than the page
+ * size is kept in a {@link GrpcBridgeToolResultPages} buffer, and only its first page is
+ * returned. The page ends with a cursor, which the LLM passes to the page tool of the tool to
+ * fetch the next page, see {@link #convertPage(String)}.
  *
  * @param <T> The type of protobuf Message to convert
  */
 public class GrpcBridgeToolResultConverter<T extends Message> implements BridgeToolResultConverter<T> {
+    private static final JsonFormat.Printer JSON_PRINTER = JsonFormat.printer()
+            .preservingProtoFieldNames()
+            .omittingInsignificantWhitespace();
+    private static final Runnable NO_LISTENER = () -> {
+    };
+
+    private final ResultFormat format;
+    private final int maxBytes;
+    private final int pageSize;
+    private final GrpcBridgeToolResultPages pages;
+    private final String pageToolName;
+    private final ProtoFormatter formatter = new ProtoFormatter();
+    private final ProtoTableFormatter tableFormatter = new ProtoTableFormatter(formatter);
+
+    /**
+     * Creates a converter rendering results in the outline format.
+     */
+    public GrpcBridgeToolResultConverter() {
+        this(ResultFormat.OUTLINE, 0);
+    }
+
+    /**
+     * Creates a converter rendering results in the given format.
+     *
+     * @param format The result format
+     */
+    public GrpcBridgeToolResultConverter(ResultFormat format) {
+        this(format, 0);
+    }
 
     /**
-     * Converts a protobuf Message to a formatted string representation.
+     * Creates a converter rendering results in the given format within a budget.
+     *
+     * @param format   The result format
+     * @param maxBytes The maximum UTF-8 size of a result in bytes, 0 for unbounded
+     */
+    public GrpcBridgeToolResultConverter(ResultFormat format, int maxBytes) {
+        this(format, maxBytes, 0, null, null);
+    }
+
+    /**
+     * Creates a converter rendering results in the given format within a budget, and returning
+     * large results page by page.
+     *
+     * @param format       The result format
+     * @param maxBytes     The maximum UTF-8 size of a result in bytes, 0 for unbounded
+     * @param pageSize     The number of elements of the largest repeated field per page, 0 to
+     *                     disable paging
+     * @param pages        The buffer of paged results, or null to disable paging
+     * @param pageToolName The name of the tool fetching the next page, mentioned in the pages
+     */
+    public GrpcBridgeToolResultConverter(ResultFormat format, int maxBytes, int pageSize,
+                                         @Nullable GrpcBridgeToolResultPages pages,
+                                         @Nullable String pageToolName) {
+        this.format = format;
+        this.maxBytes = maxBytes;
+        this.pageSize = pages == null ? 0 : pageSize;
+        this.pages = pages;
+        this.pageToolName = pageToolName;
+    }
+
+    /**
+     * Converts a protobuf Message to a formatted string representation. The result of a paged
+     * tool is buffered and only its first page is converted if it is larger than a page.
      *
      * @param result The protobuf Message to convert
      * @return A string representation of the message
      */
     @Override
     public String convert(T result) {
-        return ProtoUtils.formatString(result);
+        if (pageSize > 0 && result != null) {
+            Descriptors.FieldDescriptor field = pagedField(result);
+            if (field != null && result.getRepeatedFieldCount(field) > pageSize) {
+                String id = pages.put(result);
+                if (id != null) {
+                    return page(id, result, field, 0);
+                }
+            }
+        }
+        return render(result);
+    }
+
+    /**
+     * Converts the page of a buffered result a cursor points to. The cursor is the one returned
+     * with the previous page.
+     *
+     * @param cursor The cursor of the page
+     * @return A string representation of the page, with the cursor of the next page if there is
+     * one
+     * @throws IllegalArgumentException if the cursor is malformed, or its result has expired
+     */
+    @SuppressWarnings("unchecked")
+    public String convertPage(String cursor) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Paging is disabled");
+        }
+        int separator = cursor == null ? -1 : cursor.lastIndexOf(':');
+        int offset;
+        try {
+            offset = separator < 0 ? -1 : Integer.parseInt(cursor.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            offset = -1;
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        // Buffered by this converter, so it has the response type of the tool
+        T result = (T) pages.get(cursor.substring(0, separator));
+        if (result == null) {
+            throw new IllegalArgumentException("Cursor expired, call the tool again: " + cursor);
+        }
+        Descriptors.FieldDescriptor field = pagedField(result);
+        if (field == null || offset >= result.getRepeatedFieldCount(field)) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        return page(cursor.substring(0, separator), result, field, offset);
+    }
+
+    /**
+     * Converts the elements of the paged field from an offset on, followed by the position of
+     * the page and the cursor of the next page. The first page keeps the other fields of the
+     * result, the further pages only contain the paged field.
+     */
+    private String page(String id, T result, Descriptors.FieldDescriptor field, int offset) {
+        int total = result.getRepeatedFieldCount(field);
+        int end = Math.min(total, offset + pageSize);
+        StringBuilder text = new StringBuilder(render(slice(result, field, offset, end)))
+                .append(String.format(Locale.ROOT, "\n…items %,d-%,d of %,d", offset + 1, end,
+                        total));
+        if (end < total) {
+            text.append(", call ")
+                    .append(pageToolName)
+                    .append(" with cursor \"")
+                    .append(id)
+                    .append(':')
+                    .append(end)
+                    .append("\" for the next page");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns a result with the elements of a repeated field from an offset to an end. The other
+     * fields are kept if the offset is 0.
+     */
+    @SuppressWarnings("unchecked")
+    private T slice(T result, Descriptors.FieldDescriptor field, int offset, int end) {
+        Message.Builder builder = offset == 0 ?
+                result.toBuilder().clearField(field) :
+                result.newBuilderForType();
+        for (int i = offset; i < end; i++) {
+            builder.addRepeatedField(field, result.getRepeatedField(field, i));
+        }
+        return (T) builder.build();
+    }
+
+    /**
+     * Returns the repeated field of a result that is paged, i.e. the non-map repeated field with
+     * the most elements, or null if there is none.
+     */
+    @Nullable
+    private static Descriptors.FieldDescriptor pagedField(Message result) {
+        Descriptors.FieldDescriptor paged = null;
+        int max = 0;
+        for (Descriptors.FieldDescriptor field : result.getDescriptorForType().getFields()) {
+            if (field.isRepeated() && !field.isMapField()) {
+                int count = result.getRepeatedFieldCount(field);
+                if (count > max) {
+                    max = count;
+                    paged = field;
+                }
+            }
+        }
+        return paged;
+    }
+
+    private String render(T result) {
+        if (maxBytes > 0) {
+            BudgetedAppendable budget = new BudgetedAppendable(maxBytes);
+            try {
+                formatTo(result, budget, budget::itemWritten);
+            } catch (BudgetedAppendable.BudgetExceededException e) {
+                return format == ResultFormat.JSON ? truncateJson(result, budget) :
+                        budget.truncate(countItems(result));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return budget.toString();
+        }
+        StringBuilder builder = new StringBuilder();
+        try {
+            formatTo(result, builder);
+        } catch (IOException e) {
+            // Not thrown by StringBuilder
+            throw new RuntimeException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Renders a JSON result that exceeds the budget with the most elements of its largest
+     * repeated field that fit, found by bisection. Every attempt stops at the budget, so this
+     * formats at most the budget times the logarithm of the number of elements. Falls back to
+     * the cut text if not even the result without the elements fits.
+     */
+    private String truncateJson(T result, BudgetedAppendable exceeded) {
+        Descriptors.FieldDescriptor field = pagedField(result);
+        if (field == null) {
+            return exceeded.truncate(0);
+        }
+        int total = result.getRepeatedFieldCount(field);
+        // The whole field is known not to fit
+        int fits = -1;
+        int exceeds = total;
+        BudgetedAppendable fitting = null;
+        while (exceeds - fits > 1) {
+            int count = (fits + exceeds) >>> 1;
+            BudgetedAppendable budget = new BudgetedAppendable(maxBytes);
+            try {
+                JSON_PRINTER.appendTo(slice(result, field, 0, count), budget);
+                fits = count;
+                fitting = budget;
+            } catch (BudgetedAppendable.BudgetExceededException e) {
+                exceeds = count;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return fitting == null ? exceeded.truncate(0) : fitting.summarize(total - fits);
+    }
+
+    /**
+     * Converts a list of protobuf Messages, e.g. the messages of a stream, to one string. Tables
+     * and JSON arrays span all messages, outlines are written one after another.
+     *
+     * @param results The protobuf Messages to convert
+     * @return A string representation of the messages
+     */
+    public String convertAll(List<? extends T> results) {
+        if (maxBytes > 0) {
+            BudgetedAppendable budget = new BudgetedAppendable(maxBytes);
+            try {
+                formatAllTo(results, budget, budget::itemWritten);
+            } catch (BudgetedAppendable.BudgetExceededException e) {
+                return format == ResultFormat.JSON ? budget.truncateArray(results.size()) :
+                        budget.truncate(results.size());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return budget.toString();
+        }
+        StringBuilder builder = new StringBuilder();
+        try {
+            formatAllTo(results, builder);
+        } catch (IOException e) {
+            // Not thrown by StringBuilder
+            throw new RuntimeException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Formats a protobuf Message into an appendable.
+     *
+     * @param result The protobuf Message to format
+     * @param out    The appendable to write to
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatTo(T result, Appendable out) throws IOException {
+        formatTo(result, out, NO_LISTENER);
+    }
+
+    /**
+     * Formats a protobuf Message into an appendable, and reports every complete top-level item,
+     * i.e. an element of a repeated field of the outline, or a table row. JSON reports none.
+     *
+     * @param result      The protobuf Message to format
+     * @param out         The appendable to write to
+     * @param itemWritten Called after every complete top-level item
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatTo(T result, Appendable out, Runnable itemWritten) throws IOException {
+        switch (format) {
+            case OUTLINE -> formatter.formatTo(result, out, itemWritten);
+            case JSON -> JSON_PRINTER.appendTo(result, out);
+            case TABLE -> tableFormatter.formatTo(result, out, itemWritten);
+        }
+    }
+
+    /**
+     * Formats a list of protobuf Messages into an appendable, see {@link #convertAll(List)}.
+     *
+     * @param results The protobuf Messages to format
+     * @param out     The appendable to write to
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatAllTo(List<? extends T> results, Appendable out) throws IOException {
+        formatAllTo(results, out, NO_LISTENER);
+    }
+
+    /**
+     * Formats a list of protobuf Messages into an appendable, and reports every complete
+     * message, or every table row for tables.
+     *
+     * @param results     The protobuf Messages to format
+     * @param out         The appendable to write to
+     * @param itemWritten Called after every complete message or table row
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatAllTo(List<? extends T> results, Appendable out, Runnable itemWritten)
+            throws IOException {
+        switch (format) {
+            case OUTLINE -> {
+                for (int i = 0; i < results.size(); i++) {
+                    if (i > 0) {
+                        out.append('\n');
+                    }
+                    // Every result is an item, not the elements within it
+                    formatter.formatTo(results.get(i), out);
+                    itemWritten.run();
+                }
+            }
+            case JSON -> {
+                out.append('[');
+                for (int i = 0; i < results.size(); i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    JSON_PRINTER.appendTo(results.get(i), out);
+                    itemWritten.run();
+                }
+                out.append(']');
+            }
+            case TABLE -> tableFormatter.formatAllTo(results, out, itemWritten);
+        }
+    }
+
+    /**
+     * Counts the top-level items of a result the formatter marks, i.e. the elements of the
+     * repeated fields of the outline, or the table rows. JSON is not marked.
+     */
+    private int countItems(T result) {
+        int count = 0;
+        if (format == ResultFormat.JSON) {
+            return count;
+        }
+        for (Descriptors.FieldDescriptor field : result.getDescriptorForType().getFields()) {
+            boolean table = !field.isMapField() &&
+                            field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE;
+            if (field.isRepeated() && (format == ResultFormat.OUTLINE || table)) {
+                count += result.getRepeatedFieldCount(field);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the maximum UTF-8 size of a result in bytes.
+     *
+     * @return The result budget, 0 if unbounded
+     */
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of elements of the largest repeated field per page.
+     *
+     * @return The page size, 0 if paging is disabled
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns the format results are rendered in.
+     *
+     * @return The result format
+     */
+    public ResultFormat getFormat() {
+        return format;
     }
 }
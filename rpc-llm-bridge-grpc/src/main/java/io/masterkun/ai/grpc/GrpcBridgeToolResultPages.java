@@ -0,0 +1,99 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.Message;
+import io.masterkun.ai.tool.BridgeToolResultCache;
+
+import javax.annotation.Nullable;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * A buffer of paged results, from which the further pages of a result are sliced without calling
+ * the backend again. Results are kept by a random id that is part of the cursors handed to the
+ * LLM. They expire after a time-to-live, and the least recently used results are evicted once the
+ * number of results or their total serialized size exceeds the configured bounds.
+ * <p>
+ * This class is thread-safe.
+ */
+public class GrpcBridgeToolResultPages {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder ID_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final BridgeToolResultCache<Message> results;
+    private final long maxWeight;
+    private final Duration ttl;
+
+    /**
+     * Creates a page buffer.
+     *
+     * @param maxEntries The maximum number of buffered results
+     * @param maxWeight  The maximum total serialized size of the buffered results in bytes
+     * @param ttl        How long a buffered result can be paged through
+     * @throws IllegalArgumentException if a bound is not positive
+     */
+    public GrpcBridgeToolResultPages(int maxEntries, long maxWeight, Duration ttl) {
+        this.results = new BridgeToolResultCache<>(maxEntries, maxWeight,
+                Message::getSerializedSize);
+        this.maxWeight = maxWeight;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Creates a page buffer bounded by the page buffer settings of the tool options.
+     *
+     * @param options The tool options
+     */
+    public GrpcBridgeToolResultPages(GrpcBridgeToolOptions options) {
+        this(options.getPageBufferMaxEntries(), options.getPageBufferMaxWeight(),
+                options.getPageBufferTtl());
+    }
+
+    /**
+     * Buffers a result.
+     *
+     * @param result The complete result
+     * @return The id of the buffered result, or null if the result is larger than the buffer
+     */
+    @Nullable
+    String put(Message result) {
+        if (result.getSerializedSize() > maxWeight) {
+            return null;
+        }
+        byte[] bytes = new byte[12];
+        RANDOM.nextBytes(bytes);
+        String id = ID_ENCODER.encodeToString(bytes);
+        results.put(id, result, ttl);
+        return id;
+    }
+
+    /**
+     * Returns a buffered result.
+     *
+     * @param id The id of the result
+     * @return The result, or null if it has expired or been evicted
+     */
+    @Nullable
+    Message get(String id) {
+        return results.get(id);
+    }
+
+    /**
+     * Returns the number of buffered results, including expired ones not removed yet.
+     *
+     * @return The number of results
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * Returns a snapshot of the buffer counters, where a miss is a cursor whose result has
+     * expired or been evicted.
+     *
+     * @return The buffer statistics
+     */
+    public BridgeToolResultCache.Stats stats() {
+        return results.stats();
+    }
+}
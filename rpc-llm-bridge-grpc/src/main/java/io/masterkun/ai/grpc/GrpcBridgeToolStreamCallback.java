@@ -0,0 +1,314 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.masterkun.ai.tool.BridgeToolContext;
+import io.masterkun.ai.tool.BridgeToolDefinition;
+import io.masterkun.ai.tool.BridgeToolMetadata;
+import io.masterkun.ai.tool.BridgeToolStreamCallback;
+import io.masterkun.ai.tool.BridgeToolTimeoutException;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * A callback implementation for gRPC bridge tools backed by server-streaming methods. Every
+ * subscription to {@link #callStream} starts one call, and messages are only requested from the
+ * server as far as the subscriber requests them, so a slow consumer holds back the backend instead
+ * of buffering the stream.
+ * <p>
+ * The stream stops early once the item or byte budget of the method is used up. The subscriber
+ * then completes normally with the messages received so far, and the call is cancelled upstream
+ * so the backend stops producing data nobody will read.
+ * <p>
+ * If the tool offers the response fields argument and the input has it, every streamed message
+ * only contains the selected fields, and the byte budget counts the selected fields only.
+ *
+ * @param <T> The response message type from the gRPC service
+ */
+public class GrpcBridgeToolStreamCallback<T extends Message> implements BridgeToolStreamCallback<T> {
+    private static final BridgeToolMetadata DEFAULT_METADATA = new BridgeToolMetadata() {
+    };
+
+    private final GrpcBridgeToolStreamDefinition<T> definition;
+    private final BridgeToolMetadata metadata;
+    private final Channel channel;
+    private final GrpcBridgeToolMethod<T> toolMethod;
+
+    /**
+     * Constructs a GrpcBridgeToolStreamCallback with the specified definition, metadata, and
+     * channel.
+     *
+     * @param definition The streaming tool definition
+     * @param metadata   The bridge tool metadata
+     * @param channel    The channel for communication with the gRPC service
+     */
+    public GrpcBridgeToolStreamCallback(GrpcBridgeToolStreamDefinition<T> definition,
+                                        BridgeToolMetadata metadata, Channel channel) {
+        this.definition = definition;
+        this.metadata = metadata;
+        this.channel = channel;
+        this.toolMethod = definition.getToolMethod();
+    }
+
+    /**
+     * Factory method to create a GrpcBridgeToolStreamCallback instance from a compiled method.
+     *
+     * @param toolMethod The compiled server-streaming gRPC method
+     * @param channel    The channel for communication with the gRPC service
+     * @param <T>        The response message type
+     * @return A new GrpcBridgeToolStreamCallback instance
+     * @throws IllegalArgumentException if the method is not a server-streaming method
+     */
+    public static <T extends Message> GrpcBridgeToolStreamCallback<T> of(GrpcBridgeToolMethod<T> toolMethod,
+                                                                         Channel channel) {
+        return new GrpcBridgeToolStreamCallback<>(toolMethod.getStreamDefinition(),
+                DEFAULT_METADATA, channel);
+    }
+
+    /**
+     * Factory method to create a GrpcBridgeToolStreamCallback instance using a protobuf method
+     * descriptor.
+     *
+     * @param method  The protobuf method descriptor of a server-streaming method
+     * @param channel The channel for communication with the gRPC service
+     * @return A new GrpcBridgeToolStreamCallback instance
+     * @throws IllegalArgumentException if the method is not a server-streaming method
+     */
+    public static GrpcBridgeToolStreamCallback<? extends Message> of(Descriptors.MethodDescriptor method,
+                                                                     Channel channel) {
+        return of(GrpcBridgeToolMethod.of(method), channel);
+    }
+
+    /**
+     * Returns the tool definition associated with this callback.
+     *
+     * @return The bridge tool definition
+     */
+    @Override
+    public BridgeToolDefinition<List<T>> getToolDefinition() {
+        return definition;
+    }
+
+    /**
+     * Returns the tool metadata associated with this callback.
+     *
+     * @return The bridge tool metadata
+     */
+    @Override
+    public BridgeToolMetadata getToolMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Returns the channel the calls of this callback are sent over.
+     *
+     * @return The channel
+     */
+    Channel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Starts a server-streaming call for every subscriber. The call deadline is resolved like for
+     * unary calls, see {@link GrpcBridgeToolCallback#callAsync(String, BridgeToolContext)}.
+     *
+     * @param toolInput   The JSON input for the gRPC method
+     * @param toolContext The tool context
+     * @return A publisher of the streamed messages
+     */
+    @Override
+    public Flow.Publisher<T> callStream(String toolInput, BridgeToolContext toolContext) {
+        return subscriber -> {
+            ByteString request;
+            try {
+                request = toolMethod.getTranscoder().transcode(toolInput);
+            } catch (RuntimeException e) {
+                fail(subscriber, e);
+                return;
+            }
+            CallOptions callOptions = CallOptions.DEFAULT;
+            Deadline deadline = GrpcBridgeToolCallback.deadline(toolMethod, toolContext);
+            if (deadline != null) {
+                if (deadline.isExpired()) {
+                    fail(subscriber, new BridgeToolTimeoutException(
+                            "Deadline of tool " + toolMethod.getName() + " expired before the call"));
+                    return;
+                }
+                callOptions = callOptions.withDeadline(deadline);
+            }
+            Channel channel = this.channel;
+            if (toolContext != null && toolContext != BridgeToolContext.EMPTY) {
+                // 传递工具调用上下文, always in full as a stream may have emitted items before
+                // a context miss would be reported
+                var interceptor = new GrpcToolContextClientInterceptor(toolContext,
+                        toolMethod.getContextCodec(), true);
+                channel = ClientInterceptors.intercept(channel, interceptor);
+            }
+            List<String> fields = toolMethod.hasResponseFieldsArgument() ?
+                    GrpcBridgeToolCallback.responseFields(toolInput) : null;
+            ClientCall<ByteString, T> call = channel.newCall(toolMethod.getRawMethod(), callOptions);
+            new StreamSubscription<>(call, subscriber, toolMethod, fields).start(request);
+        };
+    }
+
+    private static void fail(Flow.Subscriber<?> subscriber, Throwable error) {
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(error);
+    }
+
+    /**
+     * Bridges a server-streaming call to a subscriber. Demand of the subscriber is forwarded to
+     * the call as flow control, and the budgets of the method are enforced on the received
+     * messages. Listener callbacks are serialized by gRPC.
+     */
+    private static class StreamSubscription<T extends Message> extends ClientCall.Listener<T>
+            implements Flow.Subscription {
+        private final ClientCall<ByteString, T> call;
+        private final Flow.Subscriber<? super T> subscriber;
+        private final long maxItems;
+        private final long maxBytes;
+        private final List<String> fields;
+        private volatile boolean done;
+        // Guarded by this
+        private boolean started;
+        private long pending;
+        private long outstanding;
+        // Only accessed by listener callbacks
+        private long items;
+        private long bytes;
+
+        StreamSubscription(ClientCall<ByteString, T> call, Flow.Subscriber<? super T> subscriber,
+                           GrpcBridgeToolMethod<T> toolMethod, @Nullable List<String> fields) {
+            this.call = call;
+            this.subscriber = subscriber;
+            this.maxItems = Integer.toUnsignedLong(toolMethod.getStreamMaxItems());
+            this.maxBytes = Integer.toUnsignedLong(toolMethod.getStreamMaxBytes());
+            this.fields = fields;
+        }
+
+        void start(ByteString request) {
+            subscriber.onSubscribe(this);
+            if (done) {
+                // Cancelled within onSubscribe
+                return;
+            }
+            call.start(this, new Metadata());
+            call.sendMessage(request);
+            call.halfClose();
+            long n;
+            synchronized (this) {
+                started = true;
+                n = pending;
+                pending = 0;
+            }
+            if (n > 0) {
+                forward(n);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException(
+                        "Requested a non-positive number of items: " + n));
+                return;
+            }
+            synchronized (this) {
+                if (!started) {
+                    pending = pending + n < 0 ? Long.MAX_VALUE : pending + n;
+                    return;
+                }
+            }
+            forward(n);
+        }
+
+        private void forward(long n) {
+            int count;
+            synchronized (this) {
+                // gRPC counts outstanding deliveries in an int
+                count = (int) Math.min(n, Integer.MAX_VALUE - outstanding);
+                outstanding += count;
+            }
+            if (count > 0 && !done) {
+                call.request(count);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!done) {
+                done = true;
+                call.cancel("Stream cancelled by subscriber", null);
+            }
+        }
+
+        @Override
+        public void onMessage(T message) {
+            if (done) {
+                return;
+            }
+            synchronized (this) {
+                outstanding--;
+            }
+            if (fields != null) {
+                message = ProtoProjection.select(message, fields);
+            }
+            bytes += message.getSerializedSize();
+            if (maxBytes > 0 && bytes > maxBytes) {
+                finish();
+                return;
+            }
+            subscriber.onNext(message);
+            if (maxItems > 0 && ++items >= maxItems) {
+                finish();
+            }
+        }
+
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (status.isOk()) {
+                subscriber.onComplete();
+                return;
+            }
+            StatusRuntimeException error = status.asRuntimeException(trailers);
+            if (status.getCode() == Status.Code.DEADLINE_EXCEEDED) {
+                subscriber.onError(new BridgeToolTimeoutException(error.getMessage(), error));
+            } else {
+                subscriber.onError(error);
+            }
+        }
+
+        /**
+         * Completes the subscriber once a budget is used up and stops the backend.
+         */
+        private void finish() {
+            done = true;
+            call.cancel("Stream budget used up", null);
+            subscriber.onComplete();
+        }
+    }
+}
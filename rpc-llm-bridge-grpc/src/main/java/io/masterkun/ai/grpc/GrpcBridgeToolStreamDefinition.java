@@ -0,0 +1,92 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.Message;
+import io.grpc.MethodDescriptor;
+import io.masterkun.ai.tool.BridgeToolDefinition;
+import io.masterkun.ai.tool.BridgeToolResultConverter;
+import io.masterkun.ai.tool.BridgeToolResultConverterProvider;
+
+import java.util.List;
+
+/**
+ * A definition class for gRPC bridge tools backed by server-streaming methods. The result of the
+ * tool is the list of streamed messages, which is converted as a whole by the result converter of
+ * the method, e.g. into one table or JSON array.
+ *
+ * @param <T> The response message type from the gRPC service
+ */
+public class GrpcBridgeToolStreamDefinition<T extends Message> implements BridgeToolDefinition<List<T>> {
+    private final GrpcBridgeToolMethod<T> toolMethod;
+    private final BridgeToolResultConverter<List<T>> resultConverter;
+
+    private GrpcBridgeToolStreamDefinition(GrpcBridgeToolMethod<T> toolMethod) {
+        this.toolMethod = toolMethod;
+        this.resultConverter = toolMethod.getResultConverter()::convertAll;
+    }
+
+    /**
+     * Creates a GrpcBridgeToolStreamDefinition from a compiled gRPC method. Prefer
+     * {@link GrpcBridgeToolMethod#getStreamDefinition()}, which reuses the definition instance.
+     *
+     * @param toolMethod The compiled gRPC method
+     * @param <T>        The response message type
+     * @return A new GrpcBridgeToolStreamDefinition instance
+     * @throws IllegalArgumentException if the method is not a server-streaming method
+     */
+    static <T extends Message> GrpcBridgeToolStreamDefinition<T> of(GrpcBridgeToolMethod<T> toolMethod) {
+        if (toolMethod.getMethod().getType() != MethodDescriptor.MethodType.SERVER_STREAMING) {
+            throw new IllegalArgumentException("Only server streaming method is supported");
+        }
+        return new GrpcBridgeToolStreamDefinition<>(toolMethod);
+    }
+
+    /**
+     * Returns the name of the tool.
+     *
+     * @return The tool name
+     */
+    @Override
+    public String name() {
+        return toolMethod.getName();
+    }
+
+    /**
+     * Returns the description of the tool.
+     *
+     * @return The tool description
+     */
+    @Override
+    public String description() {
+        return toolMethod.getDescription();
+    }
+
+    /**
+     * Returns the JSON schema for the input of the tool, derived from the input message type of
+     * the gRPC method.
+     *
+     * @return The JSON schema for the tool input
+     */
+    @Override
+    public String inputSchema() {
+        return toolMethod.getInputSchema();
+    }
+
+    /**
+     * Returns a provider of the result converter, which formats all streamed messages at once.
+     *
+     * @return A provider for creating result converters
+     */
+    @Override
+    public BridgeToolResultConverterProvider<List<T>> resultConverter() {
+        return () -> resultConverter;
+    }
+
+    /**
+     * Returns the compiled gRPC method of this tool definition.
+     *
+     * @return The compiled gRPC method
+     */
+    public GrpcBridgeToolMethod<T> getToolMethod() {
+        return toolMethod;
+    }
+}
@@ -11,9 +11,31 @@ import io.masterkun.ai.tool.BridgeToolContext;
 
 public class GrpcToolContextClientInterceptor implements ClientInterceptor {
     private final BridgeToolContext toolContext;
+    private final GrpcToolContextCodec codec;
+    private final boolean fullContext;
 
     public GrpcToolContextClientInterceptor(BridgeToolContext toolContext) {
+        this(toolContext, GrpcToolContextCodec.DEFAULT);
+    }
+
+    public GrpcToolContextClientInterceptor(BridgeToolContext toolContext,
+                                            GrpcToolContextCodec codec) {
+        this(toolContext, codec, false);
+    }
+
+    /**
+     * Creates an interceptor that forwards a tool context.
+     *
+     * @param toolContext The tool context
+     * @param codec       The codec of the called method
+     * @param fullContext Whether to send the full context even if the codec would send a
+     *                    reference
+     */
+    public GrpcToolContextClientInterceptor(BridgeToolContext toolContext,
+                                            GrpcToolContextCodec codec, boolean fullContext) {
         this.toolContext = toolContext;
+        this.codec = codec;
+        this.fullContext = fullContext;
     }
 
     /**
@@ -33,8 +55,8 @@ public class GrpcToolContextClientInterceptor implements ClientInterceptor {
             @Override
             public void start(Listener<RespT> responseListener, Metadata headers) {
                 if (toolContext != null && toolContext != BridgeToolContext.EMPTY) {
-                    // Serialize the tool context and add it to the metadata
-                    headers.put(GrpcBridgeToolContext.METADATA_KEY, toolContext);
+                    // Encode the forwarded entries of the tool context and add them to the metadata
+                    codec.writeTo(headers, toolContext, fullContext);
                 }
                 super.start(responseListener, headers);
             }
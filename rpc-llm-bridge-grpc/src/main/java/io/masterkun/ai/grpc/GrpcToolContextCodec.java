@@ -0,0 +1,421 @@
+package io.masterkun.ai.grpc;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.masterkun.ai.proto.ToolProto;
+import io.masterkun.ai.tool.BridgeToolContext;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes the tool context forwarded with a call into the {@code tool-context-pb-bin} header.
+ * Only allowlisted keys are sent, every value is encoded as JSON into an
+ * {@link ToolProto.EncodedToolContext} message, and values exceeding the size limits are truncated
+ * or dropped according to the {@link ContextOversizePolicy}. Without an allowlist all keys except
+ * the call history are sent, so the header does not grow with the length of a conversation.
+ * <p>
+ * The payload starts with a format byte, followed by the message either as is or deflated if that
+ * makes it smaller. Encoded sizes are counted, see {@link #stats()}. This class is thread-safe.
+ * <p>
+ * In reference mode the payload is only sent the first time, together with its SHA-256 hash in
+ * the {@code tool-context-ref-bin} header, and later calls with the same context only send the
+ * hash. Servers only cache payloads that come with a hash, so callers not in reference mode cost
+ * them no hashing. The server resolves the
+ * hash from its cache of decoded contexts, and fails the call with {@code FAILED_PRECONDITION} and
+ * the {@code tool-context-miss} trailer if it does not know the hash, so the caller can retry with
+ * the full payload.
+ * <p>
+ * Servers read the legacy {@code tool-context-bin} header, holding the context as a JSON object,
+ * if the call has none of the headers above, but servers with an older interceptor only read that
+ * header. Servers must therefore be upgraded before their callers, or the callers must enable
+ * {@code legacyContextHeader} during the rollout, which also sends the selected entries in the
+ * legacy header, without size limits or references.
+ */
+public class GrpcToolContextCodec {
+    static final byte FORMAT_PROTOBUF = 0;
+    static final byte FORMAT_DEFLATE = 1;
+    private static final int MIN_COMPRESS_SIZE = 256;
+    private static final int MAX_DECODED_SIZE = 1024 * 1024;
+    private static final String ELLIPSIS = "…";
+    private static final int MAX_REFERENCES = 1024;
+    static final GrpcToolContextCodec DEFAULT = of(new GrpcBridgeToolOptions(), List.of());
+
+    private final Set<String> keys;
+    private final boolean compress;
+    private final int maxValueBytes;
+    private final int maxBytes;
+    private final ContextOversizePolicy oversizePolicy;
+    private final boolean legacyHeader;
+    // Hashes of the payloads sent in full, null if references are disabled
+    private final Map<String, Boolean> references;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+    private final LongAccumulator maxEncodedBytes = new LongAccumulator(Math::max, 0);
+    private final LongAdder truncatedValues = new LongAdder();
+    private final LongAdder droppedValues = new LongAdder();
+    private final LongAdder referencedCalls = new LongAdder();
+
+    private GrpcToolContextCodec(@Nullable Collection<String> keys, boolean compress,
+                                 int maxValueBytes, int maxBytes,
+                                 ContextOversizePolicy oversizePolicy, boolean byReference,
+                                 boolean legacyHeader) {
+        this.keys = keys == null ? null : new LinkedHashSet<>(keys);
+        this.compress = compress;
+        this.maxValueBytes = maxValueBytes <= 0 ? Integer.MAX_VALUE : maxValueBytes;
+        this.maxBytes = maxBytes <= 0 ? Integer.MAX_VALUE : maxBytes;
+        this.oversizePolicy = oversizePolicy == null ? ContextOversizePolicy.TRUNCATE :
+                oversizePolicy;
+        this.legacyHeader = legacyHeader;
+        this.references = !byReference ? null : new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_REFERENCES;
+            }
+        };
+    }
+
+    /**
+     * Creates a codec with the context settings of a registration.
+     *
+     * @param options    The tool settings of the registration
+     * @param methodKeys The context keys of the method, which replace the keys of the
+     *                   registration if not empty
+     * @return A new codec
+     */
+    public static GrpcToolContextCodec of(GrpcBridgeToolOptions options, List<String> methodKeys) {
+        return new GrpcToolContextCodec(methodKeys.isEmpty() ? options.getContextKeys() : methodKeys,
+                options.isCompressContext(), options.getContextMaxValueBytes(),
+                options.getContextMaxBytes(), options.getContextOversizePolicy(),
+                options.isContextByReference(), options.isLegacyContextHeader());
+    }
+
+    /**
+     * Selects the entries of a tool context that are forwarded, sorted by key. The deadline is
+     * never forwarded, as it is propagated as the gRPC deadline instead.
+     *
+     * @param toolContext The tool context
+     * @return The forwarded entries, before the size limits are applied
+     */
+    public Map<String, Object> select(BridgeToolContext toolContext) {
+        Map<String, Object> selected = new TreeMap<>();
+        if (toolContext == null) {
+            return selected;
+        }
+        Map<String, Object> context = toolContext.getContext();
+        if (keys == null) {
+            selected.putAll(context);
+            selected.remove(BridgeToolContext.TOOL_CALL_HISTORY);
+        } else {
+            for (String key : keys) {
+                Object value = context.get(key);
+                if (value != null) {
+                    selected.put(key, value);
+                }
+            }
+        }
+        selected.remove(BridgeToolContext.TOOL_CALL_DEADLINE);
+        return selected;
+    }
+
+    /**
+     * Encodes the forwarded entries of a tool context.
+     *
+     * @param toolContext The tool context
+     * @return The header value, or null if there is nothing to forward
+     */
+    @Nullable
+    public byte[] encode(BridgeToolContext toolContext) {
+        byte[] encoded = encodePayload(toolContext);
+        if (encoded != null) {
+            record(encoded.length);
+        }
+        return encoded;
+    }
+
+    /**
+     * Returns whether contexts are sent by reference once the server has seen them.
+     *
+     * @return true if reference mode is enabled
+     */
+    public boolean isByReference() {
+        return references != null;
+    }
+
+    /**
+     * Adds the header of the forwarded tool context to the metadata of a call. In reference mode
+     * the hash is added as well, or alone if the same payload has been sent in full before. The legacy header
+     * is added as well if enabled.
+     *
+     * @param headers     The call metadata
+     * @param toolContext The tool context
+     * @param full        Whether to send the full payload even if the server should know it, e.g.
+     *                    after the server reported a miss
+     */
+    void writeTo(Metadata headers, BridgeToolContext toolContext, boolean full) {
+        if (legacyHeader) {
+            Map<String, Object> selected = select(toolContext);
+            if (!selected.isEmpty()) {
+                headers.put(GrpcBridgeToolContext.METADATA_KEY, JSONUtils.toJsonBytes(selected));
+            }
+        }
+        byte[] encoded = encodePayload(toolContext);
+        if (encoded == null) {
+            return;
+        }
+        int length = encoded.length;
+        if (references != null) {
+            byte[] hash = hash(encoded);
+            String key = HexFormat.of().formatHex(hash);
+            boolean known;
+            synchronized (references) {
+                known = references.put(key, Boolean.TRUE) != null;
+            }
+            headers.put(GrpcBridgeToolContext.REFERENCE_METADATA_KEY, hash);
+            if (known && !full) {
+                referencedCalls.increment();
+                record(hash.length);
+                return;
+            }
+            // Sent with the payload, so the server caches it without hashing it again
+            length += hash.length;
+        }
+        headers.put(GrpcBridgeToolContext.ENCODED_METADATA_KEY, encoded);
+        record(length);
+    }
+
+    private void record(int length) {
+        calls.increment();
+        encodedBytes.add(length);
+        maxEncodedBytes.accumulate(length);
+    }
+
+    /**
+     * Returns whether a call failed because the server did not know the referenced context.
+     *
+     * @param error The error of the call
+     * @return true if the call should be retried with the full context
+     */
+    static boolean isContextMiss(Throwable error) {
+        if (Status.fromThrowable(error).getCode() != Status.Code.FAILED_PRECONDITION) {
+            return false;
+        }
+        Metadata trailers = Status.trailersFromThrowable(error);
+        return trailers != null && trailers.containsKey(GrpcBridgeToolContext.MISS_METADATA_KEY);
+    }
+
+    /**
+     * Returns the SHA-256 hash a payload is referenced by.
+     *
+     * @param encoded The encoded payload
+     * @return The hash
+     */
+    static byte[] hash(byte[] encoded) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(encoded);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Nullable
+    private byte[] encodePayload(BridgeToolContext toolContext) {
+        Map<String, Object> selected = select(toolContext);
+        if (selected.isEmpty()) {
+            return null;
+        }
+        ToolProto.EncodedToolContext.Builder builder = ToolProto.EncodedToolContext.newBuilder();
+        int total = 0;
+        for (Map.Entry<String, Object> entry : selected.entrySet()) {
+            String key = entry.getKey();
+            int keyLength = key.getBytes(StandardCharsets.UTF_8).length;
+            byte[] json = JSONUtils.toJsonBytes(entry.getValue());
+            int room = Math.min(maxValueBytes, maxBytes - total - keyLength);
+            if (json.length > room) {
+                json = oversizePolicy == ContextOversizePolicy.TRUNCATE &&
+                       entry.getValue() instanceof String str ? truncate(str, room) : null;
+                if (json == null) {
+                    droppedValues.increment();
+                    continue;
+                }
+                truncatedValues.increment();
+            }
+            builder.putValues(key, ByteString.copyFrom(json));
+            total += keyLength + json.length;
+        }
+        if (builder.getValuesCount() == 0) {
+            return null;
+        }
+        byte[] payload = builder.build().toByteArray();
+        byte format = FORMAT_PROTOBUF;
+        if (compress && payload.length >= MIN_COMPRESS_SIZE) {
+            byte[] deflated = deflate(payload);
+            if (deflated.length < payload.length) {
+                payload = deflated;
+                format = FORMAT_DEFLATE;
+            }
+        }
+        byte[] encoded = new byte[payload.length + 1];
+        encoded[0] = format;
+        System.arraycopy(payload, 0, encoded, 1, payload.length);
+        return encoded;
+    }
+
+    /**
+     * Decodes a header value created by {@link #encode(BridgeToolContext)}.
+     *
+     * @param encoded The header value
+     * @return The forwarded tool context
+     * @throws IllegalArgumentException if the header value is malformed
+     */
+    public static BridgeToolContext decode(byte[] encoded) {
+        ToolProto.EncodedToolContext message = parse(encoded);
+        Map<String, Object> context = new HashMap<>(message.getValuesCount());
+        for (Map.Entry<String, ByteString> entry : message.getValuesMap().entrySet()) {
+            context.put(entry.getKey(), JSONUtils.fromJson(entry.getValue().toByteArray(),
+                    new TypeReference<Object>() {
+                    }));
+        }
+        return new BridgeToolContext(context);
+    }
+
+    /**
+     * Decodes a single value of a header value created by {@link #encode(BridgeToolContext)},
+     * leaving the other values as they are.
+     *
+     * @param encoded The header value
+     * @param key     The key of the value
+     * @param type    The type to decode the value to
+     * @param <T>     The value type
+     * @return The value, or null if the context has no value for the key
+     * @throws IllegalArgumentException if the header value is malformed
+     */
+    @Nullable
+    public static <T> T decodeValue(byte[] encoded, String key, Class<T> type) {
+        ByteString value = parse(encoded).getValuesOrDefault(key, null);
+        return value == null ? null : JSONUtils.fromJson(value.toByteArray(), type);
+    }
+
+    private static ToolProto.EncodedToolContext parse(byte[] encoded) {
+        if (encoded.length == 0) {
+            throw new IllegalArgumentException("Empty tool context");
+        }
+        byte[] payload = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 1, payload, 0, payload.length);
+        payload = switch (encoded[0]) {
+            case FORMAT_PROTOBUF -> payload;
+            case FORMAT_DEFLATE -> inflate(payload);
+            default -> throw new IllegalArgumentException("Unknown tool context format: " +
+                                                          encoded[0]);
+        };
+        try {
+            return ToolProto.EncodedToolContext.parseFrom(payload);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IllegalArgumentException("Malformed tool context", e);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the encoding counters.
+     *
+     * @return The codec statistics
+     */
+    public Stats stats() {
+        return new Stats(calls.sum(), encodedBytes.sum(), maxEncodedBytes.get(),
+                truncatedValues.sum(), droppedValues.sum(), referencedCalls.sum());
+    }
+
+    /**
+     * Encodes a string cut to fit into the given number of bytes, ending with an ellipsis.
+     */
+    @Nullable
+    private static byte[] truncate(String value, int room) {
+        int length = value.length();
+        while (length > 0) {
+            byte[] json = JSONUtils.toJsonBytes(value.substring(0, length) + ELLIPSIS);
+            if (json.length <= room) {
+                return json;
+            }
+            // Shrink proportionally, as the encoded size of a character varies
+            length = Math.min(length - 1, (int) ((long) length * room / json.length));
+            if (length > 0 && Character.isHighSurrogate(value.charAt(length - 1))) {
+                length--;
+            }
+        }
+        return null;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated tool context");
+                }
+                out.write(buffer, 0, n);
+                if (out.size() > MAX_DECODED_SIZE) {
+                    throw new IllegalArgumentException("Tool context too large");
+                }
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed tool context", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Encoding counters since the codec was created.
+     *
+     * @param calls           Encoded contexts
+     * @param encodedBytes    Total size of the encoded contexts in bytes
+     * @param maxEncodedBytes Size of the largest encoded context in bytes
+     * @param truncatedValues Values truncated because of the size limits
+     * @param droppedValues   Values dropped because of the size limits
+     * @param referencedCalls Contexts sent as a hash only
+     */
+    public record Stats(long calls, long encodedBytes, long maxEncodedBytes,
+                        long truncatedValues, long droppedValues, long referencedCalls) {
+    }
+}
@@ -6,13 +6,56 @@ import io.grpc.Metadata;
 import io.grpc.ServerCall;
 import io.grpc.ServerCallHandler;
 import io.grpc.ServerInterceptor;
-import io.masterkun.ai.tool.BridgeToolContext;
+import io.grpc.Status;
+import io.masterkun.ai.tool.BridgeToolResultCache;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
 
 /**
  * Server interceptor that extracts tool context from incoming gRPC call metadata and makes it
- * available through the GrpcBridgeToolContext.
+ * available through the GrpcBridgeToolContext. The context is only decoded when the service
+ * accesses it, so a malformed context fails the access instead of the call.
+ * <p>
+ * Contexts sent in full by clients in reference mode come with the hash of their payload, and are
+ * cached by it, so these clients may send the hash alone afterwards. The hash is verified once,
+ * when a context is cached. Contexts without a hash are neither hashed nor cached, as they are
+ * only decoded if the service accesses them. A call referencing an unknown context is closed with {@code FAILED_PRECONDITION} and the
+ * {@code tool-context-miss} trailer, see {@link GrpcToolContextCodec}.
  */
 public class GrpcToolContextServerInterceptor implements ServerInterceptor {
+    private static final int DEFAULT_MAX_ENTRIES = 1024;
+    private static final long DEFAULT_MAX_WEIGHT = 16 * 1024 * 1024;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private final BridgeToolResultCache<LazyToolContext> contextCache;
+    private final Duration ttl;
+
+    public GrpcToolContextServerInterceptor() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT, DEFAULT_TTL);
+    }
+
+    /**
+     * Creates an interceptor with a custom cache of decoded contexts.
+     *
+     * @param maxEntries The maximum number of cached contexts
+     * @param maxWeight  The maximum total size of the cached payloads in bytes
+     * @param ttl        How long a context stays cached after it was last sent in full
+     */
+    public GrpcToolContextServerInterceptor(int maxEntries, long maxWeight, Duration ttl) {
+        this.contextCache = new BridgeToolResultCache<>(maxEntries, maxWeight, LazyToolContext::size);
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the statistics of the cache of decoded contexts.
+     *
+     * @return A snapshot of the statistics
+     */
+    public BridgeToolResultCache.Stats contextCacheStats() {
+        return contextCache.stats();
+    }
 
     /**
      * Intercepts incoming gRPC calls to extract tool context from the call metadata.
@@ -26,8 +69,27 @@ public class GrpcToolContextServerInterceptor implements ServerInterceptor {
     public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
                                                                  Metadata headers,
                                                                  ServerCallHandler<ReqT, RespT> next) {
-        // Extract tool context from metadata if present
-        BridgeToolContext toolContext = headers.get(GrpcBridgeToolContext.METADATA_KEY);
+        // Extract tool context from metadata if present, falling back to the legacy JSON header
+        byte[] encoded = headers.get(GrpcBridgeToolContext.ENCODED_METADATA_KEY);
+        byte[] reference = headers.get(GrpcBridgeToolContext.REFERENCE_METADATA_KEY);
+        LazyToolContext toolContext;
+        if (encoded != null) {
+            toolContext = reference == null ? LazyToolContext.encoded(encoded) :
+                    lookup(encoded, reference);
+        } else if (reference != null) {
+            toolContext = contextCache.get(HexFormat.of().formatHex(reference));
+            if (toolContext == null) {
+                Metadata trailers = new Metadata();
+                trailers.put(GrpcBridgeToolContext.MISS_METADATA_KEY, "1");
+                call.close(Status.FAILED_PRECONDITION
+                        .withDescription("Unknown tool context reference"), trailers);
+                return new ServerCall.Listener<>() {
+                };
+            }
+        } else {
+            byte[] legacy = headers.get(GrpcBridgeToolContext.METADATA_KEY);
+            toolContext = legacy == null ? null : LazyToolContext.legacy(legacy);
+        }
 
         if (toolContext != null) {
             // Store the context in the gRPC Context
@@ -40,4 +102,19 @@ public class GrpcToolContextServerInterceptor implements ServerInterceptor {
         // If no context was found or an error occurred, continue with the original context
         return next.startCall(call, headers);
     }
+
+    private LazyToolContext lookup(byte[] encoded, byte[] reference) {
+        String key = HexFormat.of().formatHex(reference);
+        LazyToolContext cached = contextCache.get(key);
+        if (cached == null) {
+            cached = LazyToolContext.encoded(encoded);
+            if (!MessageDigest.isEqual(reference, GrpcToolContextCodec.hash(encoded))) {
+                // Not cached, so a wrong hash cannot stand for the context of other calls
+                return cached;
+            }
+        }
+        // Put again to renew the time-to-live of contexts still sent in full
+        contextCache.put(key, cached, ttl);
+        return cached;
+    }
 }
@@ -2,9 +2,38 @@ package io.masterkun.ai.grpc;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 public class JSONUtils {
-    public static ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    public static ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule());
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    /**
+     * Serializes an object to canonical JSON, i.e. without whitespace and with the entries of all
+     * maps sorted by key, so equal values always produce the same string.
+     */
+    public static String toCanonicalJson(Object object) {
+        try {
+            return CANONICAL_MAPPER.writeValueAsString(object);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Rewrites a JSON document to canonical JSON, see {@link #toCanonicalJson(Object)}.
+     */
+    public static String canonicalizeJson(String json) {
+        try {
+            return CANONICAL_MAPPER.writeValueAsString(CANONICAL_MAPPER.readValue(json, Object.class));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
     public static String toJson(Object object) {
         try {
@@ -0,0 +1,101 @@
+package io.masterkun.ai.grpc;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.masterkun.ai.tool.BridgeToolContext;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * A tool context received by a server, kept as the raw header value until the service accesses
+ * it. The whole context is decoded on first access and memoized, while single values can be
+ * decoded without materializing the other ones. This class is thread-safe.
+ */
+final class LazyToolContext {
+    private final byte[] encoded;
+    private final boolean legacy;
+    private volatile BridgeToolContext decoded;
+
+    private LazyToolContext(byte[] encoded, boolean legacy) {
+        this.encoded = encoded;
+        this.legacy = legacy;
+    }
+
+    /**
+     * Wraps a header value created by {@link GrpcToolContextCodec}.
+     */
+    static LazyToolContext encoded(byte[] encoded) {
+        return new LazyToolContext(encoded, false);
+    }
+
+    /**
+     * Wraps a value of the legacy header, which holds the context as a JSON object.
+     */
+    static LazyToolContext legacy(byte[] json) {
+        return new LazyToolContext(json, true);
+    }
+
+    /**
+     * Returns the size of the raw header value in bytes.
+     */
+    int size() {
+        return encoded.length;
+    }
+
+    /**
+     * Returns the decoded context, decoding it on first access.
+     *
+     * @throws IllegalArgumentException if the header value is malformed
+     */
+    BridgeToolContext get() {
+        BridgeToolContext context = decoded;
+        if (context == null) {
+            // Decoding twice under contention is harmless, both results are equal
+            context = legacy ?
+                    new BridgeToolContext(JSONUtils.fromJson(encoded, new TypeReference<>() {
+                    })) :
+                    GrpcToolContextCodec.decode(encoded);
+            decoded = context;
+        }
+        return context;
+    }
+
+    /**
+     * Returns a single value of the context, decoding only that value unless the whole context
+     * has already been decoded.
+     *
+     * @throws IllegalArgumentException if the header value is malformed
+     */
+    @Nullable
+    <T> T get(String key, Class<T> type) {
+        BridgeToolContext context = decoded;
+        if (context != null) {
+            Object value = context.getContext().get(key);
+            return value == null ? null : JSONUtils.convertValue(value, type);
+        }
+        return legacy ? legacyValue(key, type) :
+                GrpcToolContextCodec.decodeValue(encoded, key, type);
+    }
+
+    @Nullable
+    private <T> T legacyValue(String key, Class<T> type) {
+        try (JsonParser parser = JSONUtils.OBJECT_MAPPER.createParser(encoded)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Malformed tool context");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (name.equals(key)) {
+                    return token == JsonToken.VALUE_NULL ? null : parser.readValueAs(type);
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed tool context", e);
+        }
+    }
+}
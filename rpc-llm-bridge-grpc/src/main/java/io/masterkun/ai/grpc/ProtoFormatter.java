@@ -0,0 +1,276 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.MapEntry;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import io.masterkun.ai.proto.ToolProto;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Formats protobuf messages as human-readable text, see {@link ProtoUtils#formatString}. Nested
+ * messages and repeated fields are written as indented, numbered lines, and fields are labelled
+ * with their {@code field_desc} option if present. Fields hidden by the {@code field_exclude}
+ * option are left out.
+ * <p>
+ * The labels of the fields are resolved once per message type and kept by the formatter, so a
+ * formatter should be reused for messages of the same types, e.g. one per tool. This class is
+ * thread-safe.
+ */
+public class ProtoFormatter {
+    private static final String INDENT = "  ";
+    private static final Runnable NO_LISTENER = () -> {
+    };
+
+    private final Map<Descriptors.Descriptor, String[]> labels = new ConcurrentHashMap<>();
+
+    /**
+     * Formats a protobuf message as a string.
+     *
+     * @param message The protobuf message to format
+     * @return A formatted string representation of the message
+     */
+    public String format(MessageOrBuilder message) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            formatTo(message, builder);
+        } catch (IOException e) {
+            // Not thrown by StringBuilder
+            throw new RuntimeException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Formats a protobuf message into an appendable, e.g. a buffer shared by several messages.
+     *
+     * @param message The protobuf message to format
+     * @param out     The appendable to write to
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatTo(MessageOrBuilder message, Appendable out) throws IOException {
+        formatTo(message, out, NO_LISTENER);
+    }
+
+    /**
+     * Formats a protobuf message into an appendable, and reports every complete element of a
+     * repeated field of the message, e.g. to cut the text back to the last complete element.
+     *
+     * @param message     The protobuf message to format
+     * @param out         The appendable to write to
+     * @param itemWritten Called after every element of a repeated field of the message
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatTo(MessageOrBuilder message, Appendable out, Runnable itemWritten)
+            throws IOException {
+        // A message with a single scalar field is written as the bare value
+        Descriptors.FieldDescriptor single = null;
+        int present = 0;
+        boolean composite = false;
+        String[] names = labels(message.getDescriptorForType());
+        for (Descriptors.FieldDescriptor field : message.getDescriptorForType().getFields()) {
+            if (names[field.getIndex()] == null) {
+                continue;
+            }
+            if (field.isRepeated() ? message.getRepeatedFieldCount(field) > 0 :
+                    message.hasField(field)) {
+                present++;
+                single = field;
+                composite |= field.isRepeated() ||
+                             field.getType() == Descriptors.FieldDescriptor.Type.MESSAGE;
+            }
+        }
+        if (!composite && present == 1) {
+            out.append(String.valueOf(message.getField(single)));
+        } else {
+            new Writer(out, composite, itemWritten).message(message);
+        }
+    }
+
+    /**
+     * Returns the labels of the fields of a message type, indexed by the field index. The label
+     * of an excluded field is null.
+     */
+    String[] labels(Descriptors.Descriptor descriptor) {
+        String[] result = labels.get(descriptor);
+        if (result == null) {
+            List<Descriptors.FieldDescriptor> fields = descriptor.getFields();
+            result = new String[fields.size()];
+            for (Descriptors.FieldDescriptor field : fields) {
+                if (ProtoProjection.isExcluded(field)) {
+                    continue;
+                }
+                result[field.getIndex()] = field.getOptions().hasExtension(ToolProto.fieldDesc) ?
+                        field.getOptions().getExtension(ToolProto.fieldDesc) :
+                        field.getName();
+            }
+            labels.put(descriptor, result);
+        }
+        return result;
+    }
+
+    /**
+     * The state of formatting one message, with the line numbers of the enclosing levels kept in
+     * a primitive stack.
+     */
+    private class Writer {
+        private final Appendable out;
+        private final boolean numbered;
+        private final Runnable itemWritten;
+        private int[] levels = new int[8];
+        private int depth;
+
+        Writer(Appendable out, boolean numbered, Runnable itemWritten) {
+            this.out = out;
+            this.numbered = numbered;
+            this.itemWritten = itemWritten;
+        }
+
+        void value(Object value) throws IOException {
+            if (value == null) {
+                out.append("null");
+            } else if (value instanceof CharSequence text) {
+                out.append('\'').append(text).append('\'');
+            } else if (value instanceof ByteString bytes) {
+                out.append('\'').append(bytes.toStringUtf8()).append('\'');
+            } else if (value instanceof MessageOrBuilder message) {
+                message(message);
+            } else if (value instanceof Iterable<?> iterable) {
+                iterable(iterable);
+            } else if (value instanceof Map<?, ?> map) {
+                out.append('{');
+                boolean first = true;
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (first) {
+                        first = false;
+                    } else {
+                        out.append(", ");
+                    }
+                    out.append(String.valueOf(entry.getKey())).append(": ");
+                    value(entry.getValue());
+                }
+                out.append('}');
+            } else {
+                out.append(String.valueOf(value));
+            }
+        }
+
+        void message(MessageOrBuilder message) throws IOException {
+            String[] names = labels(message.getDescriptorForType());
+            push();
+            for (Descriptors.FieldDescriptor field : message.getDescriptorForType().getFields()) {
+                if (names[field.getIndex()] == null) {
+                    continue;
+                }
+                Object value;
+                if (field.isRepeated()) {
+                    if (message.getRepeatedFieldCount(field) == 0) {
+                        continue;
+                    }
+                    value = message.getField(field);
+                } else {
+                    if (!message.hasField(field)) {
+                        continue;
+                    }
+                    value = message.getField(field);
+                    if (value instanceof Message nested) {
+                        // Only the default instance has nothing to serialize
+                        if (nested.getSerializedSize() == 0) {
+                            continue;
+                        }
+                    } else if (field.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE &&
+                               value.equals(field.getDefaultValue())) {
+                        // Explicit presence fields set to the default value
+                        continue;
+                    }
+                }
+                line();
+                out.append(names[field.getIndex()]).append(": ");
+                value(value);
+                levels[depth - 1]++;
+            }
+            depth--;
+        }
+
+        private void iterable(Iterable<?> iterable) throws IOException {
+            boolean first = true;
+            boolean singleLine = false;
+            push();
+            for (Object item : iterable) {
+                if (first) {
+                    first = false;
+                    singleLine = !((item instanceof MapEntry<?, ?> e &&
+                                    e.getValue() instanceof MessageOrBuilder) ||
+                                   item instanceof MessageOrBuilder);
+                    if (singleLine) {
+                        out.append('[');
+                    }
+                } else {
+                    out.append(", ");
+                }
+                if (item instanceof MapEntry<?, ?> entry) {
+                    if (entry.getValue() instanceof MessageOrBuilder message) {
+                        line();
+                        out.append(String.valueOf(entry.getKey())).append(": ");
+                        message(message);
+                    } else {
+                        out.append(String.valueOf(entry.getKey())).append(": ");
+                        value(entry.getValue());
+                    }
+                } else if (item instanceof MessageOrBuilder message) {
+                    line();
+                    message(message);
+                } else {
+                    value(item);
+                }
+                levels[depth - 1]++;
+                if (depth == 2) {
+                    // An element of a field of the formatted message is complete
+                    itemWritten.run();
+                }
+            }
+            depth--;
+            if (singleLine) {
+                out.append(']');
+            }
+        }
+
+        private void push() {
+            if (depth == levels.length) {
+                int[] grown = new int[depth * 2];
+                System.arraycopy(levels, 0, grown, 0, depth);
+                levels = grown;
+            }
+            levels[depth++] = 1;
+        }
+
+        /**
+         * Starts a new line indented to the current level, numbered like {@code 1.2.} if any
+         * field of the formatted message is composite.
+         */
+        private void line() throws IOException {
+            out.append('\n');
+            for (int i = 1; i < depth; i++) {
+                out.append(INDENT);
+            }
+            if (numbered) {
+                for (int i = 0; i < depth; i++) {
+                    if (i > 0) {
+                        out.append('.');
+                    }
+                    if (out instanceof StringBuilder builder) {
+                        builder.append(levels[i]);
+                    } else {
+                        out.append(Integer.toString(levels[i]));
+                    }
+                }
+                out.append(". ");
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package io.masterkun.ai.grpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.protobuf.Descriptors;
+import io.masterkun.ai.proto.ToolProto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Generates JSON schemas for protobuf message types. Message types that are referenced more than
+ * once, or that are recursive, are emitted a single time under {@code definitions}, the draft-07
+ * location, and referenced with {@code $ref}. A reference back to the root message uses
+ * {@code "#"}. All other message types are inlined where they are used. Fields excluded by the {@code field_exclude} option are left out.
+ * The output is shaped by a {@link SchemaProfile}.
+ * <p>
+ * Generated schemas are cached per descriptor and profile. The cache holds descriptors weakly, so
+ * reloaded descriptors do not leak.
+ */
+public class ProtoJsonSchema {
+    private static final String SCHEMA_VERSION = "http://json-schema.org/draft-07/schema#";
+    private static final String DEFS = "definitions";
+    private static final int MAX_COMPACT_ONEOF_SIZE = 4;
+    private static final Map<Descriptors.Descriptor, String[]> CACHE =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final ObjectMapper objectMapper = JSONUtils.OBJECT_MAPPER;
+    private final Descriptors.Descriptor root;
+    private final SchemaProfile profile;
+    private final Map<Descriptors.Descriptor, String> refs = new LinkedHashMap<>();
+
+    private ProtoJsonSchema(Descriptors.Descriptor root, SchemaProfile profile) {
+        this.root = root;
+        this.profile = profile;
+        Set<Descriptors.Descriptor> shared = new LinkedHashSet<>();
+        collect(root, new HashSet<>(), new HashMap<>(), shared);
+        Set<String> simpleNames = new HashSet<>();
+        Set<String> duplicated = new HashSet<>();
+        for (Descriptors.Descriptor type : shared) {
+            if (!simpleNames.add(type.getName())) {
+                duplicated.add(type.getName());
+            }
+        }
+        for (Descriptors.Descriptor type : shared) {
+            String name = duplicated.contains(type.getName()) ? type.getFullName() : type.getName();
+            refs.put(type, "#/" + DEFS + "/" + name);
+        }
+    }
+
+    /**
+     * Returns the JSON schema of the given message type, generating it on first access.
+     *
+     * @param descriptor the protobuf descriptor for which the JSON schema is to be generated
+     * @param profile    the profile to render the schema with
+     * @return a string containing the JSON schema
+     * @throws RuntimeException if any issue occurs during schema generation
+     */
+    public static String getJsonSchema(Descriptors.Descriptor descriptor, SchemaProfile profile) {
+        String[] schemas = CACHE.computeIfAbsent(descriptor,
+                k -> new String[SchemaProfile.values().length]);
+        String schema = schemas[profile.ordinal()];
+        if (schema == null) {
+            schema = new ProtoJsonSchema(descriptor, profile).generate();
+            schemas[profile.ordinal()] = schema;
+        }
+        return schema;
+    }
+
+    /**
+     * Finds the message types that have to be emitted under {@code definitions}, which are the types
+     * referenced more than once and the types referenced from inside themselves.
+     */
+    private void collect(Descriptors.Descriptor type, Set<Descriptors.Descriptor> path,
+                         Map<Descriptors.Descriptor, Integer> counts,
+                         Set<Descriptors.Descriptor> shared) {
+        path.add(type);
+        for (Descriptors.FieldDescriptor field : type.getFields()) {
+            Descriptors.Descriptor referenced = referencedType(field);
+            if (referenced == null || referenced == root || ProtoProjection.isExcluded(field)) {
+                continue;
+            }
+            if (path.contains(referenced) || counts.merge(referenced, 1, Integer::sum) > 1) {
+                shared.add(referenced);
+            } else {
+                collect(referenced, path, counts, shared);
+            }
+        }
+        path.remove(type);
+    }
+
+    private static Descriptors.Descriptor referencedType(Descriptors.FieldDescriptor field) {
+        if (field.getJavaType() != Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+            return null;
+        }
+        if (field.isMapField()) {
+            return referencedType(field.getMessageType().findFieldByNumber(2));
+        }
+        return field.getMessageType();
+    }
+
+    private String generate() {
+        try {
+            ObjectNode schemaNode = objectMapper.createObjectNode();
+
+            // Add schema metadata
+            if (profile == SchemaProfile.STANDARD) {
+                schemaNode.put("$schema", SCHEMA_VERSION);
+                schemaNode.put("title", root.getName());
+            }
+            addMessageToSchema(root, schemaNode);
+
+            if (!refs.isEmpty()) {
+                ObjectNode defsNode = objectMapper.createObjectNode();
+                for (Map.Entry<Descriptors.Descriptor, String> entry : refs.entrySet()) {
+                    ObjectNode defNode = objectMapper.createObjectNode();
+                    addMessageToSchema(entry.getKey(), defNode);
+                    defsNode.set(entry.getValue().substring(DEFS.length() + 3), defNode);
+                }
+                schemaNode.set(DEFS, defsNode);
+            }
+
+            if (profile == SchemaProfile.STANDARD) {
+                return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(schemaNode);
+            }
+            return objectMapper.writeValueAsString(schemaNode);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to generate JSON schema", e);
+        }
+    }
+
+    private void addMessageOrRef(Descriptors.Descriptor descriptor, ObjectNode node) {
+        if (descriptor == root) {
+            node.put("$ref", "#");
+            return;
+        }
+        String ref = refs.get(descriptor);
+        if (ref != null) {
+            node.put("$ref", ref);
+        } else {
+            addMessageToSchema(descriptor, node);
+        }
+    }
+
+    private void addMessageToSchema(Descriptors.Descriptor descriptor, ObjectNode schemaNode) {
+        schemaNode.put("type", "object");
+
+        // Add properties
+        ObjectNode propertiesNode = objectMapper.createObjectNode();
+        ArrayNode requiredArray = objectMapper.createArrayNode();
+
+        for (Descriptors.FieldDescriptor field : descriptor.getFields()) {
+            // Skip fields that are part of oneof (they will be handled separately)
+            if (field.getContainingOneof() != null || ProtoProjection.isExcluded(field)) {
+                continue;
+            }
+
+            addFieldToSchema(field, propertiesNode, requiredArray, false);
+        }
+
+        // Handle oneof fields
+        ArrayNode allOf = objectMapper.createArrayNode();
+        List<ArrayNode> exclusivePairs = new ArrayList<>();
+        for (Descriptors.OneofDescriptor oneof : descriptor.getOneofs()) {
+            // Excluded fields are neither declared nor constrained
+            List<Descriptors.FieldDescriptor> fields = new ArrayList<>();
+            for (Descriptors.FieldDescriptor field : oneof.getFields()) {
+                if (!ProtoProjection.isExcluded(field)) {
+                    addFieldToSchema(field, propertiesNode, requiredArray, true);
+                    fields.add(field);
+                }
+            }
+            if (fields.size() <= 1) {
+                // A single field is always at most one of the oneof
+                continue;
+            }
+            if (profile != SchemaProfile.STANDARD && fields.size() <= MAX_COMPACT_ONEOF_SIZE) {
+                // "At most one of" is the same as "no two of them together"
+                for (int i = 0; i < fields.size(); i++) {
+                    for (int j = i + 1; j < fields.size(); j++) {
+                        ArrayNode pair = objectMapper.createArrayNode();
+                        pair.add(fields.get(i).getName());
+                        pair.add(fields.get(j).getName());
+                        exclusivePairs.add(pair);
+                    }
+                }
+                continue;
+            }
+            ArrayNode oneOf = objectMapper.createArrayNode();
+            for (Descriptors.FieldDescriptor field : fields) {
+                ArrayNode required = objectMapper.createArrayNode();
+                required.add(field.getName());
+                ObjectNode subNode = objectMapper.createObjectNode();
+                subNode.set("required", required);
+                oneOf.add(subNode);
+            }
+            ObjectNode anyOfNode = objectMapper.createObjectNode();
+            anyOfNode.set("anyOf", oneOf.deepCopy());
+            ObjectNode notNode = objectMapper.createObjectNode();
+            notNode.set("not", anyOfNode);
+            oneOf.add(notNode);
+            ObjectNode oneOfNode = objectMapper.createObjectNode();
+            oneOfNode.set("oneOf", oneOf);
+            allOf.add(oneOfNode);
+        }
+        if (!exclusivePairs.isEmpty()) {
+            ObjectNode notNode = objectMapper.createObjectNode();
+            if (exclusivePairs.size() == 1) {
+                notNode.set("required", exclusivePairs.get(0));
+            } else {
+                ArrayNode anyOf = notNode.putArray("anyOf");
+                for (ArrayNode pair : exclusivePairs) {
+                    anyOf.addObject().set("required", pair);
+                }
+            }
+            ObjectNode constraint = objectMapper.createObjectNode();
+            constraint.set("not", notNode);
+            allOf.add(constraint);
+        }
+        if (!allOf.isEmpty()) {
+            if (allOf.size() == 1) {
+                schemaNode.setAll((ObjectNode) allOf.get(0));
+            } else {
+                schemaNode.set("allOf", allOf);
+            }
+        }
+
+        schemaNode.set("properties", propertiesNode);
+
+        // Add required fields if any
+        if (!requiredArray.isEmpty()) {
+            schemaNode.set("required", requiredArray);
+        }
+    }
+
+    private void addFieldToSchema(Descriptors.FieldDescriptor field, ObjectNode propertiesNode,
+                                  ArrayNode requiredArray, boolean isOneOf) {
+        ObjectNode fieldNode = objectMapper.createObjectNode();
+
+        // Add description if available
+        if (field.getOptions().hasExtension(ToolProto.fieldDesc)) {
+            String description = field.getOptions().getExtension(ToolProto.fieldDesc);
+            fieldNode.put("description", description);
+        }
+
+        // Add example if available
+        if (profile != SchemaProfile.MINIMAL &&
+            field.getOptions().hasExtension(ToolProto.fieldExample)) {
+            String example = field.getOptions().getExtension(ToolProto.fieldExample);
+            fieldNode.put("example", example);
+        }
+
+        // Check if field is required
+        if (field.getOptions().hasExtension(ToolProto.fieldRequired) &&
+            field.getOptions().getExtension(ToolProto.fieldRequired) && !isOneOf) {
+            requiredArray.add(field.getName());
+        }
+
+        // Handle repeated fields (except for map fields which are handled separately)
+        if (field.isRepeated() && !field.isMapField()) {
+            fieldNode.put("type", "array");
+            ObjectNode itemsNode = objectMapper.createObjectNode();
+
+            if (field.getType() == Descriptors.FieldDescriptor.Type.MESSAGE) {
+                // For message types, generate a nested schema or a reference
+                addMessageOrRef(field.getMessageType(), itemsNode);
+            } else {
+                // For primitive types, set the type of the items
+                updateFieldType(field, itemsNode);
+            }
+            fieldNode.set("items", itemsNode);
+        } else {
+            // Handle non-repeated fields
+            updateFieldType(field, fieldNode);
+        }
+
+        propertiesNode.set(field.getName(), fieldNode);
+    }
+
+    private void updateFieldType(Descriptors.FieldDescriptor field, ObjectNode fieldNode) {
+        switch (field.getType()) {
+            case STRING:
+                fieldNode.put("type", "string");
+                break;
+            case BOOL:
+                fieldNode.put("type", "boolean");
+                break;
+            case INT32:
+            case INT64:
+            case UINT32:
+            case UINT64:
+            case SINT32:
+            case SINT64:
+            case FIXED32:
+            case FIXED64:
+            case SFIXED32:
+            case SFIXED64:
+                fieldNode.put("type", "integer");
+                break;
+            case FLOAT:
+            case DOUBLE:
+                fieldNode.put("type", "number");
+                break;
+            case BYTES:
+                fieldNode.put("type", "string");
+                fieldNode.put("contentEncoding", "base64");
+                break;
+            case ENUM:
+                fieldNode.put("type", "string");
+                ArrayNode enumValues = objectMapper.createArrayNode();
+                for (Descriptors.EnumValueDescriptor value : field.getEnumType().getValues()) {
+                    enumValues.add(value.getName());
+                }
+                fieldNode.set("enum", enumValues);
+                break;
+            case MESSAGE:
+                if (field.isMapField()) {
+                    // Handle map fields
+                    fieldNode.put("type", "object");
+
+                    // Value property
+                    ObjectNode valueNode = objectMapper.createObjectNode();
+                    Descriptors.FieldDescriptor valueField =
+                            field.getMessageType().findFieldByName("value");
+                    updateFieldType(valueField, valueNode);
+                    fieldNode.set("additionalProperties", valueNode);
+                    if (profile == SchemaProfile.STANDARD) {
+                        fieldNode.set("properties", objectMapper.createObjectNode());
+                    }
+                } else {
+                    // Handle nested message fields
+                    addMessageOrRef(field.getMessageType(), fieldNode);
+                }
+                break;
+            default:
+                fieldNode.put("type", "string");
+        }
+    }
+}
@@ -0,0 +1,648 @@
+package io.masterkun.ai.grpc;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+import com.google.protobuf.util.JsonFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Descriptor-driven transcoder that converts the JSON tool input directly into protobuf wire
+ * format. The input is read with a streaming Jackson parser and written to a
+ * {@link CodedOutputStream}, so no JSON tree and no {@link DynamicMessage} is built on the call
+ * path. The accepted JSON follows the proto3 JSON mapping, the same way as
+ * {@code JsonFormat.parser().ignoringUnknownFields()} does: fields can be referenced by JSON name
+ * or proto name, unknown fields and unknown enum names are ignored, and 64-bit integers can be
+ * given as strings.
+ * <p>
+ * Well-known types with a special JSON mapping (e.g. {@code google.protobuf.Timestamp}) are rare
+ * in tool inputs and fall back to {@link JsonFormat} for that sub-tree only, or for the whole input
+ * if the message type itself is one of them. Like {@link JsonFormat}, a field given twice, by the
+ * same or by its other name, and several fields of the same oneof are rejected.
+ * <p>
+ * Instances are immutable and thread-safe, and should be created once per input descriptor.
+ */
+public class ProtoJsonTranscoder {
+    private static final int RECURSION_LIMIT = 100;
+    private static final BigInteger MAX_UINT64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    private static final Set<String> WELL_KNOWN_TYPES = Set.of(
+            "google.protobuf.Any",
+            "google.protobuf.Duration",
+            "google.protobuf.FieldMask",
+            "google.protobuf.Timestamp",
+            "google.protobuf.Struct",
+            "google.protobuf.ListValue",
+            "google.protobuf.Value",
+            "google.protobuf.DoubleValue",
+            "google.protobuf.FloatValue",
+            "google.protobuf.Int64Value",
+            "google.protobuf.UInt64Value",
+            "google.protobuf.Int32Value",
+            "google.protobuf.UInt32Value",
+            "google.protobuf.BoolValue",
+            "google.protobuf.StringValue",
+            "google.protobuf.BytesValue");
+    private static final JsonFormat.Parser WELL_KNOWN_PARSER =
+            JsonFormat.parser().ignoringUnknownFields();
+
+    private final Descriptors.Descriptor descriptor;
+    private final Map<Descriptors.Descriptor, Map<String, Descriptors.FieldDescriptor>> fields;
+
+    private ProtoJsonTranscoder(Descriptors.Descriptor descriptor) {
+        this.descriptor = descriptor;
+        Map<Descriptors.Descriptor, Map<String, Descriptors.FieldDescriptor>> fields =
+                new HashMap<>();
+        collectFields(descriptor, fields);
+        this.fields = Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Creates a transcoder for the given message type. All message types reachable from the
+     * descriptor are resolved eagerly.
+     *
+     * @param descriptor The descriptor of the message to produce
+     * @return A new transcoder instance
+     */
+    public static ProtoJsonTranscoder of(Descriptors.Descriptor descriptor) {
+        return new ProtoJsonTranscoder(descriptor);
+    }
+
+    private static void collectFields(Descriptors.Descriptor descriptor,
+                                      Map<Descriptors.Descriptor, Map<String,
+                                              Descriptors.FieldDescriptor>> fields) {
+        if (fields.containsKey(descriptor) || WELL_KNOWN_TYPES.contains(descriptor.getFullName())) {
+            return;
+        }
+        Map<String, Descriptors.FieldDescriptor> byName = new HashMap<>();
+        fields.put(descriptor, byName);
+        for (Descriptors.FieldDescriptor field : descriptor.getFields()) {
+            byName.put(field.getName(), field);
+            byName.putIfAbsent(field.getJsonName(), field);
+            if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                collectFields(field.getMessageType(), fields);
+            }
+        }
+    }
+
+    /**
+     * Returns the descriptor of the message this transcoder produces.
+     *
+     * @return The message descriptor
+     */
+    public Descriptors.Descriptor getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Transcodes a JSON object into the protobuf wire format of the message type.
+     *
+     * @param json The JSON input
+     * @return The encoded message
+     * @throws RuntimeException if the JSON is malformed or does not match the message type
+     */
+    public ByteString transcode(String json) {
+        if (WELL_KNOWN_TYPES.contains(descriptor.getFullName())) {
+            try {
+                DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+                WELL_KNOWN_PARSER.merge(json, builder);
+                return builder.build().toByteString();
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        try (JsonParser parser = JSONUtils.OBJECT_MAPPER.createParser(json)) {
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_OBJECT) {
+                throw new InvalidProtocolBufferException("Expect message object but got: " + token);
+            }
+            Writer writer = new Writer();
+            writeMessage(parser, descriptor, writer, 0);
+            if ((token = parser.nextToken()) != null) {
+                throw new InvalidProtocolBufferException(
+                        "Expect end of input after the message object but got: " + token);
+            }
+            return writer.result();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeMessage(JsonParser parser, Descriptors.Descriptor type, Writer writer,
+                              int depth) throws IOException {
+        if (depth > RECURSION_LIMIT) {
+            throw new InvalidProtocolBufferException("Hit recursion limit.");
+        }
+        Map<String, Descriptors.FieldDescriptor> byName = fields.get(type);
+        CodedOutputStream out = writer.level(depth).out;
+        BitSet seen = null;
+        BitSet oneofs = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            Descriptors.FieldDescriptor field = byName.get(parser.currentName());
+            JsonToken value = parser.nextToken();
+            if (field == null) {
+                parser.skipChildren();
+                continue;
+            }
+            if (seen == null) {
+                seen = new BitSet(type.getFields().size());
+            }
+            if (seen.get(field.getIndex())) {
+                throw new InvalidProtocolBufferException(
+                        "Field " + field.getFullName() + " has already been set.");
+            }
+            seen.set(field.getIndex());
+            if (value == JsonToken.VALUE_NULL && !acceptsNull(field)) {
+                parser.skipChildren();
+                continue;
+            }
+            Descriptors.OneofDescriptor oneof = field.getRealContainingOneof();
+            if (oneof != null) {
+                // Fields given as null are not set, so only the fields set so far are counted
+                if (oneofs == null) {
+                    oneofs = new BitSet(type.getOneofs().size());
+                }
+                if (oneofs.get(oneof.getIndex())) {
+                    throw new InvalidProtocolBufferException("Cannot set field " +
+                            field.getFullName() + " because another field of the oneof " +
+                            oneof.getFullName() + " has already been set.");
+                }
+                oneofs.set(oneof.getIndex());
+            }
+            if (field.isMapField()) {
+                writeMap(parser, value, field, writer, depth);
+            } else if (field.isRepeated()) {
+                writeRepeated(parser, value, field, writer, depth);
+            } else if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                writeNested(parser, value, field.getNumber(), field.getMessageType(), writer,
+                        depth);
+            } else {
+                writeScalar(parser, value, field, out, true, !field.hasPresence());
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new InvalidProtocolBufferException("Expect field name but got: " + token);
+        }
+    }
+
+    private static boolean acceptsNull(Descriptors.FieldDescriptor field) {
+        return !field.isRepeated() &&
+               field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE &&
+               field.getMessageType().getFullName().equals("google.protobuf.Value");
+    }
+
+    private void writeRepeated(JsonParser parser, JsonToken token,
+                               Descriptors.FieldDescriptor field, Writer writer, int depth)
+            throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            throw new InvalidProtocolBufferException(
+                    "Expect an array for repeated field " + field.getName() + " but got: " + token);
+        }
+        CodedOutputStream out = writer.level(depth).out;
+        if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                checkNotNull(token, field);
+                writeNested(parser, token, field.getNumber(), field.getMessageType(), writer,
+                        depth);
+            }
+        } else if (field.isPacked()) {
+            Level packed = writer.level(depth + 1);
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                checkNotNull(token, field);
+                writeScalar(parser, token, field, packed.out, false, false);
+            }
+            packed.writeTo(out, field.getNumber());
+        } else {
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                checkNotNull(token, field);
+                writeScalar(parser, token, field, out, true, false);
+            }
+        }
+    }
+
+    private void writeMap(JsonParser parser, JsonToken token, Descriptors.FieldDescriptor field,
+                          Writer writer, int depth) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new InvalidProtocolBufferException(
+                    "Expect a map object for field " + field.getName() + " but got: " + token);
+        }
+        Descriptors.Descriptor entryType = field.getMessageType();
+        Descriptors.FieldDescriptor keyField = entryType.findFieldByNumber(1);
+        Descriptors.FieldDescriptor valueField = entryType.findFieldByNumber(2);
+        CodedOutputStream out = writer.level(depth).out;
+        Level entry = writer.level(depth + 1);
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            writeScalar(parser, token, keyField, entry.out, true, false);
+            JsonToken value = parser.nextToken();
+            checkNotNull(value, field);
+            if (valueField.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                writeNested(parser, value, 2, valueField.getMessageType(), writer, depth + 1);
+            } else if (!writeScalar(parser, value, valueField, entry.out, true, false)) {
+                // Unknown enum value, drop the whole entry
+                entry.reset();
+                continue;
+            }
+            entry.writeTo(out, field.getNumber());
+        }
+    }
+
+    private void writeNested(JsonParser parser, JsonToken token, int number,
+                             Descriptors.Descriptor type, Writer writer, int depth)
+            throws IOException {
+        CodedOutputStream out = writer.level(depth).out;
+        if (WELL_KNOWN_TYPES.contains(type.getFullName())) {
+            DynamicMessage.Builder builder = DynamicMessage.newBuilder(type);
+            WELL_KNOWN_PARSER.merge(parser.readValueAsTree().toString(), builder);
+            out.writeMessage(number, builder.build());
+            return;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new InvalidProtocolBufferException(
+                    "Expect message object for " + type.getFullName() + " but got: " + token);
+        }
+        writeMessage(parser, type, writer, depth + 1);
+        writer.level(depth + 1).writeTo(out, number);
+    }
+
+    /**
+     * Writes a single scalar value. Values equal to the field default are skipped when
+     * {@code skipDefault} is set, which matches the serialization of implicit-presence fields.
+     *
+     * @return false if the value is an unknown enum value and nothing has been written
+     */
+    private static boolean writeScalar(JsonParser parser, JsonToken token,
+                                       Descriptors.FieldDescriptor field, CodedOutputStream out,
+                                       boolean tagged, boolean skipDefault) throws IOException {
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            throw invalid(field, token.asString());
+        }
+        int number = field.getNumber();
+        int wireType = field.getLiteType().getWireType();
+        switch (field.getType()) {
+            case INT32, SINT32, SFIXED32 -> {
+                int v = (int) readInt64(parser, token, field, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                if (skipDefault && v == 0) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                switch (field.getType()) {
+                    case INT32 -> out.writeInt32NoTag(v);
+                    case SINT32 -> out.writeSInt32NoTag(v);
+                    default -> out.writeSFixed32NoTag(v);
+                }
+            }
+            case UINT32, FIXED32 -> {
+                int v = (int) readInt64(parser, token, field, 0, 0xFFFFFFFFL);
+                if (skipDefault && v == 0) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                if (field.getType() == Descriptors.FieldDescriptor.Type.UINT32) {
+                    out.writeUInt32NoTag(v);
+                } else {
+                    out.writeFixed32NoTag(v);
+                }
+            }
+            case INT64, SINT64, SFIXED64 -> {
+                long v = readInt64(parser, token, field, Long.MIN_VALUE, Long.MAX_VALUE);
+                if (skipDefault && v == 0) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                switch (field.getType()) {
+                    case INT64 -> out.writeInt64NoTag(v);
+                    case SINT64 -> out.writeSInt64NoTag(v);
+                    default -> out.writeSFixed64NoTag(v);
+                }
+            }
+            case UINT64, FIXED64 -> {
+                long v = readUInt64(parser, token, field);
+                if (skipDefault && v == 0) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                if (field.getType() == Descriptors.FieldDescriptor.Type.UINT64) {
+                    out.writeUInt64NoTag(v);
+                } else {
+                    out.writeFixed64NoTag(v);
+                }
+            }
+            case FLOAT -> {
+                double d = readDouble(parser, token, field);
+                if (Double.isFinite(d) && Math.abs(d) > Float.MAX_VALUE * (1.0 + 1e-6)) {
+                    throw invalid(field, parser.getText());
+                }
+                float v = (float) d;
+                if (skipDefault && Float.floatToRawIntBits(v) == 0) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                out.writeFloatNoTag(v);
+            }
+            case DOUBLE -> {
+                double v = readDouble(parser, token, field);
+                if (skipDefault && Double.doubleToRawLongBits(v) == 0) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                out.writeDoubleNoTag(v);
+            }
+            case BOOL -> {
+                boolean v = readBool(parser, token, field);
+                if (skipDefault && !v) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                out.writeBoolNoTag(v);
+            }
+            case STRING -> {
+                String v = parser.getText();
+                if (skipDefault && v.isEmpty()) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                out.writeStringNoTag(v);
+            }
+            case BYTES -> {
+                ByteString v = readBytes(parser, token, field);
+                if (skipDefault && v.isEmpty()) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                out.writeBytesNoTag(v);
+            }
+            case ENUM -> {
+                Integer v = readEnum(parser, token, field);
+                if (v == null) {
+                    return false;
+                }
+                if (skipDefault && v == 0) {
+                    return true;
+                }
+                writeTag(out, tagged, number, wireType);
+                out.writeEnumNoTag(v);
+            }
+            default -> throw invalid(field, parser.getText());
+        }
+        return true;
+    }
+
+    private static void writeTag(CodedOutputStream out, boolean tagged, int number, int wireType)
+            throws IOException {
+        if (tagged) {
+            out.writeTag(number, wireType);
+        }
+    }
+
+    private static long readInt64(JsonParser parser, JsonToken token,
+                                  Descriptors.FieldDescriptor field, long min, long max)
+            throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT &&
+            parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+            long v = parser.getLongValue();
+            if (v >= min && v <= max) {
+                return v;
+            }
+        } else {
+            BigInteger v = readBigInteger(parser, token);
+            if (v != null && v.bitLength() < 64) {
+                long l = v.longValue();
+                if (l >= min && l <= max) {
+                    return l;
+                }
+            }
+        }
+        throw invalid(field, parser.getText());
+    }
+
+    private static long readUInt64(JsonParser parser, JsonToken token,
+                                   Descriptors.FieldDescriptor field) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT &&
+            parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+            long v = parser.getLongValue();
+            if (v >= 0) {
+                return v;
+            }
+        } else {
+            BigInteger v = readBigInteger(parser, token);
+            if (v != null && v.signum() >= 0 && v.compareTo(MAX_UINT64) <= 0) {
+                return v.longValue();
+            }
+        }
+        throw invalid(field, parser.getText());
+    }
+
+    private static BigInteger readBigInteger(JsonParser parser, JsonToken token)
+            throws IOException {
+        try {
+            return switch (token) {
+                case VALUE_NUMBER_INT -> parser.getBigIntegerValue();
+                case VALUE_NUMBER_FLOAT, VALUE_STRING, FIELD_NAME ->
+                        new BigDecimal(parser.getText().trim()).toBigIntegerExact();
+                default -> null;
+            };
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static double readDouble(JsonParser parser, JsonToken token,
+                                     Descriptors.FieldDescriptor field) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+                return parser.getDoubleValue();
+            }
+            case VALUE_STRING, FIELD_NAME -> {
+                String text = parser.getText();
+                switch (text) {
+                    case "NaN" -> {
+                        return Double.NaN;
+                    }
+                    case "Infinity" -> {
+                        return Double.POSITIVE_INFINITY;
+                    }
+                    case "-Infinity" -> {
+                        return Double.NEGATIVE_INFINITY;
+                    }
+                    default -> {
+                        try {
+                            return Double.parseDouble(text);
+                        } catch (NumberFormatException e) {
+                            throw invalid(field, text);
+                        }
+                    }
+                }
+            }
+            default -> throw invalid(field, parser.getText());
+        }
+    }
+
+    private static boolean readBool(JsonParser parser, JsonToken token,
+                                    Descriptors.FieldDescriptor field) throws IOException {
+        switch (token) {
+            case VALUE_TRUE -> {
+                return true;
+            }
+            case VALUE_FALSE -> {
+                return false;
+            }
+            case VALUE_STRING, FIELD_NAME -> {
+                String text = parser.getText();
+                if (text.equals("true")) {
+                    return true;
+                }
+                if (text.equals("false")) {
+                    return false;
+                }
+                throw invalid(field, text);
+            }
+            default -> throw invalid(field, parser.getText());
+        }
+    }
+
+    private static ByteString readBytes(JsonParser parser, JsonToken token,
+                                        Descriptors.FieldDescriptor field) throws IOException {
+        if (token != JsonToken.VALUE_STRING && token != JsonToken.FIELD_NAME) {
+            throw invalid(field, parser.getText());
+        }
+        String text = parser.getText();
+        try {
+            return UnsafeByteOperations.unsafeWrap(Base64.getDecoder().decode(text));
+        } catch (IllegalArgumentException e) {
+            try {
+                return UnsafeByteOperations.unsafeWrap(Base64.getUrlDecoder().decode(text));
+            } catch (IllegalArgumentException ignored) {
+                throw invalid(field, text);
+            }
+        }
+    }
+
+    private static Integer readEnum(JsonParser parser, JsonToken token,
+                                    Descriptors.FieldDescriptor field) throws IOException {
+        Descriptors.EnumDescriptor enumType = field.getEnumType();
+        if (token == JsonToken.VALUE_STRING) {
+            Descriptors.EnumValueDescriptor value = enumType.findValueByName(parser.getText());
+            if (value != null) {
+                return value.getNumber();
+            }
+            // Numeric strings are accepted as well
+            BigInteger number = readBigInteger(parser, token);
+            if (number == null) {
+                return null;
+            }
+            return readEnumNumber(number, enumType, field, parser);
+        }
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return readEnumNumber(parser.getBigIntegerValue(), enumType, field, parser);
+        }
+        throw invalid(field, parser.getText());
+    }
+
+    private static Integer readEnumNumber(BigInteger number, Descriptors.EnumDescriptor enumType,
+                                          Descriptors.FieldDescriptor field, JsonParser parser)
+            throws IOException {
+        if (number.bitLength() >= 32) {
+            throw invalid(field, parser.getText());
+        }
+        int value = number.intValue();
+        if (enumType.findValueByNumber(value) == null && enumType.isClosed()) {
+            return null;
+        }
+        return value;
+    }
+
+    private static void checkNotNull(JsonToken token, Descriptors.FieldDescriptor field)
+            throws InvalidProtocolBufferException {
+        if (token == JsonToken.VALUE_NULL) {
+            throw new InvalidProtocolBufferException(
+                    "Repeated field and map elements cannot be null in field: " + field.getName());
+        }
+    }
+
+    private static InvalidProtocolBufferException invalid(Descriptors.FieldDescriptor field,
+                                                          String value) {
+        return new InvalidProtocolBufferException(
+                "Invalid value for field " + field.getFullName() + ": " + value);
+    }
+
+    /**
+     * Holds one encoding buffer per nesting depth. Length-delimited values are written to the
+     * buffer of the next depth first and then copied to their parent with a length prefix, and the
+     * buffers are reused for all siblings at the same depth.
+     */
+    private static class Writer {
+        private Level[] levels = new Level[4];
+
+        Level level(int depth) {
+            if (depth >= levels.length) {
+                Level[] grown = new Level[Math.max(depth + 1, levels.length * 2)];
+                System.arraycopy(levels, 0, grown, 0, levels.length);
+                levels = grown;
+            }
+            Level level = levels[depth];
+            if (level == null) {
+                level = levels[depth] = new Level(depth == 0 ? 256 : 64);
+            }
+            return level;
+        }
+
+        ByteString result() throws IOException {
+            Level root = level(0);
+            root.out.flush();
+            return UnsafeByteOperations.unsafeWrap(root.buffer.array(), 0, root.buffer.size());
+        }
+    }
+
+    private static class Level {
+        private final Buffer buffer;
+        private final CodedOutputStream out;
+
+        Level(int size) {
+            this.buffer = new Buffer(size);
+            this.out = CodedOutputStream.newInstance(buffer, size);
+        }
+
+        /**
+         * Writes the content of this level as a length-delimited field to the parent stream and
+         * resets this level for reuse.
+         */
+        void writeTo(CodedOutputStream parent, int number) throws IOException {
+            out.flush();
+            parent.writeTag(number, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            parent.writeUInt32NoTag(buffer.size());
+            parent.writeRawBytes(buffer.array(), 0, buffer.size());
+            buffer.reset();
+        }
+
+        void reset() throws IOException {
+            out.flush();
+            buffer.reset();
+        }
+    }
+
+    private static class Buffer extends ByteArrayOutputStream {
+        Buffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.WireFormat;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.masterkun.ai.proto.ToolProto;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Projects protobuf messages to the part the LLM gets to see. Fields marked with the
+ * {@code field_exclude} option are removed from responses at the wire level, before they are
+ * parsed, see {@link #marshaller(MethodDescriptor.Marshaller)}. The fields requested by the LLM
+ * are selected from parsed messages with {@link #select(Message, Collection)}.
+ * <p>
+ * Excluded fields are found once per message type, including the types nested in it. Messages
+ * without excluded fields anywhere inside are copied as is. This class is thread-safe.
+ */
+public final class ProtoProjection {
+    // The fields to skip or to descend into, per message type that contains excluded fields
+    private final Map<Descriptors.Descriptor, Map<Integer, Descriptors.FieldDescriptor>> plans;
+    private final Set<Descriptors.FieldDescriptor> excluded;
+    private final Descriptors.Descriptor root;
+
+    private ProtoProjection(Descriptors.Descriptor root,
+                            Map<Descriptors.Descriptor, Map<Integer, Descriptors.FieldDescriptor>> plans,
+                            Set<Descriptors.FieldDescriptor> excluded) {
+        this.root = root;
+        this.plans = plans;
+        this.excluded = excluded;
+    }
+
+    /**
+     * Creates the projection of a message type.
+     *
+     * @param type The message type
+     * @return The projection, or null if no field of the type or the types nested in it is
+     * excluded
+     */
+    @Nullable
+    public static ProtoProjection of(Descriptors.Descriptor type) {
+        Set<Descriptors.Descriptor> types = new HashSet<>();
+        collect(type, types);
+        // Types with excluded fields, then the types containing them until nothing changes
+        Set<Descriptors.Descriptor> projected = new HashSet<>();
+        Set<Descriptors.FieldDescriptor> excluded = new HashSet<>();
+        for (Descriptors.Descriptor t : types) {
+            for (Descriptors.FieldDescriptor field : t.getFields()) {
+                if (isExcluded(field)) {
+                    excluded.add(field);
+                    projected.add(t);
+                }
+            }
+        }
+        boolean changed = !projected.isEmpty();
+        while (changed) {
+            changed = false;
+            for (Descriptors.Descriptor t : types) {
+                if (!projected.contains(t) && t.getFields().stream()
+                        .anyMatch(f -> f.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE &&
+                                       projected.contains(f.getMessageType()))) {
+                    projected.add(t);
+                    changed = true;
+                }
+            }
+        }
+        if (!projected.contains(type)) {
+            return null;
+        }
+        Map<Descriptors.Descriptor, Map<Integer, Descriptors.FieldDescriptor>> plans =
+                new HashMap<>();
+        for (Descriptors.Descriptor t : projected) {
+            Map<Integer, Descriptors.FieldDescriptor> plan = new HashMap<>();
+            for (Descriptors.FieldDescriptor field : t.getFields()) {
+                if (excluded.contains(field) ||
+                    field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE &&
+                    projected.contains(field.getMessageType())) {
+                    plan.put(field.getNumber(), field);
+                }
+            }
+            plans.put(t, plan);
+        }
+        return new ProtoProjection(type, plans, excluded);
+    }
+
+    private static void collect(Descriptors.Descriptor type, Set<Descriptors.Descriptor> types) {
+        if (types.add(type)) {
+            for (Descriptors.FieldDescriptor field : type.getFields()) {
+                if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                    collect(field.getMessageType(), types);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether a field is hidden from the LLM by the {@code field_exclude} option.
+     *
+     * @param field The field
+     * @return true if the field is excluded
+     */
+    public static boolean isExcluded(Descriptors.FieldDescriptor field) {
+        return field.getOptions().getExtension(ToolProto.fieldExclude);
+    }
+
+    /**
+     * Wraps a response marshaller so that excluded fields are skipped before the response is
+     * parsed. Skipped fields are neither decoded nor copied.
+     *
+     * @param marshaller The marshaller of the message type of this projection
+     * @param <T>        The message type
+     * @return The projecting marshaller
+     */
+    public <T> MethodDescriptor.Marshaller<T> marshaller(MethodDescriptor.Marshaller<T> marshaller) {
+        return new MethodDescriptor.Marshaller<>() {
+            @Override
+            public InputStream stream(T value) {
+                return marshaller.stream(value);
+            }
+
+            @Override
+            public T parse(InputStream stream) {
+                ByteString projected;
+                try {
+                    projected = strip(stream);
+                } catch (IOException e) {
+                    throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence")
+                            .withCause(e)
+                            .asRuntimeException();
+                }
+                return marshaller.parse(projected.newInput());
+            }
+        };
+    }
+
+    /**
+     * Copies a serialized message without its excluded fields.
+     *
+     * @param stream The serialized message of the type of this projection
+     * @return The serialized message without excluded fields
+     * @throws IOException if the message is malformed
+     */
+    public ByteString strip(InputStream stream) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(stream);
+        input.setSizeLimit(Integer.MAX_VALUE);
+        return strip(input);
+    }
+
+    /**
+     * Copies a serialized message without its excluded fields.
+     *
+     * @param input The serialized message of the type of this projection
+     * @return The serialized message without excluded fields
+     * @throws IOException if the message is malformed
+     */
+    ByteString strip(CodedInputStream input) throws IOException {
+        ByteString.Output output = ByteString.newOutput();
+        CodedOutputStream out = CodedOutputStream.newInstance(output);
+        copy(input, root, out);
+        out.flush();
+        return output.toByteString();
+    }
+
+    private void copy(CodedInputStream input, Descriptors.Descriptor type, CodedOutputStream out)
+            throws IOException {
+        Map<Integer, Descriptors.FieldDescriptor> plan = plans.get(type);
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            Descriptors.FieldDescriptor field = plan.get(WireFormat.getTagFieldNumber(tag));
+            if (field != null && excluded.contains(field)) {
+                input.skipField(tag);
+            } else if (field == null ||
+                       WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                if (!copyField(tag, input, out)) {
+                    return;
+                }
+            } else {
+                // A nested message containing excluded fields, whose new size is only known
+                // after it has been copied
+                int limit = input.pushLimit(input.readRawVarint32());
+                ByteString.Output nestedOutput = ByteString.newOutput();
+                CodedOutputStream nested = CodedOutputStream.newInstance(nestedOutput);
+                copy(input, field.getMessageType(), nested);
+                nested.flush();
+                input.popLimit(limit);
+                out.writeBytes(field.getNumber(), nestedOutput.toByteString());
+            }
+        }
+    }
+
+    /**
+     * Copies a field as is, given its tag already read from the input.
+     *
+     * @return false if the tag ends a group, which is not copied
+     */
+    private static boolean copyField(int tag, CodedInputStream input, CodedOutputStream out)
+            throws IOException {
+        switch (WireFormat.getTagWireType(tag)) {
+            case WireFormat.WIRETYPE_VARINT -> {
+                out.writeUInt32NoTag(tag);
+                out.writeUInt64NoTag(input.readRawVarint64());
+            }
+            case WireFormat.WIRETYPE_FIXED64 -> {
+                out.writeUInt32NoTag(tag);
+                out.writeFixed64NoTag(input.readRawLittleEndian64());
+            }
+            case WireFormat.WIRETYPE_LENGTH_DELIMITED -> {
+                out.writeUInt32NoTag(tag);
+                out.writeBytesNoTag(input.readBytes());
+            }
+            case WireFormat.WIRETYPE_START_GROUP -> {
+                out.writeUInt32NoTag(tag);
+                int nested;
+                do {
+                    nested = input.readTag();
+                } while (nested != 0 && copyField(nested, input, out));
+                // The end tag of the group, with the field number of its start tag
+                input.checkLastTagWas(tag + (WireFormat.WIRETYPE_END_GROUP -
+                                             WireFormat.WIRETYPE_START_GROUP));
+                out.writeUInt32NoTag(input.getLastTag());
+            }
+            case WireFormat.WIRETYPE_END_GROUP -> {
+                return false;
+            }
+            case WireFormat.WIRETYPE_FIXED32 -> {
+                out.writeUInt32NoTag(tag);
+                out.writeFixed32NoTag(input.readRawLittleEndian32());
+            }
+            default -> throw new InvalidProtocolBufferException.InvalidWireTypeException(
+                    "Protocol message tag had invalid wire type.");
+        }
+        return true;
+    }
+
+    /**
+     * Selects the fields of a message at the given paths. A path is a dot-separated list of
+     * field names, proto or JSON names, like {@code items.name}. A path into a repeated field
+     * selects the subfields of every element, and a path ending at a message field selects it
+     * as a whole. Paths naming unknown fields are ignored, and if no path names a field of the
+     * message the message is returned as is.
+     *
+     * @param message The message
+     * @param paths   The paths of the fields to select
+     * @param <T>     The message type
+     * @return A message with only the selected fields
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Message> T select(T message, Collection<String> paths) {
+        PathNode tree = new PathNode();
+        for (String path : paths) {
+            PathNode node = tree;
+            for (String name : path.split("\\.")) {
+                if (!name.isEmpty()) {
+                    node = node.children.computeIfAbsent(name.trim(), k -> new PathNode());
+                }
+            }
+        }
+        Message.Builder builder = message.newBuilderForType();
+        return select(message, tree, builder) ? (T) builder.build() : message;
+    }
+
+    /**
+     * Copies the selected fields into a builder.
+     *
+     * @return false if no path names a field of the message
+     */
+    private static boolean select(Message message, PathNode node, Message.Builder builder) {
+        boolean found = false;
+        Descriptors.Descriptor type = message.getDescriptorForType();
+        for (Map.Entry<String, PathNode> entry : node.children.entrySet()) {
+            Descriptors.FieldDescriptor field = findField(type, entry.getKey());
+            if (field == null) {
+                continue;
+            }
+            found = true;
+            PathNode child = entry.getValue();
+            boolean nested = !child.children.isEmpty() && !field.isMapField() &&
+                             field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE;
+            if (field.isRepeated()) {
+                if (!nested) {
+                    builder.setField(field, message.getField(field));
+                    continue;
+                }
+                for (Object element : (List<?>) message.getField(field)) {
+                    Message.Builder elementBuilder = builder.newBuilderForField(field);
+                    builder.addRepeatedField(field, select((Message) element, child,
+                            elementBuilder) ? elementBuilder.build() : element);
+                }
+            } else if (message.hasField(field)) {
+                if (!nested) {
+                    builder.setField(field, message.getField(field));
+                    continue;
+                }
+                Message value = (Message) message.getField(field);
+                Message.Builder valueBuilder = builder.newBuilderForField(field);
+                builder.setField(field, select(value, child, valueBuilder) ?
+                        valueBuilder.build() : value);
+            }
+        }
+        return found;
+    }
+
+    @Nullable
+    private static Descriptors.FieldDescriptor findField(Descriptors.Descriptor type, String name) {
+        Descriptors.FieldDescriptor field = type.findFieldByName(name);
+        if (field == null) {
+            for (Descriptors.FieldDescriptor f : type.getFields()) {
+                if (f.getJsonName().equals(name)) {
+                    return f;
+                }
+            }
+        }
+        return field;
+    }
+
+    private static class PathNode {
+        private final Map<String, PathNode> children = new LinkedHashMap<>();
+    }
+}
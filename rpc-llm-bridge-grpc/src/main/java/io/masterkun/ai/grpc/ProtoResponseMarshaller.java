@@ -0,0 +1,166 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * The response marshaller of bridge methods. The response is copied out of the transport buffers
+ * once, into an array of its exact size, and parsed with aliasing enabled, so {@code bytes}
+ * fields are slices of that array instead of copies. Aliasing does not apply to {@code string}
+ * fields, which the parser still decodes into strings, in particular for the dynamic messages of
+ * methods built from descriptors or auto-discovered: responses made of text only save the copies
+ * of the transport.
+ * <p>
+ * The default protobuf marshaller of gRPC parses messages larger than 4 MiB from the stream,
+ * copying every {@code bytes} field and growing its buffers on the way, and copies smaller ones
+ * from a reused buffer. Both cost several times the response size in short-lived garbage for
+ * large responses.
+ * <p>
+ * The transport buffers themselves are not aliased: they are reference-counted and released when
+ * the call moves on, while the parsed result may be cached, paged or formatted much later.
+ * <p>
+ * An aliased {@code bytes} field keeps the whole response array alive, which is only right for
+ * results that are formatted and dropped. Results that are cached, buffered for paging or
+ * reduced to some of their fields would pin an array much larger than their weight, so their
+ * marshallers are created without aliasing and copy the {@code bytes} fields.
+ *
+ * @param <T> The response message type
+ */
+final class ProtoResponseMarshaller<T extends Message> implements MethodDescriptor.PrototypeMarshaller<T> {
+    private final MethodDescriptor.Marshaller<T> marshaller;
+    private final T prototype;
+    private final Parser<? extends T> parser;
+    private final ProtoProjection projection;
+    private final boolean aliasing;
+
+    private ProtoResponseMarshaller(MethodDescriptor.Marshaller<T> marshaller, T prototype,
+                                    @Nullable ProtoProjection projection, boolean aliasing) {
+        this.marshaller = marshaller;
+        this.prototype = prototype;
+        this.parser = parserOf(prototype);
+        this.projection = projection;
+        this.aliasing = aliasing;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Message> Parser<? extends T> parserOf(T prototype) {
+        return (Parser<? extends T>) prototype.getParserForType();
+    }
+
+    /**
+     * Wraps the response marshaller of a method. Marshallers that do not expose their message
+     * prototype, which is the case for custom marshallers, are kept.
+     *
+     * @param marshaller The response marshaller of the method
+     * @param projection The projection of the response type, or null if no field is excluded
+     * @param <T>        The response message type
+     * @return The marshaller parsing responses
+     */
+    static <T extends Message> MethodDescriptor.Marshaller<T> of(MethodDescriptor.Marshaller<T> marshaller,
+                                                                 @Nullable ProtoProjection projection) {
+        return of(marshaller, projection, true);
+    }
+
+    /**
+     * Wraps the response marshaller of a method, parsing {@code bytes} fields as slices of the
+     * response or as copies.
+     *
+     * @param marshaller The response marshaller of the method
+     * @param projection The projection of the response type, or null if no field is excluded
+     * @param aliasing   Whether {@code bytes} fields may alias the response array
+     * @param <T>        The response message type
+     * @return The marshaller parsing responses
+     */
+    static <T extends Message> MethodDescriptor.Marshaller<T> of(MethodDescriptor.Marshaller<T> marshaller,
+                                                                 @Nullable ProtoProjection projection,
+                                                                 boolean aliasing) {
+        if (marshaller instanceof MethodDescriptor.PrototypeMarshaller<T> prototypeMarshaller &&
+            prototypeMarshaller.getMessagePrototype() != null) {
+            return new ProtoResponseMarshaller<>(marshaller, prototypeMarshaller.getMessagePrototype(),
+                    projection, aliasing);
+        }
+        return projection == null ? marshaller : projection.marshaller(marshaller);
+    }
+
+    @Override
+    public T getMessagePrototype() {
+        return prototype;
+    }
+
+    @Override
+    public Class<T> getMessageClass() {
+        @SuppressWarnings("unchecked")
+        Class<T> type = (Class<T>) prototype.getClass();
+        return type;
+    }
+
+    @Override
+    public InputStream stream(T value) {
+        return marshaller.stream(value);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+        try {
+            byte[] bytes = readAll(stream);
+            CodedInputStream input;
+            if (projection == null) {
+                // Only the input of an immutable buffer aliases, which the array is once read
+                input = aliasing ? UnsafeByteOperations.unsafeWrap(bytes).newCodedInput() :
+                        CodedInputStream.newInstance(bytes);
+            } else {
+                CodedInputStream raw = UnsafeByteOperations.unsafeWrap(bytes).newCodedInput();
+                // Kept fields are copied into the projected message from the slices
+                raw.enableAliasing(true);
+                raw.setSizeLimit(Integer.MAX_VALUE);
+                ByteString projected = projection.strip(raw);
+                input = projected.newCodedInput();
+            }
+            input.enableAliasing(aliasing);
+            input.setSizeLimit(Integer.MAX_VALUE);
+            return parser.parseFrom(input);
+        } catch (IOException e) {
+            throw Status.INTERNAL.withDescription("Invalid protobuf byte sequence")
+                    .withCause(e)
+                    .asRuntimeException();
+        }
+    }
+
+    /**
+     * Reads a stream into an array. Streams of gRPC know their length, so the array is allocated
+     * once with the exact size.
+     */
+    static byte[] readAll(InputStream stream) throws IOException {
+        if (stream instanceof KnownLength) {
+            int size = stream.available();
+            byte[] bytes = new byte[size];
+            int read = stream.readNBytes(bytes, 0, size);
+            if (read < size) {
+                return Arrays.copyOf(bytes, read);
+            }
+            int next = stream.read();
+            if (next == -1) {
+                return bytes;
+            }
+            // Longer than announced
+            ByteArrayOutputStream out = new ByteArrayOutputStream(size + 8192);
+            out.write(bytes);
+            out.write(next);
+            stream.transferTo(out);
+            return out.toByteArray();
+        }
+        return stream.readAllBytes();
+    }
+}
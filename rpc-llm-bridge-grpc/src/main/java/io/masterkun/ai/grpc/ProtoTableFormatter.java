@@ -0,0 +1,256 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MapEntry;
+import com.google.protobuf.Message;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.util.JsonFormat;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Formats protobuf messages as text with repeated messages rendered as tables. A repeated message
+ * field is written as its label, a header line with the labels of the columns, and one line per
+ * element with the cells separated by {@code |}. Columns that are empty in every element are left
+ * out, and so are the fields excluded by the {@code field_exclude} option. Other fields are
+ * written as {@code label: value} lines, with nested messages, lists and maps in compact JSON.
+ * <p>
+ * As the labels are only written once per table, this format is much smaller than the outline
+ * format of {@link ProtoFormatter} for list-heavy results. This class is thread-safe.
+ */
+public class ProtoTableFormatter {
+    private static final JsonFormat.Printer JSON_PRINTER = JsonFormat.printer()
+            .preservingProtoFieldNames()
+            .omittingInsignificantWhitespace();
+    private static final char SEPARATOR = '|';
+    private static final Runnable NO_LISTENER = () -> {
+    };
+
+    private final ProtoFormatter formatter;
+
+    /**
+     * Creates a table formatter that takes the field labels from the given formatter.
+     *
+     * @param formatter The formatter keeping the field labels
+     */
+    public ProtoTableFormatter(ProtoFormatter formatter) {
+        this.formatter = formatter;
+    }
+
+    /**
+     * Formats a protobuf message into an appendable.
+     *
+     * @param message The protobuf message to format
+     * @param out     The appendable to write to
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatTo(MessageOrBuilder message, Appendable out) throws IOException {
+        formatTo(message, out, NO_LISTENER);
+    }
+
+    /**
+     * Formats a protobuf message into an appendable, and reports every complete table row.
+     *
+     * @param message     The protobuf message to format
+     * @param out         The appendable to write to
+     * @param itemWritten Called after every table row
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatTo(MessageOrBuilder message, Appendable out, Runnable itemWritten)
+            throws IOException {
+        String[] labels = formatter.labels(message.getDescriptorForType());
+        boolean first = true;
+        for (Descriptors.FieldDescriptor field : message.getDescriptorForType().getFields()) {
+            if (labels[field.getIndex()] == null || !isPresent(message, field)) {
+                continue;
+            }
+            if (first) {
+                first = false;
+            } else {
+                out.append('\n');
+            }
+            out.append(labels[field.getIndex()]).append(':');
+            if (field.isRepeated() && !field.isMapField() &&
+                field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+                out.append('\n');
+                @SuppressWarnings("unchecked")
+                List<? extends MessageOrBuilder> rows =
+                        (List<? extends MessageOrBuilder>) message.getField(field);
+                table(rows, field.getMessageType(), out, itemWritten);
+            } else {
+                out.append(' ');
+                cell(field, message.getField(field), out);
+            }
+        }
+    }
+
+    /**
+     * Formats a list of messages of the same type, e.g. the messages of a stream, as one table.
+     *
+     * @param messages The protobuf messages to format
+     * @param out      The appendable to write to
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatAllTo(List<? extends MessageOrBuilder> messages, Appendable out)
+            throws IOException {
+        formatAllTo(messages, out, NO_LISTENER);
+    }
+
+    /**
+     * Formats a list of messages of the same type as one table, and reports every complete row.
+     *
+     * @param messages    The protobuf messages to format
+     * @param out         The appendable to write to
+     * @param itemWritten Called after every table row
+     * @throws IOException if writing to the appendable fails
+     */
+    public void formatAllTo(List<? extends MessageOrBuilder> messages, Appendable out,
+                            Runnable itemWritten) throws IOException {
+        if (!messages.isEmpty()) {
+            table(messages, messages.get(0).getDescriptorForType(), out, itemWritten);
+        }
+    }
+
+    private void table(List<? extends MessageOrBuilder> rows, Descriptors.Descriptor type,
+                       Appendable out, Runnable itemWritten) throws IOException {
+        List<Descriptors.FieldDescriptor> fields = type.getFields();
+        String[] labels = formatter.labels(type);
+        boolean[] used = new boolean[fields.size()];
+        for (MessageOrBuilder row : rows) {
+            for (int i = 0; i < used.length; i++) {
+                used[i] |= labels[i] != null && isPresent(row, fields.get(i));
+            }
+        }
+        boolean first = true;
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                if (first) {
+                    first = false;
+                } else {
+                    out.append(SEPARATOR);
+                }
+                escape(labels[i], out);
+            }
+        }
+        for (MessageOrBuilder row : rows) {
+            out.append('\n');
+            first = true;
+            for (int i = 0; i < used.length; i++) {
+                if (!used[i]) {
+                    continue;
+                }
+                if (first) {
+                    first = false;
+                } else {
+                    out.append(SEPARATOR);
+                }
+                Descriptors.FieldDescriptor field = fields.get(i);
+                if (isPresent(row, field)) {
+                    cell(field, row.getField(field), out);
+                }
+            }
+            itemWritten.run();
+        }
+    }
+
+    /**
+     * Writes a field value in a single line. Scalars are written as is, everything else as
+     * compact JSON.
+     */
+    private static void cell(Descriptors.FieldDescriptor field, Object value, Appendable out)
+            throws IOException {
+        if (field.isMapField()) {
+            out.append('{');
+            boolean first = true;
+            for (Object item : (List<?>) value) {
+                if (first) {
+                    first = false;
+                } else {
+                    out.append(',');
+                }
+                Object key;
+                Object entryValue;
+                if (item instanceof MapEntry<?, ?> entry) {
+                    key = entry.getKey();
+                    entryValue = entry.getValue();
+                } else {
+                    // Map entries of dynamic messages
+                    Message entry = (Message) item;
+                    Descriptors.Descriptor entryType = entry.getDescriptorForType();
+                    key = entry.getField(entryType.findFieldByNumber(1));
+                    entryValue = entry.getField(entryType.findFieldByNumber(2));
+                }
+                escape(String.valueOf(key), out);
+                out.append(':');
+                value(entryValue, out);
+            }
+            out.append('}');
+        } else if (field.isRepeated()) {
+            out.append('[');
+            boolean first = true;
+            for (Object item : (List<?>) value) {
+                if (first) {
+                    first = false;
+                } else {
+                    out.append(',');
+                }
+                value(item, out);
+            }
+            out.append(']');
+        } else {
+            value(value, out);
+        }
+    }
+
+    private static void value(Object value, Appendable out) throws IOException {
+        if (value instanceof MessageOrBuilder message) {
+            try {
+                escape(JSON_PRINTER.print(message), out);
+            } catch (InvalidProtocolBufferException e) {
+                throw new RuntimeException(e);
+            }
+        } else if (value instanceof ByteString bytes) {
+            escape(bytes.toStringUtf8(), out);
+        } else {
+            escape(String.valueOf(value), out);
+        }
+    }
+
+    /**
+     * Writes a text so that it does not break the table, i.e. without line breaks and with the
+     * separator escaped. Backslashes are escaped too, so a literal {@code \n} or {@code \|} in a
+     * value is not read as an escaped line break or separator.
+     */
+    private static void escape(CharSequence text, Appendable out) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case SEPARATOR -> out.append('\\').append(SEPARATOR);
+                default -> out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Returns whether a field is written, using the same rules as the outline format.
+     */
+    private static boolean isPresent(MessageOrBuilder message, Descriptors.FieldDescriptor field) {
+        if (field.isRepeated()) {
+            return message.getRepeatedFieldCount(field) > 0;
+        }
+        if (!message.hasField(field)) {
+            return false;
+        }
+        if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+            Object value = message.getField(field);
+            return !(value instanceof Message nested) || nested.getSerializedSize() > 0;
+        }
+        return !message.getField(field).equals(field.getDefaultValue());
+    }
+}
@@ -0,0 +1,41 @@
+package io.masterkun.ai.grpc;
+
+import io.masterkun.ai.proto.ToolProto;
+
+import javax.annotation.Nullable;
+
+/**
+ * Controls how the results of a tool are rendered. The result is sent to the LLM as part of the
+ * conversation, so the format decides how many tokens a response costs.
+ */
+public enum ResultFormat {
+    /**
+     * Indented and numbered lines labelled with the field descriptions, see {@link ProtoFormatter}.
+     */
+    OUTLINE,
+    /**
+     * Compact JSON with the proto field names, as in the input schema.
+     */
+    JSON,
+    /**
+     * Repeated messages rendered as tables, with the column labels written once followed by one
+     * row per element, see {@link ProtoTableFormatter}. Suited for list-heavy results.
+     */
+    TABLE;
+
+    /**
+     * Converts the {@code toolcall.method_result_format} option value.
+     *
+     * @param format The option value
+     * @return The result format, or null if the option is unspecified
+     */
+    @Nullable
+    public static ResultFormat fromProto(ToolProto.ResultFormat format) {
+        return switch (format) {
+            case RESULT_OUTLINE -> OUTLINE;
+            case RESULT_JSON -> JSON;
+            case RESULT_TABLE -> TABLE;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package io.masterkun.ai.grpc;
+
+import io.masterkun.ai.proto.ToolProto;
+
+import javax.annotation.Nullable;
+
+/**
+ * Controls how the JSON schema of a tool input is rendered. The schema is sent to the LLM with
+ * every request, so the compact profiles reduce the prompt size at the cost of readability.
+ */
+public enum SchemaProfile {
+    /**
+     * Pretty-printed schema including {@code $schema}, {@code title} and all field metadata.
+     */
+    STANDARD,
+    /**
+     * Minified schema without {@code $schema}, {@code title} or empty map properties, and with
+     * oneof groups encoded as "at most one of" constraints.
+     */
+    COMPACT,
+    /**
+     * Same as {@link #COMPACT}, and field examples are omitted as well.
+     */
+    MINIMAL;
+
+    /**
+     * Converts the {@code toolcall.method_schema_profile} option value.
+     *
+     * @param profile The option value
+     * @return The schema profile, or null if the option is unspecified
+     */
+    @Nullable
+    public static SchemaProfile fromProto(ToolProto.SchemaProfile profile) {
+        return switch (profile) {
+            case SCHEMA_STANDARD -> STANDARD;
+            case SCHEMA_COMPACT -> COMPACT;
+            case SCHEMA_MINIMAL -> MINIMAL;
+            default -> null;
+        };
+    }
+}
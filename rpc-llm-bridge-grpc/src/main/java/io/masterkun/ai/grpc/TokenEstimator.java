@@ -0,0 +1,38 @@
+package io.masterkun.ai.grpc;
+
+/**
+ * A cheap, tokenizer-independent estimate of the number of LLM tokens in a text. Every run of
+ * ASCII letters and digits counts as one token per four characters, every other printable ASCII
+ * character counts as one token, whitespace is free, and every non-ASCII character counts as one
+ * token. This is close enough to BPE tokenizers on JSON and structured text to compare sizes and
+ * enforce budgets.
+ */
+public class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * Estimates the number of tokens in the given text.
+     *
+     * @param text The text
+     * @return The estimated token count
+     */
+    public static int estimate(CharSequence text) {
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0, l = text.length(); i < l; i++) {
+            char c = text.charAt(i);
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                run++;
+                continue;
+            }
+            tokens += (run + 3) >> 2;
+            run = 0;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + ((run + 3) >> 2);
+    }
+}
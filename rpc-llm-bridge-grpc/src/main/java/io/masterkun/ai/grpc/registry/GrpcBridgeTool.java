@@ -1,31 +1,119 @@
 package io.masterkun.ai.grpc.registry;
 
 import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import io.grpc.Channel;
 import io.masterkun.ai.grpc.GrpcBridgeToolCallback;
+import io.masterkun.ai.grpc.GrpcBridgeToolMethod;
+import io.masterkun.ai.grpc.GrpcBridgeToolPageCallback;
+import io.masterkun.ai.grpc.GrpcBridgeToolStreamCallback;
 import io.masterkun.ai.registry.BridgeTool;
 import io.masterkun.ai.registry.BridgeToolChannelHolder;
 import io.masterkun.ai.registry.BridgeToolGroup;
+import io.masterkun.ai.tool.BridgeToolCallCoalescer;
+import io.masterkun.ai.tool.BridgeToolCallback;
+import io.masterkun.ai.tool.BridgeToolResultCache;
 import org.checkerframework.checker.units.qual.C;
 
 import java.util.List;
 import java.util.Set;
 
 /**
- * A gRPC implementation of the BridgeTool interface that represents a callable gRPC method.
+ * A gRPC implementation of the BridgeTool interface that represents a callable gRPC method. The
+ * method is compiled once when the tool is loaded, and every callback created for it shares the
+ * compiled {@link GrpcBridgeToolMethod}.
+ * <p>
+ * A paged method is accompanied by its page tool, which has the same method and the
+ * {@code pageTool} flag set. The page tool is generated when the tools are loaded and is not
+ * saved.
  */
 public record GrpcBridgeTool(Set<String> tags,
                              Descriptors.MethodDescriptor methodDescriptor,
-                             GrpcBridgeToolGroup toolGroup)
-        implements BridgeTool<GrpcBridgeToolCallback<?>, GrpcBridgeToolChannel> {
+                             GrpcBridgeToolGroup toolGroup,
+                             GrpcBridgeToolMethod<? extends Message> toolMethod,
+                             boolean pageTool)
+        implements BridgeTool<BridgeToolCallback<?>, GrpcBridgeToolChannel> {
 
     /**
-     * Creates a callback for this tool using the provided channel holder.
+     * Creates a tool of a compiled method.
+     *
+     * @param tags             The tags of the tool
+     * @param methodDescriptor The protobuf method descriptor
+     * @param toolGroup        The group this tool belongs to
+     * @param toolMethod       The compiled method
+     */
+    public GrpcBridgeTool(Set<String> tags, Descriptors.MethodDescriptor methodDescriptor,
+                          GrpcBridgeToolGroup toolGroup,
+                          GrpcBridgeToolMethod<? extends Message> toolMethod) {
+        this(tags, methodDescriptor, toolGroup, toolMethod, false);
+    }
+
+    /**
+     * Creates a tool and compiles its method.
+     *
+     * @param tags             The tags of the tool
+     * @param methodDescriptor The protobuf method descriptor
+     * @param toolGroup        The group this tool belongs to
+     */
+    public GrpcBridgeTool(Set<String> tags, Descriptors.MethodDescriptor methodDescriptor,
+                          GrpcBridgeToolGroup toolGroup) {
+        this(tags, methodDescriptor, toolGroup, GrpcBridgeToolMethod.of(methodDescriptor));
+    }
+
+    /**
+     * Returns the page tool of this tool, which fetches the further pages of its paged results.
+     *
+     * @return The page tool
+     * @throws IllegalArgumentException if the method of this tool is not paged
+     */
+    public GrpcBridgeTool nextPageTool() {
+        if (!toolMethod.isPaged()) {
+            throw new IllegalArgumentException("Method is not paged: " + toolMethod.getName());
+        }
+        return new GrpcBridgeTool(tags, methodDescriptor, toolGroup, toolMethod, true);
+    }
+
+    /**
+     * Warms up the method of this tool, see {@link GrpcBridgeToolMethod#warmUp(int)}. Page tools
+     * share the method of their tool and do nothing.
+     *
+     * @param rounds How often the sample messages are encoded and decoded
+     */
+    @Override
+    public void warmUp(int rounds) {
+        if (!pageTool) {
+            toolMethod.warmUp(rounds);
+        }
+    }
+
+    /**
+     * Creates a callback for this tool using the provided channel holder. Callbacks of cacheable
+     * tools share the result cache of the registration, and callbacks of coalesced tools share its
+     * call coalescer. Server-streaming methods get a {@link GrpcBridgeToolStreamCallback}, which
+     * aggregates the streamed messages when called like a unary tool. Page tools get a
+     * {@link GrpcBridgeToolPageCallback}, which does not use the channel. Callbacks look up the
+     * channel of the holder on every call, so they outlive a reaped channel.
      *
      * @param channelHolder The holder providing the gRPC channel for communication
      * @return A callback that can execute the gRPC method
      */
     @Override
-    public GrpcBridgeToolCallback<?> createToolCallback(BridgeToolChannelHolder<GrpcBridgeToolChannel> channelHolder) {
-        return GrpcBridgeToolCallback.of(methodDescriptor, channelHolder.get().channel());
+    public BridgeToolCallback<?> createToolCallback(BridgeToolChannelHolder<GrpcBridgeToolChannel> channelHolder) {
+        if (pageTool) {
+            return GrpcBridgeToolPageCallback.of(toolMethod);
+        }
+        GrpcBridgeToolRegistration registration = toolGroup == null ? null :
+                toolGroup.toolGroupSet().registration();
+        // The same channel for every callback of a holder, which the batch executor limits
+        Channel channel = GrpcBridgeToolHolderChannel.of(channelHolder);
+        if (toolMethod.isServerStreaming()) {
+            return GrpcBridgeToolStreamCallback.of(toolMethod, channel);
+        }
+        BridgeToolResultCache<Message> resultCache = registration != null &&
+                                                     toolMethod.isCacheable() ?
+                registration.resultCache() : null;
+        BridgeToolCallCoalescer<Message> coalescer = registration != null ?
+                registration.callCoalescer() : null;
+        return GrpcBridgeToolCallback.of(toolMethod, channel, resultCache, coalescer);
     }
 }
@@ -1,18 +1,58 @@
 package io.masterkun.ai.grpc.registry;
 
+import io.grpc.ConnectivityState;
 import io.grpc.ManagedChannel;
 import io.masterkun.ai.registry.BridgeToolChannel;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * A gRPC implementation of the BridgeToolChannel interface that wraps a gRPC ManagedChannel.
+ *
+ * @param channel The gRPC channel
+ * @param release Releases the channel when this channel is closed
  */
-public record GrpcBridgeToolChannel(ManagedChannel channel) implements BridgeToolChannel {
+public record GrpcBridgeToolChannel(ManagedChannel channel, Runnable release) implements BridgeToolChannel {
+
+    /**
+     * Creates a channel owning the gRPC channel, which is shut down when this channel is closed.
+     *
+     * @param channel The gRPC channel
+     */
+    public GrpcBridgeToolChannel(ManagedChannel channel) {
+        this(channel, channel::shutdown);
+    }
+
+    /**
+     * Requests a connection and completes once the channel is {@link ConnectivityState#READY}.
+     * Transient failures are waited out, as the channel keeps reconnecting, and the future fails
+     * if the channel is shut down first.
+     */
+    @Override
+    public CompletableFuture<Void> whenReady() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        watch(future);
+        return future;
+    }
+
+    private void watch(CompletableFuture<Void> future) {
+        ConnectivityState state = channel.getState(true);
+        if (state == ConnectivityState.READY) {
+            future.complete(null);
+        } else if (state == ConnectivityState.SHUTDOWN) {
+            future.completeExceptionally(new IllegalStateException("Channel is shut down: " +
+                                                                   channel.authority()));
+        } else if (!future.isDone()) {
+            channel.notifyWhenStateChanged(state, () -> watch(future));
+        }
+    }
 
     /**
-     * Closes this channel by shutting down the underlying gRPC channel.
+     * Closes this channel by shutting down the underlying gRPC channel, or releasing it if it is
+     * shared, see {@link GrpcSharedChannels}.
      */
     @Override
     public void close() {
-        channel.shutdown();
+        release.run();
     }
 }
@@ -1,5 +1,6 @@
 package io.masterkun.ai.grpc.registry;
 
+import io.grpc.ManagedChannel;
 import io.masterkun.ai.grpc.JSONUtils;
 import io.masterkun.ai.registry.BridgeToolChannelFactory;
 
@@ -7,9 +8,43 @@ import java.util.Map;
 
 public class GrpcBridgeToolChannelFactory implements BridgeToolChannelFactory<GrpcBridgeToolChannel> {
     private final GrpcChannelFactory channelFactory = new DefaultGrpcChannelFactory();
+    private final GrpcSharedChannels sharedChannels;
+
+    /**
+     * Creates a factory sharing channels through the global registry.
+     */
+    public GrpcBridgeToolChannelFactory() {
+        this(GrpcSharedChannels.global());
+    }
+
+    /**
+     * Creates a factory sharing channels through the given registry.
+     *
+     * @param sharedChannels The registry of shared channels
+     */
+    public GrpcBridgeToolChannelFactory(GrpcSharedChannels sharedChannels) {
+        this.sharedChannels = sharedChannels;
+    }
+
     @Override
     public GrpcBridgeToolChannel create(String targetAddress, Map<String, String> channelOptions) {
         GrpcChannelOptions pojo = JSONUtils.OBJECT_MAPPER.convertValue(channelOptions, GrpcChannelOptions.class);
-        return new GrpcBridgeToolChannel(channelFactory.create(targetAddress, pojo));
+        if (pojo.isShareChannel()) {
+            return sharedChannels.acquire(targetAddress, pojo, () -> createChannel(targetAddress, pojo));
+        }
+        return new GrpcBridgeToolChannel(createChannel(targetAddress, pojo));
+    }
+
+    /**
+     * Creates a single channel, or a {@link GrpcChannelPool} if the options allow more than one
+     * channel.
+     */
+    private ManagedChannel createChannel(String targetAddress, GrpcChannelOptions options) {
+        int maxSize = Math.max(options.getChannelPoolMaxSize(), options.getChannelPoolSize());
+        if (maxSize <= 1) {
+            return channelFactory.create(targetAddress, options);
+        }
+        return new GrpcChannelPool(() -> channelFactory.create(targetAddress, options),
+                Math.max(options.getChannelPoolSize(), 1), maxSize, options.getMaxStreamsPerChannel());
     }
 }
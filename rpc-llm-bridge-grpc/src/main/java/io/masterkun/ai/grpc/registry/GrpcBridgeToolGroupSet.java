@@ -12,6 +12,9 @@ import io.grpc.StatusException;
 import io.grpc.reflection.v1.ServerReflectionGrpc;
 import io.grpc.reflection.v1.ServerReflectionRequest;
 import io.grpc.reflection.v1.ServiceResponse;
+import io.masterkun.ai.grpc.GrpcBridgeToolMethod;
+import io.masterkun.ai.grpc.GrpcBridgeToolOptions;
+import io.masterkun.ai.grpc.GrpcBridgeToolResultPages;
 import io.masterkun.ai.grpc.ProtoUtils;
 import io.masterkun.ai.proto.ToolProto;
 import io.masterkun.ai.registry.BridgeToolChannelHolder;
@@ -32,18 +35,24 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
  * A gRPC implementation of the BridgeToolGroupSet interface that manages collections of gRPC tool
  * groups and provides functionality for discovery, loading, and saving of tool definitions.
+ * <p>
+ * The groups are kept in an immutable snapshot replaced atomically by every change, so readers
+ * never lock nor copy, and always see a complete catalog: a reload builds the new groups aside
+ * and publishes them at once. Every snapshot has a generation, increasing with each change, see
+ * {@link #generation()}.
  */
 public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeToolGroup,
         GrpcBridgeToolChannel, GrpcBridgeTool> {
     private static final Logger LOG = LoggerFactory.getLogger(GrpcBridgeToolGroupSet.class);
 
     private final GrpcBridgeToolRegistration registration;
-    private final Map<String, GrpcBridgeToolGroup> groups = new LinkedHashMap<>();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
 
     public GrpcBridgeToolGroupSet(GrpcBridgeToolRegistration registration) {
         this.registration = registration;
@@ -52,11 +61,21 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
     /**
      * Returns a list of all tool groups in this set.
      *
-     * @return A list containing all tool groups
+     * @return An unmodifiable list containing all tool groups of the current snapshot
      */
     @Override
     public List<GrpcBridgeToolGroup> getGroups() {
-        return new ArrayList<>(groups.values());
+        return snapshot.get().list();
+    }
+
+    /**
+     * Returns the generation of the current groups, which increases with every change of this
+     * set. Comparing generations tells whether the groups changed between two reads.
+     *
+     * @return The generation, 0 for a set never changed
+     */
+    public long generation() {
+        return snapshot.get().generation();
     }
 
     /**
@@ -68,10 +87,14 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
     @Override
     public void addGroup(GrpcBridgeToolGroup group) {
         LOG.info("Adding group: {}", group.name());
-        if (groups.containsKey(group.name())) {
-            throw new IllegalArgumentException("Group already exists: " + group.name());
-        }
-        groups.put(group.name(), group);
+        snapshot.updateAndGet(current -> {
+            if (current.groups().containsKey(group.name())) {
+                throw new IllegalArgumentException("Group already exists: " + group.name());
+            }
+            Map<String, GrpcBridgeToolGroup> groups = new LinkedHashMap<>(current.groups());
+            groups.put(group.name(), group);
+            return current.next(groups);
+        });
     }
 
     /**
@@ -83,10 +106,14 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
     @Override
     public void updateGroup(GrpcBridgeToolGroup group) {
         LOG.info("Updating group: {}", group.name());
-        if (!groups.containsKey(group.name())) {
-            throw new IllegalArgumentException("Group does not exist: " + group.name());
-        }
-        groups.put(group.name(), group);
+        snapshot.updateAndGet(current -> {
+            if (!current.groups().containsKey(group.name())) {
+                throw new IllegalArgumentException("Group does not exist: " + group.name());
+            }
+            Map<String, GrpcBridgeToolGroup> groups = new LinkedHashMap<>(current.groups());
+            groups.put(group.name(), group);
+            return current.next(groups);
+        });
     }
 
     /**
@@ -98,10 +125,14 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
     @Override
     public void removeGroup(String name) {
         LOG.info("Removing group: {}", name);
-        if (!groups.containsKey(name)) {
-            throw new IllegalArgumentException("Group does not exist: " + name);
-        }
-        groups.remove(name);
+        snapshot.updateAndGet(current -> {
+            if (!current.groups().containsKey(name)) {
+                throw new IllegalArgumentException("Group does not exist: " + name);
+            }
+            Map<String, GrpcBridgeToolGroup> groups = new LinkedHashMap<>(current.groups());
+            groups.remove(name);
+            return current.next(groups);
+        });
     }
 
     /**
@@ -113,10 +144,11 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
      */
     @Override
     public GrpcBridgeToolGroup getGroup(String name) {
-        if (!groups.containsKey(name)) {
+        GrpcBridgeToolGroup group = snapshot.get().groups().get(name);
+        if (group == null) {
             throw new IllegalArgumentException("Group does not exist: " + name);
         }
-        return groups.get(name);
+        return group;
     }
 
     /**
@@ -127,7 +159,7 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
      */
     @Override
     public boolean containsGroup(String name) {
-        return groups.containsKey(name);
+        return snapshot.get().groups().containsKey(name);
     }
 
     /**
@@ -143,8 +175,9 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
     }
 
     /**
-     * Reloads tool groups from a protobuf BridgeToolGroupSet object. This method clears all
-     * existing groups and loads new ones from the provided proto object.
+     * Reloads tool groups from a protobuf BridgeToolGroupSet object. This method replaces all
+     * existing groups with new ones loaded from the provided proto object, and keeps the existing
+     * groups if loading fails.
      *
      * @param proto The protobuf object containing tool group definitions
      * @throws IOException              If an error occurs during loading file descriptors
@@ -153,7 +186,8 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
      */
     public void reload(ToolProto.BridgeToolGroupSet proto) throws IOException {
         LOG.info("Reloading tool groups");
-        groups.clear();
+        Map<String, GrpcBridgeToolGroup> groups = new LinkedHashMap<>();
+        GrpcBridgeToolOptions toolOptions = toolOptions();
         Map<String, Descriptors.FileDescriptor> allDependencies =
                 ProtoUtils.load(proto.getAllDependencies());
         for (ToolProto.BridgeToolGroup group : proto.getGroupsList()) {
@@ -177,10 +211,11 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
                 }
                 Set<String> tags =
                         Collections.unmodifiableSet(new LinkedHashSet<>(tool.getTagsList()));
-                tools.add(new GrpcBridgeTool(tags, method, toolGroup));
+                addTool(tools, tags, method, toolGroup, toolOptions);
             }
-            addGroup(toolGroup);
+            addGroup(groups, toolGroup);
         }
+        publish(groups);
     }
 
     /**
@@ -268,7 +303,8 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
      */
     void reloadByAutoDiscovery(Set<String> services,
                                Map<String, Descriptors.FileDescriptor> fileDescriptors) {
-        groups.clear();
+        Map<String, GrpcBridgeToolGroup> groups = new LinkedHashMap<>();
+        GrpcBridgeToolOptions toolOptions = toolOptions();
         // Iterate through all file descriptors to check for auto-discovery settings
         for (Descriptors.FileDescriptor file : fileDescriptors.values()) {
             DescriptorProtos.FileOptions fileOpt = file.toProto().getOptions();
@@ -313,17 +349,57 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
                         Set<String> methodTags =
                                 new LinkedHashSet<>(methodOpt.getExtension(ToolProto.methodTags));
                         methodTags.addAll(serviceTags);
-                        tools.add(new GrpcBridgeTool(Collections.unmodifiableSet(methodTags),
-                                method, toolGroup));
+                        addTool(tools, Collections.unmodifiableSet(methodTags), method,
+                                toolGroup, toolOptions);
                     }
                 }
 
                 // Create a new tool group if tools were found
                 if (!tools.isEmpty()) {
-                    addGroup(toolGroup);
+                    addGroup(groups, toolGroup);
                 }
             }
         }
+        publish(groups);
+    }
+
+    /**
+     * Adds a group to the groups of a reload, before they are published.
+     */
+    private static void addGroup(Map<String, GrpcBridgeToolGroup> groups,
+                                 GrpcBridgeToolGroup group) {
+        LOG.info("Adding group: {}", group.name());
+        if (groups.putIfAbsent(group.name(), group) != null) {
+            throw new IllegalArgumentException("Group already exists: " + group.name());
+        }
+    }
+
+    /**
+     * Replaces all groups at once by the groups of a reload.
+     */
+    private void publish(Map<String, GrpcBridgeToolGroup> groups) {
+        Snapshot published = snapshot.updateAndGet(current -> current.next(groups));
+        LOG.info("Loaded {} tool groups, generation {}", groups.size(), published.generation());
+    }
+
+    private GrpcBridgeToolOptions toolOptions() {
+        return registration == null ? new GrpcBridgeToolOptions() : registration.toolOptions();
+    }
+
+    /**
+     * Compiles a method into a tool, followed by its page tool if the method is paged.
+     */
+    private void addTool(List<GrpcBridgeTool> tools, Set<String> tags,
+                         Descriptors.MethodDescriptor method, GrpcBridgeToolGroup toolGroup,
+                         GrpcBridgeToolOptions toolOptions) {
+        GrpcBridgeToolResultPages pages = registration == null ? null :
+                registration.resultPages();
+        GrpcBridgeTool tool = new GrpcBridgeTool(tags, method, toolGroup,
+                GrpcBridgeToolMethod.of(method, toolOptions, pages));
+        tools.add(tool);
+        if (tool.toolMethod().isPaged()) {
+            tools.add(tool.nextPageTool());
+        }
     }
 
     private <T extends GeneratedMessage.ExtendableMessage<T>> Boolean getEnabled(GeneratedMessage.ExtendableMessageOrBuilder<T> msg, ExtensionLite<T, Boolean> registry) {
@@ -350,10 +426,15 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
      */
     public ToolProto.BridgeToolGroupSet save() {
         ToolProto.BridgeToolGroupSet.Builder builder = ToolProto.BridgeToolGroupSet.newBuilder();
-        for (GrpcBridgeToolGroup group : groups.values()) {
+        List<GrpcBridgeToolGroup> groups = getGroups();
+        for (GrpcBridgeToolGroup group : groups) {
             ToolProto.BridgeToolGroup.Builder groupBuilder = ToolProto.BridgeToolGroup.newBuilder()
                     .setName(group.name());
             for (GrpcBridgeTool tool : group.tools()) {
+                if (tool.pageTool()) {
+                    // Generated again when loaded
+                    continue;
+                }
                 groupBuilder.addTools(ToolProto.BridgeTool.newBuilder()
                         .setFilename(tool.methodDescriptor().getFile().getName())
                         .setServiceName(tool.methodDescriptor().getService().getName())
@@ -363,7 +444,7 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
             }
             builder.addGroups(groupBuilder);
         }
-        HashMap<String, Descriptors.FileDescriptor> reduce = groups.values().stream()
+        HashMap<String, Descriptors.FileDescriptor> reduce = groups.stream()
                 .flatMap(g -> g.tools().stream())
                 .map(tool -> tool.methodDescriptor().getFile())
                 .reduce(new HashMap<>(), (map, file) -> {
@@ -380,4 +461,19 @@ public class GrpcBridgeToolGroupSet implements BridgeToolGroupSet<GrpcBridgeTool
     public GrpcBridgeToolRegistration registration() {
         return registration;
     }
+
+    /**
+     * An immutable state of the groups. The map and the list hold the same groups, the map for
+     * lookups by name and the list to be returned as is by {@link #getGroups()}.
+     */
+    private record Snapshot(long generation, Map<String, GrpcBridgeToolGroup> groups,
+                            List<GrpcBridgeToolGroup> list) {
+        private static final Snapshot EMPTY = new Snapshot(0, Map.of(), List.of());
+
+        private Snapshot next(Map<String, GrpcBridgeToolGroup> groups) {
+            Map<String, GrpcBridgeToolGroup> copy =
+                    Collections.unmodifiableMap(new LinkedHashMap<>(groups));
+            return new Snapshot(generation + 1, copy, List.copyOf(copy.values()));
+        }
+    }
 }
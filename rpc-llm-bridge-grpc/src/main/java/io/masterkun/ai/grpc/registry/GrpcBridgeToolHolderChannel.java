@@ -0,0 +1,199 @@
+package io.masterkun.ai.grpc.registry;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.masterkun.ai.registry.BridgeToolChannelHolder;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A channel looking up the channel of a holder on every call, so the callbacks of a registration
+ * keep working when the holder recreates a reaped channel, and every call counts as a use of the
+ * channel.
+ * <p>
+ * The channel also tracks the calls started through it, so a replaced registration can let its
+ * in-flight calls complete before it closes, see {@link #drain(Duration)}. This is scoped to the
+ * registration, as the underlying channel may be shared with other registrations.
+ * <p>
+ * There is one channel per holder, see {@link #of(BridgeToolChannelHolder)}, as the batch
+ * executor limits the concurrency of callbacks per channel.
+ */
+class GrpcBridgeToolHolderChannel extends Channel {
+    // Values are weak, as they reference their holder
+    private static final Map<BridgeToolChannelHolder<?>, WeakReference<GrpcBridgeToolHolderChannel>> CHANNELS =
+            new WeakHashMap<>();
+
+    private final BridgeToolChannelHolder<GrpcBridgeToolChannel> holder;
+    private final Set<ClientCall<?, ?>> inFlight = ConcurrentHashMap.newKeySet();
+
+    private GrpcBridgeToolHolderChannel(BridgeToolChannelHolder<GrpcBridgeToolChannel> holder) {
+        this.holder = holder;
+    }
+
+    /**
+     * Returns the channel of a holder. Callbacks created from the same holder get the same
+     * channel as long as one of them is reachable.
+     *
+     * @param holder The channel holder
+     * @return The channel looking up the channel of the holder
+     */
+    static GrpcBridgeToolHolderChannel of(BridgeToolChannelHolder<GrpcBridgeToolChannel> holder) {
+        synchronized (CHANNELS) {
+            WeakReference<GrpcBridgeToolHolderChannel> ref = CHANNELS.get(holder);
+            GrpcBridgeToolHolderChannel channel = ref == null ? null : ref.get();
+            if (channel == null) {
+                channel = new GrpcBridgeToolHolderChannel(holder);
+                CHANNELS.put(holder, new WeakReference<>(channel));
+            }
+            return channel;
+        }
+    }
+
+    /**
+     * Returns the current channel of the holder.
+     *
+     * @throws IllegalStateException if the holder has been closed
+     */
+    private ManagedChannel channel() {
+        ManagedChannel channel = holder.get().channel();
+        ManagedChannel next;
+        // Reaped between the lookup and the call, until the holder returns the same channel
+        while (channel.isShutdown() && (next = holder.get().channel()) != channel) {
+            channel = next;
+        }
+        return channel;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor,
+                                                         CallOptions callOptions) {
+        ManagedChannel channel;
+        try {
+            channel = channel();
+        } catch (IllegalStateException e) {
+            // The registration is retired, and its channel may still serve the one replacing it
+            return new FailedCall<>(Status.UNAVAILABLE.withDescription(e.getMessage()));
+        }
+        return new TrackedCall<>(channel.newCall(methodDescriptor, callOptions));
+    }
+
+    @Override
+    public String authority() {
+        return channel().authority();
+    }
+
+    /**
+     * Returns the number of calls started through this channel that have not completed yet.
+     */
+    int inFlightCalls() {
+        return inFlight.size();
+    }
+
+    /**
+     * Waits until the calls started through this channel have completed, at most for the timeout,
+     * and cancels the calls still running then.
+     *
+     * @param timeout The maximum time to wait for the in-flight calls
+     * @return The number of cancelled calls
+     */
+    int drain(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (inFlight) {
+            long remaining;
+            while (!inFlight.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(inFlight, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        List<ClientCall<?, ?>> abandoned = new ArrayList<>(inFlight);
+        for (ClientCall<?, ?> call : abandoned) {
+            call.cancel("Registration closed before the call completed", null);
+        }
+        return abandoned.size();
+    }
+
+    private void completed(ClientCall<?, ?> call) {
+        if (inFlight.remove(call)) {
+            synchronized (inFlight) {
+                inFlight.notifyAll();
+            }
+        }
+    }
+
+    private static class FailedCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+        private final Status status;
+
+        private FailedCall(Status status) {
+            this.status = status;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            responseListener.onClose(status, new Metadata());
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+        }
+
+        @Override
+        public void halfClose() {
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+        }
+    }
+
+    private class TrackedCall<ReqT, RespT>
+            extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+        private TrackedCall(ClientCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            inFlight.add(this);
+            try {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(
+                        responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        try {
+                            super.onClose(status, trailers);
+                        } finally {
+                            completed(TrackedCall.this);
+                        }
+                    }
+                }, headers);
+            } catch (RuntimeException e) {
+                completed(this);
+                throw e;
+            }
+        }
+    }
+}
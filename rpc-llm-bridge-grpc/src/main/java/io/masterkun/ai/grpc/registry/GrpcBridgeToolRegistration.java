@@ -1,8 +1,18 @@
 package io.masterkun.ai.grpc.registry;
 
+import com.google.protobuf.Message;
+import io.grpc.Channel;
+import io.masterkun.ai.grpc.GrpcBridgeToolOptions;
+import io.masterkun.ai.grpc.GrpcBridgeToolResultPages;
+import io.masterkun.ai.grpc.JSONUtils;
+import io.masterkun.ai.registry.BridgeToolChannelFactory;
 import io.masterkun.ai.registry.BridgeToolChannelHolder;
+import io.masterkun.ai.registry.BridgeToolChannelReaper;
 import io.masterkun.ai.registry.BridgeToolRegistration;
+import io.masterkun.ai.tool.BridgeToolCallCoalescer;
+import io.masterkun.ai.tool.BridgeToolResultCache;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Map;
 
@@ -11,7 +21,12 @@ public class GrpcBridgeToolRegistration implements BridgeToolRegistration<GrpcBr
     private final String targetAddress;
     private final Map<String, String> options;
     private final BridgeToolChannelHolder<GrpcBridgeToolChannel> channelHolder;
+    private final GrpcBridgeToolHolderChannel channel;
     private final GrpcBridgeToolGroupSet groupSet;
+    private volatile GrpcChannelOptions parsedOptions;
+    private volatile BridgeToolResultCache<Message> resultCache;
+    private volatile GrpcBridgeToolResultPages resultPages;
+    private final BridgeToolCallCoalescer<Message> callCoalescer = new BridgeToolCallCoalescer<>();
 
     public GrpcBridgeToolRegistration(String targetAddress) {
         this(targetAddress, targetAddress, Collections.emptyMap());
@@ -22,10 +37,28 @@ public class GrpcBridgeToolRegistration implements BridgeToolRegistration<GrpcBr
     }
 
     public GrpcBridgeToolRegistration(String name, String targetAddress, Map<String, String> options) {
+        this(name, targetAddress, options, new GrpcBridgeToolChannelFactory());
+    }
+
+    /**
+     * Creates a registration whose channels are created by the given factory instead of the
+     * default Netty channels, e.g. channels with custom credentials or in-process channels.
+     *
+     * @param name           The name of the registration
+     * @param targetAddress  The target address, as understood by the factory
+     * @param options        The registration options
+     * @param channelFactory Creates the channel of the registration
+     */
+    public GrpcBridgeToolRegistration(String name, String targetAddress, Map<String, String> options,
+                                      BridgeToolChannelFactory<GrpcBridgeToolChannel> channelFactory) {
         this.name = name;
         this.targetAddress = targetAddress;
         this.options = Collections.unmodifiableMap(options);
-        this.channelHolder = new BridgeToolChannelHolder<>(new GrpcBridgeToolChannelFactory(), targetAddress, options);
+        Duration reapTimeout = channelOptions().getChannelReapTimeout();
+        this.channelHolder = new BridgeToolChannelHolder<>(channelFactory,
+                targetAddress, options, reapTimeout,
+                reapTimeout == null ? null : BridgeToolChannelReaper.global());
+        this.channel = GrpcBridgeToolHolderChannel.of(channelHolder);
         this.groupSet = new GrpcBridgeToolGroupSet(this);
     }
 
@@ -44,6 +77,83 @@ public class GrpcBridgeToolRegistration implements BridgeToolRegistration<GrpcBr
         return options;
     }
 
+    /**
+     * Returns the registration options parsed into {@link GrpcChannelOptions}.
+     *
+     * @return The parsed options
+     * @throws IllegalArgumentException if the options contain unknown or invalid entries
+     */
+    public GrpcChannelOptions channelOptions() {
+        GrpcChannelOptions parsed = parsedOptions;
+        if (parsed == null) {
+            parsedOptions = parsed = JSONUtils.OBJECT_MAPPER.convertValue(options,
+                    GrpcChannelOptions.class);
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns the tool-level settings of this registration, which are the defaults for all of
+     * its tools.
+     *
+     * @return The tool options
+     */
+    public GrpcBridgeToolOptions toolOptions() {
+        return channelOptions();
+    }
+
+    /**
+     * Returns the result cache shared by the cacheable tools of this registration, created on
+     * first access and bounded by the cache settings of the tool options.
+     *
+     * @return The result cache
+     */
+    public BridgeToolResultCache<Message> resultCache() {
+        BridgeToolResultCache<Message> cache = resultCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = resultCache;
+                if (cache == null) {
+                    GrpcBridgeToolOptions toolOptions = toolOptions();
+                    resultCache = cache = new BridgeToolResultCache<>(
+                            toolOptions.getResultCacheMaxEntries(),
+                            toolOptions.getResultCacheMaxWeight(),
+                            Message::getSerializedSize);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the buffer shared by the paged tools of this registration, created on first access
+     * and bounded by the page buffer settings of the tool options.
+     *
+     * @return The page buffer
+     */
+    public GrpcBridgeToolResultPages resultPages() {
+        GrpcBridgeToolResultPages pages = resultPages;
+        if (pages == null) {
+            synchronized (this) {
+                pages = resultPages;
+                if (pages == null) {
+                    resultPages = pages = new GrpcBridgeToolResultPages(toolOptions());
+                }
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Returns the coalescer shared by the coalesced tools of this registration, so identical
+     * concurrent calls to the same method share one in-flight call.
+     *
+     * @return The call coalescer
+     */
+    public BridgeToolCallCoalescer<Message> callCoalescer() {
+        return callCoalescer;
+    }
+
     @Override
     public GrpcBridgeToolGroupSet groupSet() {
         return groupSet;
@@ -54,6 +164,34 @@ public class GrpcBridgeToolRegistration implements BridgeToolRegistration<GrpcBr
         return channelHolder;
     }
 
+    /**
+     * Returns the channel the tools of this registration call through. It looks up the channel of
+     * the holder on every call, so a channel reaped after the {@code channelReapTimeout} is
+     * created again by the next call.
+     *
+     * @return The channel of the tools
+     */
+    public Channel channel() {
+        return channel;
+    }
+
+    @Override
+    public int inFlightCalls() {
+        return channel.inFlightCalls();
+    }
+
+    /**
+     * Closes this registration once the calls through its {@link #channel()} have completed,
+     * cancelling the calls still running after the timeout. Only the calls of this registration
+     * are waited for and cancelled, a channel shared with other registrations keeps serving them.
+     */
+    @Override
+    public int drainAndClose(Duration timeout) {
+        int abandoned = channel.drain(timeout);
+        close();
+        return abandoned;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -1,13 +1,15 @@
 package io.masterkun.ai.grpc.registry;
 
 import io.grpc.netty.NegotiationType;
+import io.masterkun.ai.grpc.GrpcBridgeToolOptions;
 
 import java.time.Duration;
 
 /**
- * Configuration options for gRPC channels used in the bridge framework.
+ * Configuration options for gRPC channels used in the bridge framework. The tool-level settings
+ * inherited from {@link GrpcBridgeToolOptions} are read from the same registration options.
  */
-public class GrpcChannelOptions {
+public class GrpcChannelOptions extends GrpcBridgeToolOptions {
     private NegotiationType negotiationType;
     private Integer maxInboundMessageSize;
     private Integer maxInboundMetadataSize;
@@ -23,6 +25,12 @@ public class GrpcChannelOptions {
     private Long retryBufferSize;
     private Long perRpcBufferLimit;
     private String overrideAuthority;
+    private int channelPoolSize = 1;
+    private int channelPoolMaxSize = 1;
+    // The default MAX_CONCURRENT_STREAMS of most HTTP/2 servers
+    private int maxStreamsPerChannel = 100;
+    private boolean shareChannel = true;
+    private Duration channelReapTimeout;
 
     public NegotiationType getNegotiationType() {
         return negotiationType;
@@ -143,4 +151,75 @@ public class GrpcChannelOptions {
     public void setOverrideAuthority(String overrideAuthority) {
         this.overrideAuthority = overrideAuthority;
     }
+
+    /**
+     * Returns the number of channels, each with its own connection, created up front for the
+     * registration.
+     *
+     * @return The initial pool size
+     */
+    public int getChannelPoolSize() {
+        return channelPoolSize;
+    }
+
+    public void setChannelPoolSize(int channelPoolSize) {
+        this.channelPoolSize = channelPoolSize;
+    }
+
+    /**
+     * Returns the number of channels the pool of the registration may grow to when all of its
+     * connections are saturated. A pool is only used if this is greater than one.
+     *
+     * @return The maximum pool size
+     */
+    public int getChannelPoolMaxSize() {
+        return channelPoolMaxSize;
+    }
+
+    public void setChannelPoolMaxSize(int channelPoolMaxSize) {
+        this.channelPoolMaxSize = channelPoolMaxSize;
+    }
+
+    /**
+     * Returns the number of outstanding calls from which a connection is considered saturated,
+     * which should match the {@code MAX_CONCURRENT_STREAMS} announced by the server.
+     *
+     * @return The streams per channel
+     */
+    public int getMaxStreamsPerChannel() {
+        return maxStreamsPerChannel;
+    }
+
+    public void setMaxStreamsPerChannel(int maxStreamsPerChannel) {
+        this.maxStreamsPerChannel = maxStreamsPerChannel;
+    }
+
+    /**
+     * Returns whether the channel is shared with other registrations of the same target and
+     * channel settings, see {@link GrpcSharedChannels}.
+     *
+     * @return true if the channel is shared
+     */
+    public boolean isShareChannel() {
+        return shareChannel;
+    }
+
+    public void setShareChannel(boolean shareChannel) {
+        this.shareChannel = shareChannel;
+    }
+
+    /**
+     * Returns how long the channel of the registration may be unused before it is closed, to be
+     * created again by the next call. Unlike the {@link #getIdleTimeout() idle timeout}, which
+     * only closes the connection, this releases the whole channel with its threads and timers.
+     *
+     * @return The reap timeout, or null to keep the channel open
+     */
+    public Duration getChannelReapTimeout() {
+        return channelReapTimeout;
+    }
+
+    public void setChannelReapTimeout(Duration channelReapTimeout) {
+        this.channelReapTimeout = channelReapTimeout;
+    }
 }
@@ -0,0 +1,325 @@
+package io.masterkun.ai.grpc.registry;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A channel spreading calls over several channels to the same target, each with its own HTTP/2
+ * connection, so concurrent calls are not limited by the {@code MAX_CONCURRENT_STREAMS} of a
+ * single connection.
+ * <p>
+ * Every call goes to the channel with the fewest outstanding calls. When even that channel has
+ * as many outstanding calls as a connection is expected to carry streams, the connection is
+ * considered saturated and the pool grows by one channel, up to its maximum size. The pool never
+ * shrinks; idle connections are closed by the idle timeout of the channels.
+ * <p>
+ * This class is thread-safe.
+ */
+public class GrpcChannelPool extends ManagedChannel {
+    private final Supplier<ManagedChannel> factory;
+    private final int maxSize;
+    private final int maxStreamsPerChannel;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong saturations = new AtomicLong();
+    private volatile Entry[] entries;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a pool and its initial channels.
+     *
+     * @param factory              Creates the channels of the pool
+     * @param initialSize          The number of channels created up front
+     * @param maxSize              The maximum number of channels
+     * @param maxStreamsPerChannel The number of outstanding calls from which a channel is
+     *                             considered saturated
+     * @throws IllegalArgumentException if a size is not positive or the initial size exceeds the
+     *                                  maximum size
+     */
+    public GrpcChannelPool(Supplier<ManagedChannel> factory, int initialSize, int maxSize,
+                           int maxStreamsPerChannel) {
+        if (initialSize < 1 || maxSize < initialSize || maxStreamsPerChannel < 1) {
+            throw new IllegalArgumentException("Invalid pool size: initial " + initialSize +
+                                               ", max " + maxSize + ", streams per channel " +
+                                               maxStreamsPerChannel);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxStreamsPerChannel = maxStreamsPerChannel;
+        Entry[] initial = new Entry[initialSize];
+        for (int i = 0; i < initialSize; i++) {
+            initial[i] = new Entry(factory.get());
+        }
+        this.entries = initial;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+                                                         CallOptions callOptions) {
+        Entry entry = select();
+        return new CountingCall<>(entry, entry.channel.newCall(method, callOptions));
+    }
+
+    /**
+     * Selects the channel with the fewest outstanding calls, growing the pool when it is
+     * saturated. Ties are broken round-robin so idle channels share the load.
+     */
+    private Entry select() {
+        Entry[] current = entries;
+        Entry best = leastOutstanding(current);
+        if (best.outstanding.get() >= maxStreamsPerChannel) {
+            saturations.incrementAndGet();
+            if (current.length < maxSize && !shutdown) {
+                best = grow(current, best);
+            }
+        }
+        return best;
+    }
+
+    private Entry leastOutstanding(Entry[] current) {
+        int start = Math.floorMod(next.getAndIncrement(), current.length);
+        Entry best = current[start];
+        for (int i = 1; i < current.length && best.outstanding.get() > 0; i++) {
+            Entry entry = current[(start + i) % current.length];
+            if (entry.outstanding.get() < best.outstanding.get()) {
+                best = entry;
+            }
+        }
+        return best;
+    }
+
+    private synchronized Entry grow(Entry[] seen, Entry best) {
+        Entry[] current = entries;
+        if (current != seen) {
+            // Another call has grown the pool meanwhile
+            return leastOutstanding(current);
+        }
+        if (shutdown) {
+            return best;
+        }
+        Entry entry = new Entry(factory.get());
+        Entry[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = entry;
+        entries = grown;
+        return entry;
+    }
+
+    /**
+     * Returns the current number of channels.
+     *
+     * @return The pool size
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Returns the number of outstanding calls over all channels.
+     *
+     * @return The outstanding calls
+     */
+    public int outstanding() {
+        int outstanding = 0;
+        for (Entry entry : entries) {
+            outstanding += entry.outstanding.get();
+        }
+        return outstanding;
+    }
+
+    /**
+     * Returns how many calls found every channel saturated, whether or not the pool could grow.
+     * A count rising while the pool is at its maximum size means the maximum is too small.
+     *
+     * @return The number of saturated selections
+     */
+    public long saturations() {
+        return saturations.get();
+    }
+
+    @Override
+    public String authority() {
+        return entries[0].channel.authority();
+    }
+
+    /**
+     * Returns the best state of the channels, so the pool is ready as soon as one of them is.
+     */
+    @Override
+    public ConnectivityState getState(boolean requestConnection) {
+        ConnectivityState best = null;
+        for (Entry entry : entries) {
+            ConnectivityState state = entry.channel.getState(requestConnection);
+            if (best == null || rank(state) < rank(best)) {
+                best = state;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Notifies once the state of the pool, see {@link #getState(boolean)}, differs from the given
+     * state, watching all of its current channels.
+     */
+    @Override
+    public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+        if (getState(false) != source) {
+            callback.run();
+            return;
+        }
+        AtomicBoolean notified = new AtomicBoolean();
+        for (Entry entry : entries) {
+            watch(entry, source, callback, notified);
+        }
+    }
+
+    private void watch(Entry entry, ConnectivityState source, Runnable callback,
+                       AtomicBoolean notified) {
+        entry.channel.notifyWhenStateChanged(entry.channel.getState(false), () -> {
+            if (notified.get()) {
+                return;
+            }
+            if (getState(false) != source) {
+                if (notified.compareAndSet(false, true)) {
+                    callback.run();
+                }
+            } else {
+                watch(entry, source, callback, notified);
+            }
+        });
+    }
+
+    private static int rank(ConnectivityState state) {
+        return switch (state) {
+            case READY -> 0;
+            case CONNECTING -> 1;
+            case IDLE -> 2;
+            case TRANSIENT_FAILURE -> 3;
+            case SHUTDOWN -> 4;
+        };
+    }
+
+    @Override
+    public void resetConnectBackoff() {
+        for (Entry entry : entries) {
+            entry.channel.resetConnectBackoff();
+        }
+    }
+
+    @Override
+    public void enterIdle() {
+        for (Entry entry : entries) {
+            entry.channel.enterIdle();
+        }
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        for (Entry entry : entries) {
+            entry.channel.shutdown();
+        }
+        return this;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        for (Entry entry : entries) {
+            entry.channel.shutdownNow();
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        if (!shutdown) {
+            return false;
+        }
+        for (Entry entry : entries) {
+            if (!entry.channel.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Entry entry : entries) {
+            long remaining = deadline - System.nanoTime();
+            if (!entry.channel.awaitTermination(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "GrpcChannelPool[authority=" + authority() + ", size=" + size() +
+               ", maxSize=" + maxSize + ", outstanding=" + outstanding() + "]";
+    }
+
+    private static final class Entry {
+        private final ManagedChannel channel;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private Entry(ManagedChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Counts a call as outstanding on its channel from its start until it is closed.
+     */
+    private static final class CountingCall<ReqT, RespT>
+            extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+        private final Entry entry;
+
+        private CountingCall(Entry entry, ClientCall<ReqT, RespT> delegate) {
+            super(delegate);
+            this.entry = entry;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            entry.outstanding.incrementAndGet();
+            try {
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(
+                        responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        entry.outstanding.decrementAndGet();
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            } catch (RuntimeException e) {
+                entry.outstanding.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+}
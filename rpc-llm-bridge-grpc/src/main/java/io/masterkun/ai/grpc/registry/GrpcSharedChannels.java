@@ -0,0 +1,139 @@
+package io.masterkun.ai.grpc.registry;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.grpc.ManagedChannel;
+import io.masterkun.ai.grpc.GrpcBridgeToolOptions;
+import io.masterkun.ai.grpc.JSONUtils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * A reference-counted registry of the channels shared by registrations with the same target.
+ * Registrations of one backend under several names, like per-tenant groups or filtered views,
+ * then share one channel instead of opening a connection each.
+ * <p>
+ * Channels are keyed by the target address and the channel settings of the options, so
+ * registrations differing only in tool-level settings, see {@link GrpcBridgeToolOptions}, share a
+ * channel while registrations with different channel settings do not. A channel is shut down when
+ * the last registration using it closes.
+ * <p>
+ * This class is thread-safe.
+ */
+public class GrpcSharedChannels {
+    private static final GrpcSharedChannels GLOBAL = new GrpcSharedChannels();
+    // The settings inherited from the tool options, which do not affect the channel
+    private static final Set<String> TOOL_OPTIONS = new HashSet<>();
+
+    static {
+        JSONUtils.OBJECT_MAPPER.valueToTree(new GrpcBridgeToolOptions())
+                .fieldNames()
+                .forEachRemaining(TOOL_OPTIONS::add);
+    }
+
+    private final Map<Key, Shared> channels = new HashMap<>();
+
+    /**
+     * Returns the registry shared by all registrations of the process.
+     *
+     * @return The global registry
+     */
+    public static GrpcSharedChannels global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Acquires the channel for a target, creating it if no registration uses it yet. Closing the
+     * returned channel releases it, and the channel itself is shut down once all of its holders
+     * have released it.
+     *
+     * @param targetAddress The target address
+     * @param options       The parsed registration options
+     * @param factory       Creates the channel if it does not exist yet
+     * @return A reference to the shared channel
+     */
+    public GrpcBridgeToolChannel acquire(String targetAddress, GrpcChannelOptions options,
+                                         Supplier<ManagedChannel> factory) {
+        Key key = new Key(targetAddress, normalize(options));
+        Shared shared;
+        synchronized (channels) {
+            shared = channels.get(key);
+            if (shared == null || shared.channel.isShutdown()) {
+                shared = new Shared(factory.get());
+                channels.put(key, shared);
+            }
+            shared.references++;
+        }
+        Shared acquired = shared;
+        AtomicBoolean released = new AtomicBoolean();
+        return new GrpcBridgeToolChannel(acquired.channel, () -> {
+            if (released.compareAndSet(false, true)) {
+                release(key, acquired);
+            }
+        });
+    }
+
+    private void release(Key key, Shared shared) {
+        synchronized (channels) {
+            if (--shared.references > 0) {
+                return;
+            }
+            channels.remove(key, shared);
+        }
+        shared.channel.shutdown();
+    }
+
+    /**
+     * Returns the number of live shared channels.
+     *
+     * @return The number of channels
+     */
+    public int size() {
+        synchronized (channels) {
+            return channels.size();
+        }
+    }
+
+    /**
+     * Returns the number of unreleased references to all shared channels, which is the number of
+     * registrations using them.
+     *
+     * @return The number of references
+     */
+    public int references() {
+        synchronized (channels) {
+            int references = 0;
+            for (Shared shared : channels.values()) {
+                references += shared.references;
+            }
+            return references;
+        }
+    }
+
+    /**
+     * Reduces options to the settings affecting the channel, without unset ones, so the same
+     * settings given in another order or with defaults spelled out share a channel.
+     */
+    static JsonNode normalize(GrpcChannelOptions options) {
+        ObjectNode node = JSONUtils.OBJECT_MAPPER.valueToTree(options);
+        node.properties().removeIf(e -> e.getValue().isNull() || TOOL_OPTIONS.contains(e.getKey()));
+        return node;
+    }
+
+    private record Key(String targetAddress, JsonNode options) {
+    }
+
+    private static final class Shared {
+        private final ManagedChannel channel;
+        private int references;
+
+        private Shared(ManagedChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
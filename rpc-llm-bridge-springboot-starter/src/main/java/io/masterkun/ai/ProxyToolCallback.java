@@ -13,6 +13,9 @@ import org.springframework.ai.tool.metadata.ToolMetadata;
  * Adapter class that bridges between MCP BridgeToolCallback and Spring AI ToolCallback. This class
  * wraps a BridgeToolCallback instance and implements the Spring AI ToolCallback interface, allowing
  * MCP bridge tools to be used within the Spring AI framework.
+ * <p>
+ * Streaming tools ({@link io.masterkun.ai.tool.BridgeToolStreamCallback}) are aggregated: the
+ * partial results received within the stream budget are collected and converted into one result.
  *
  * @param <T> The type of result returned by the wrapped BridgeToolCallback
  */
@@ -0,0 +1,188 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.Message;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.ai.grpc.registry.GrpcBridgeTool;
+import io.masterkun.ai.grpc.registry.GrpcBridgeToolChannel;
+import io.masterkun.ai.registry.BridgeToolChannelHolder;
+import io.masterkun.ai.tool.BridgeToolCall;
+import io.masterkun.ai.tool.BridgeToolCallResult;
+import io.masterkun.ai.tool.BridgeToolCallback;
+import io.masterkun.ai.tool.BridgeToolContext;
+import io.masterkun.toolcall.proto.ForTestProto;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GrpcBridgeToolBatchExecutor}. The test service answers
+ * {@code "sleep:<millis>"} after the given delay.
+ */
+public class GrpcBridgeToolBatchExecutorTest {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private ScheduledExecutorService scheduler;
+    private Server server;
+    private String name;
+    private ManagedChannel channel;
+    private GrpcBridgeToolCallback<? extends Message> callback;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = Executors.newScheduledThreadPool(4);
+        name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new ForTestServiceGrpc.ForTestServiceImplBase() {
+                    @Override
+                    public void testGet(ForTestProto.TestReq request,
+                                        StreamObserver<ForTestProto.TestRes> responseObserver) {
+                        String message = request.getMessage();
+                        if (message.equals("fail")) {
+                            responseObserver.onError(Status.INVALID_ARGUMENT.asRuntimeException());
+                            return;
+                        }
+                        long delay = message.startsWith("sleep:") ?
+                                Long.parseLong(message.substring(6)) : 0;
+                        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        scheduler.schedule(() -> {
+                            inFlight.decrementAndGet();
+                            responseObserver.onNext(ForTestProto.TestRes.newBuilder()
+                                    .setMessage("echo: " + message)
+                                    .build());
+                            responseObserver.onCompleted();
+                        }, delay, TimeUnit.MILLISECONDS);
+                    }
+                })
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        callback = GrpcBridgeToolCallback.of(ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName("testGet"), channel);
+    }
+
+    @After
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    private BridgeToolCall<?> call(String message) {
+        return call(callback, message);
+    }
+
+    private static BridgeToolCall<?> call(BridgeToolCallback<?> callback, String message) {
+        return new BridgeToolCall<>(callback, "{\"message\": \"" + message + "\"}",
+                BridgeToolContext.EMPTY);
+    }
+
+    private static String message(BridgeToolCallResult<?> result) throws Exception {
+        return ForTestProto.TestRes.parseFrom(((Message) result.result()).toByteString())
+                .getMessage();
+    }
+
+    @Test
+    public void testCallsRunConcurrently() throws Exception {
+        List<BridgeToolCall<?>> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            calls.add(call("sleep:" + (300 - i * 10)));
+        }
+        List<BridgeToolCallResult<?>> results = new GrpcBridgeToolBatchExecutor(8)
+                .execute(calls, Duration.ofSeconds(5));
+        assertEquals(4, peakInFlight.get());
+        assertEquals(4, results.size());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(results.get(i).isSuccess());
+            assertEquals("echo: sleep:" + (300 - i * 10), message(results.get(i)));
+        }
+    }
+
+    @Test
+    public void testPartialFailureAndDeadline() throws Exception {
+        List<BridgeToolCallResult<?>> results = new GrpcBridgeToolBatchExecutor(8)
+                .execute(List.of(call("ok"), call("fail"), call("sleep:5000")),
+                        Duration.ofMillis(300));
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("echo: ok", message(results.get(0)));
+        assertFalse(results.get(1).isSuccess());
+        assertEquals(Status.Code.INVALID_ARGUMENT,
+                ((StatusRuntimeException) results.get(1).error()).getStatus().getCode());
+        assertTrue(results.get(2).error() instanceof TimeoutException);
+    }
+
+    @Test
+    public void testConcurrencyLimitPerChannel() {
+        List<BridgeToolCallResult<?>> results = new GrpcBridgeToolBatchExecutor(1)
+                .execute(List.of(call("sleep:50"), call("sleep:50"), call("sleep:50")),
+                        Duration.ofSeconds(5));
+        assertEquals(1, peakInFlight.get());
+        assertTrue(results.stream().allMatch(BridgeToolCallResult::isSuccess));
+    }
+
+    @Test
+    public void testConcurrencyLimitPerHolder() {
+        // Callbacks created from a holder that is not the one of a registration
+        var holder = new BridgeToolChannelHolder<>((target, options) ->
+                new GrpcBridgeToolChannel(InProcessChannelBuilder.forName(target).build()),
+                name, Map.of());
+        var tool = new GrpcBridgeTool(Set.of(), ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName("testGet"), null);
+        BridgeToolCallback<?> first = tool.createToolCallback(holder);
+        BridgeToolCallback<?> second = tool.createToolCallback(holder);
+        try {
+            List<BridgeToolCallResult<?>> results = new GrpcBridgeToolBatchExecutor(1)
+                    .execute(List.of(call(first, "sleep:50"), call(second, "sleep:50"),
+                            call(first, "sleep:50")), Duration.ofSeconds(5));
+            assertEquals(1, peakInFlight.get());
+            assertTrue(results.stream().allMatch(BridgeToolCallResult::isSuccess));
+        } finally {
+            holder.close();
+        }
+    }
+
+    @Test
+    public void testLongQueueCompletingInline() {
+        // The first call holds the permit until the others are queued. These fail synchronously
+        // on invalid input, so every queued call completes on the stack releasing the permit
+        List<BridgeToolCall<?>> calls = new ArrayList<>();
+        calls.add(call("sleep:100"));
+        for (int i = 1; i < 20000; i++) {
+            calls.add(new BridgeToolCall<>(callback, "not json", BridgeToolContext.EMPTY));
+        }
+        List<BridgeToolCallResult<?>> results = new GrpcBridgeToolBatchExecutor(1)
+                .execute(calls, Duration.ofSeconds(10));
+        assertEquals(20000, results.size());
+        assertTrue(results.get(0).isSuccess());
+        // All fail on their input, none on a StackOverflowError caught along the way
+        Class<?> error = results.get(1).error().getClass();
+        assertFalse(error.getName(), StackOverflowError.class.isAssignableFrom(error));
+        assertTrue(results.stream().skip(1).allMatch(r -> r.error().getClass() == error));
+    }
+}
@@ -0,0 +1,170 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.Message;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.ai.tool.BridgeToolCallCoalescer;
+import io.masterkun.ai.tool.BridgeToolContext;
+import io.masterkun.toolcall.proto.ForTestProto;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for coalescing identical concurrent calls with {@link BridgeToolCallCoalescer}. The
+ * test service holds all calls until {@link #reply()} is invoked.
+ */
+public class GrpcBridgeToolCallCoalescerTest {
+
+    private final List<StreamObserver<ForTestProto.TestRes>> pending = new ArrayList<>();
+    private final List<String> requests = new ArrayList<>();
+    private Server server;
+    private ManagedChannel channel;
+    private BridgeToolCallCoalescer<Message> coalescer;
+
+    @Before
+    public void setUp() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new ForTestServiceGrpc.ForTestServiceImplBase() {
+                    @Override
+                    public void testCoalesced(ForTestProto.TestReq request,
+                                              StreamObserver<ForTestProto.TestRes> responseObserver) {
+                        synchronized (pending) {
+                            requests.add(request.getMessage());
+                            pending.add(responseObserver);
+                        }
+                    }
+                })
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        coalescer = new BridgeToolCallCoalescer<>();
+    }
+
+    @After
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    private GrpcBridgeToolCallback<? extends Message> newCallback() {
+        return GrpcBridgeToolCallback.of(GrpcBridgeToolMethod.of(ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName("testCoalesced")), channel, null, coalescer);
+    }
+
+    private void reply() {
+        synchronized (pending) {
+            for (int i = 0; i < pending.size(); i++) {
+                pending.get(i).onNext(ForTestProto.TestRes.newBuilder()
+                        .setMessage("reply " + i + ": " + requests.get(i))
+                        .build());
+                pending.get(i).onCompleted();
+            }
+            pending.clear();
+        }
+    }
+
+    private static String message(CompletableFuture<? extends Message> future) throws Exception {
+        return ForTestProto.TestRes.parseFrom(future.get(5, TimeUnit.SECONDS).toByteString())
+                .getMessage();
+    }
+
+    @Test
+    public void testIdenticalCallsShareOneCall() throws Exception {
+        var callback = newCallback();
+        List<CompletableFuture<? extends Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(callback.callAsync(i % 2 == 0 ? "{\"message\": \"status\"}" :
+                    "{ \"message\" : \"status\" }", BridgeToolContext.EMPTY));
+        }
+        assertEquals(1, requests.size());
+        assertEquals(1, coalescer.inFlight());
+        reply();
+        for (CompletableFuture<? extends Message> future : futures) {
+            assertEquals("reply 0: status", message(future));
+        }
+        assertEquals(0, coalescer.inFlight());
+        assertEquals(new BridgeToolCallCoalescer.Stats(1, 4), coalescer.stats());
+
+        // Completed calls are not reused
+        var next = callback.callAsync("{\"message\": \"status\"}", BridgeToolContext.EMPTY);
+        assertEquals(2, requests.size());
+        reply();
+        assertEquals("reply 0: status", message(next));
+    }
+
+    @Test
+    public void testDifferentContextIsNotCoalesced() throws Exception {
+        var callback = newCallback();
+        var user1 = callback.callAsync("{\"message\": \"status\"}",
+                new BridgeToolContext(Map.of("user", "1")));
+        var user2 = callback.callAsync("{\"message\": \"status\"}",
+                new BridgeToolContext(Map.of("user", "2")));
+        var other = callback.callAsync("{\"message\": \"other\"}",
+                new BridgeToolContext(Map.of("user", "1")));
+        assertEquals(3, requests.size());
+        reply();
+        assertEquals("reply 0: status", message(user1));
+        assertEquals("reply 1: status", message(user2));
+        assertEquals("reply 2: other", message(other));
+    }
+
+    @Test
+    public void testLaterDeadlineIsNotCoalesced() throws Exception {
+        var callback = newCallback();
+        Instant now = Instant.now();
+        var early = new BridgeToolContext(Map.of(BridgeToolContext.TOOL_CALL_DEADLINE,
+                now.plusSeconds(30)));
+        var late = new BridgeToolContext(Map.of(BridgeToolContext.TOOL_CALL_DEADLINE,
+                now.plusSeconds(60)));
+        var first = callback.callAsync("{\"message\": \"status\"}", early);
+        // Joins, as the in-flight call has more time than it needs
+        var shorter = callback.callAsync("{\"message\": \"status\"}", early);
+        // Starts a new call, which the following callers join
+        var longer = callback.callAsync("{\"message\": \"status\"}", late);
+        var unbounded = callback.callAsync("{\"message\": \"status\"}", BridgeToolContext.EMPTY);
+        var joined = callback.callAsync("{\"message\": \"status\"}", early);
+        assertEquals(3, requests.size());
+        reply();
+        assertEquals("reply 0: status", message(first));
+        assertEquals("reply 0: status", message(shorter));
+        assertEquals("reply 1: status", message(longer));
+        assertEquals("reply 2: status", message(unbounded));
+        assertEquals("reply 2: status", message(joined));
+        assertEquals(new BridgeToolCallCoalescer.Stats(3, 2), coalescer.stats());
+    }
+
+    @Test
+    public void testCancelOneCaller() throws Exception {
+        var callback = newCallback();
+        var first = callback.callAsync("{\"message\": \"status\"}", BridgeToolContext.EMPTY);
+        var second = callback.callAsync("{\"message\": \"status\"}", BridgeToolContext.EMPTY);
+        first.cancel(true);
+        assertEquals(1, coalescer.inFlight());
+        reply();
+        assertEquals("reply 0: status", message(second));
+
+        // The shared call is cancelled once every caller gave up
+        var third = callback.callAsync("{\"message\": \"status\"}", BridgeToolContext.EMPTY);
+        third.cancel(true);
+        assertEquals(0, coalescer.inFlight());
+        assertTrue(third.isCancelled());
+    }
+}
@@ -0,0 +1,190 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.Message;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.ai.grpc.registry.GrpcBridgeToolRegistration;
+import io.masterkun.ai.tool.BridgeToolContext;
+import io.masterkun.ai.tool.BridgeToolTimeoutException;
+import io.masterkun.toolcall.proto.ForTestProto;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link GrpcBridgeToolCallback} against an in-process gRPC server.
+ */
+public class GrpcBridgeToolCallbackTest {
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new ForTestServiceGrpc.ForTestServiceImplBase() {
+                    @Override
+                    public void testGet(ForTestProto.TestReq request,
+                                        StreamObserver<ForTestProto.TestRes> responseObserver) {
+                        if (request.getMessage().equals("hang")) {
+                            // Never answers, the client has to give up
+                            return;
+                        }
+                        if (request.getMessage().equals("fail")) {
+                            responseObserver.onError(Status.INVALID_ARGUMENT
+                                    .withDescription("bad request")
+                                    .asRuntimeException());
+                            return;
+                        }
+                        responseObserver.onNext(ForTestProto.TestRes.newBuilder()
+                                .setMessage("echo: " + request.getMessage())
+                                .build());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    private static GrpcBridgeToolCallback<? extends Message> newCallback(ManagedChannel channel) {
+        return GrpcBridgeToolCallback.of(ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName("testGet"), channel);
+    }
+
+    private static String message(Message res) throws Exception {
+        return ForTestProto.TestRes.parseFrom(res.toByteString()).getMessage();
+    }
+
+    @After
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testCall() throws Exception {
+        var callback = newCallback(channel);
+        Message res = callback.call("{\"message\": \"hello\"}", BridgeToolContext.EMPTY);
+        assertEquals("echo: hello", message(res));
+    }
+
+    @Test
+    public void testCallAsync() throws Exception {
+        var callback = newCallback(channel);
+        List<CompletableFuture<? extends Message>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(callback.callAsync("{\"message\": \"m" + i + "\"}",
+                    BridgeToolContext.EMPTY));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("echo: m" + i, message(futures.get(i).get()));
+        }
+    }
+
+    @Test
+    public void testCallAsyncFailure() throws Exception {
+        var callback = newCallback(channel);
+        try {
+            callback.callAsync("{\"message\": \"fail\"}", BridgeToolContext.EMPTY).get();
+            fail("Expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof StatusRuntimeException);
+            assertEquals(Status.Code.INVALID_ARGUMENT,
+                    ((StatusRuntimeException) e.getCause()).getStatus().getCode());
+        }
+        try {
+            callback.call("{\"message\": \"fail\"}", BridgeToolContext.EMPTY);
+            fail("Expected failure");
+        } catch (StatusRuntimeException e) {
+            assertEquals(Status.Code.INVALID_ARGUMENT, e.getStatus().getCode());
+        }
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        // Every method warms up on its sample messages, including the paged and projected ones
+        for (var method : ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .getMethods()) {
+            GrpcBridgeToolMethod.of(method).warmUp(3);
+        }
+        var toolMethod = GrpcBridgeToolMethod.of(ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName("testGet"));
+        toolMethod.warmUp(1);
+        var callback = GrpcBridgeToolCallback.of(toolMethod, channel);
+        assertEquals("echo: warm", message(callback.call("{\"message\": \"warm\"}",
+                BridgeToolContext.EMPTY)));
+    }
+
+    @Test
+    public void testInvalidInput() {
+        var callback = newCallback(channel);
+        assertTrue(callback.callAsync("not json", BridgeToolContext.EMPTY)
+                .isCompletedExceptionally());
+    }
+
+    @Test
+    public void testMethodTimeout() {
+        GrpcBridgeToolOptions options = new GrpcBridgeToolRegistration("test", "localhost:1",
+                Map.of("defaultMethodTimeout", "PT0.1S")).toolOptions();
+        assertEquals(Duration.ofMillis(100), options.getDefaultMethodTimeout());
+        var callback = GrpcBridgeToolCallback.of(GrpcBridgeToolMethod.of(ForTestProto
+                .getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName("testGet"), options), channel);
+        try {
+            callback.call("{\"message\": \"hang\"}", BridgeToolContext.EMPTY);
+            fail("Expected timeout");
+        } catch (BridgeToolTimeoutException e) {
+            assertEquals(Status.Code.DEADLINE_EXCEEDED, Status.fromThrowable(e).getCode());
+        }
+    }
+
+    @Test
+    public void testContextDeadline() {
+        var callback = newCallback(channel);
+        BridgeToolContext context = new BridgeToolContext(Map.of(
+                BridgeToolContext.TOOL_CALL_DEADLINE, Instant.now().plusMillis(100)));
+        try {
+            callback.call("{\"message\": \"hang\"}", context);
+            fail("Expected timeout");
+        } catch (BridgeToolTimeoutException e) {
+            // expected
+        }
+
+        // An exhausted budget fails without starting the call
+        BridgeToolContext expired = new BridgeToolContext(Map.of(
+                BridgeToolContext.TOOL_CALL_DEADLINE, Instant.now().minusMillis(1)));
+        var future = callback.callAsync("{\"message\": \"hello\"}", expired);
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+            fail("Expected timeout");
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof BridgeToolTimeoutException);
+        }
+    }
+}
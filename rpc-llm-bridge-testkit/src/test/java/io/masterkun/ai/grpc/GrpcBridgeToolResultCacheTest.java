@@ -0,0 +1,146 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.ai.tool.BridgeToolContext;
+import io.masterkun.ai.tool.BridgeToolResultCache;
+import io.masterkun.toolcall.proto.ForTestProto;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for {@link BridgeToolResultCache} and the result caching of
+ * {@link GrpcBridgeToolCallback}.
+ */
+public class GrpcBridgeToolResultCacheTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private Server server;
+    private ManagedChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        ForTestServiceGrpc.ForTestServiceImplBase service = new ForTestServiceGrpc.ForTestServiceImplBase() {
+            @Override
+            public void testGet(ForTestProto.TestReq request,
+                                StreamObserver<ForTestProto.TestRes> responseObserver) {
+                testCached(request, responseObserver);
+            }
+
+            @Override
+            public void testCached(ForTestProto.TestReq request,
+                                   StreamObserver<ForTestProto.TestRes> responseObserver) {
+                responseObserver.onNext(ForTestProto.TestRes.newBuilder()
+                        .setMessage("echo " + calls.incrementAndGet() + ": " + request.getMessage())
+                        .build());
+                responseObserver.onCompleted();
+            }
+        };
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(service)
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    @After
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    private GrpcBridgeToolCallback<? extends Message> newCallback(String method,
+                                                                  BridgeToolResultCache<Message> cache) {
+        Descriptors.MethodDescriptor descriptor = ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName(method);
+        return GrpcBridgeToolCallback.of(GrpcBridgeToolMethod.of(descriptor), channel, cache);
+    }
+
+    private static String message(Message res) throws Exception {
+        return ForTestProto.TestRes.parseFrom(res.toByteString()).getMessage();
+    }
+
+    @Test
+    public void testCacheableMethod() throws Exception {
+        BridgeToolResultCache<Message> cache = new BridgeToolResultCache<>(16, 1 << 20,
+                Message::getSerializedSize);
+        var callback = newCallback("testCached", cache);
+        assertEquals(Duration.ofMinutes(1), ((GrpcBridgeToolDefinition<?>) callback
+                .getToolDefinition()).getToolMethod().getCacheTtl());
+
+        assertEquals("echo 1: a", message(callback.call("{\"message\": \"a\"}",
+                BridgeToolContext.EMPTY)));
+        // Same input with different formatting is served from the cache
+        assertEquals("echo 1: a", message(callback.call("{ \"message\":\"a\" }",
+                BridgeToolContext.EMPTY)));
+        assertEquals("echo 2: b", message(callback.call("{\"message\": \"b\"}",
+                BridgeToolContext.EMPTY)));
+        // The context is part of the key, the call history is not
+        BridgeToolContext user1 = new BridgeToolContext(Map.of("user", "1"));
+        assertEquals("echo 3: a", message(callback.call("{\"message\": \"a\"}", user1)));
+        BridgeToolContext user1WithHistory = new BridgeToolContext(Map.of("user", "1",
+                BridgeToolContext.TOOL_CALL_HISTORY, List.of()));
+        assertEquals("echo 3: a", message(callback.call("{\"message\": \"a\"}",
+                user1WithHistory)));
+
+        assertEquals(new BridgeToolResultCache.Stats(2, 3, 0, 0), cache.stats());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testNonCacheableMethod() throws Exception {
+        BridgeToolResultCache<Message> cache = new BridgeToolResultCache<>(16, 1 << 20,
+                Message::getSerializedSize);
+        var callback = newCallback("testGet", cache);
+        assertEquals("echo 1: a", message(callback.call("{\"message\": \"a\"}",
+                BridgeToolContext.EMPTY)));
+        assertEquals("echo 2: a", message(callback.call("{\"message\": \"a\"}",
+                BridgeToolContext.EMPTY)));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictionAndExpiration() throws Exception {
+        BridgeToolResultCache<String> cache = new BridgeToolResultCache<>(2, 100, String::length);
+        cache.put("a", "1", Duration.ofMinutes(1));
+        cache.put("b", "2", Duration.ofMinutes(1));
+        assertEquals("1", cache.get("a"));
+        // b is the least recently used entry
+        cache.put("c", "3", Duration.ofMinutes(1));
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+
+        // Too heavy to be cached at all
+        cache.put("d", "x".repeat(100), Duration.ofMinutes(1));
+        assertNull(cache.get("d"));
+        // Evicts both entries to make room
+        cache.put("e", "x".repeat(98), Duration.ofMinutes(1));
+        assertEquals(1, cache.size());
+        assertEquals(99, cache.weight());
+
+        cache.put("f", "6", Duration.ofMillis(1));
+        Thread.sleep(5);
+        assertNull(cache.get("f"));
+        assertEquals(0, cache.size());
+        assertEquals(new BridgeToolResultCache.Stats(3, 3, 4, 1), cache.stats());
+    }
+}
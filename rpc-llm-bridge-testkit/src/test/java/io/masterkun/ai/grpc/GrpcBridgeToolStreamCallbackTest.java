@@ -0,0 +1,187 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.Message;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.ai.tool.BridgeToolContext;
+import io.masterkun.toolcall.proto.ForTestProto;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GrpcBridgeToolStreamCallback}. The test service streams
+ * {@code "<message> <i>"} every millisecond, up to the number given in the request or until the
+ * call is cancelled.
+ */
+public class GrpcBridgeToolStreamCallbackTest {
+
+    private ScheduledExecutorService scheduler;
+    private Server server;
+    private ManagedChannel channel;
+    private CountDownLatch cancelled;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        cancelled = new CountDownLatch(1);
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new ForTestServiceGrpc.ForTestServiceImplBase() {
+                    @Override
+                    public void testStream(ForTestProto.TestReq request,
+                                           StreamObserver<ForTestProto.TestRes> responseObserver) {
+                        var observer = (ServerCallStreamObserver<ForTestProto.TestRes>) responseObserver;
+                        String[] parts = request.getMessage().split(" ");
+                        int count = Integer.parseInt(parts[1]);
+                        AtomicInteger sent = new AtomicInteger();
+                        ScheduledFuture<?>[] task = new ScheduledFuture<?>[1];
+                        observer.setOnCancelHandler(() -> {
+                            task[0].cancel(false);
+                            cancelled.countDown();
+                        });
+                        task[0] = scheduler.scheduleAtFixedRate(() -> {
+                            int i = sent.getAndIncrement();
+                            if (i < count) {
+                                observer.onNext(ForTestProto.TestRes.newBuilder()
+                                        .setMessage(parts[0] + " " + i)
+                                        .build());
+                            } else {
+                                observer.onCompleted();
+                                task[0].cancel(false);
+                            }
+                        }, 0, 1, TimeUnit.MILLISECONDS);
+                    }
+                })
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+    }
+
+    @After
+    public void tearDown() {
+        channel.shutdownNow();
+        server.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    private GrpcBridgeToolStreamCallback<? extends Message> newCallback(GrpcBridgeToolOptions options) {
+        return GrpcBridgeToolStreamCallback.of(GrpcBridgeToolMethod.of(ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName("testStream"), options), channel);
+    }
+
+    private static String message(Message res) throws Exception {
+        return ForTestProto.TestRes.parseFrom(res.toByteString()).getMessage();
+    }
+
+    @Test
+    public void testAggregate() throws Exception {
+        var callback = newCallback(new GrpcBridgeToolOptions());
+        List<? extends Message> items = callback.call("{\"message\": \"item 3\"}",
+                BridgeToolContext.EMPTY);
+        assertEquals(3, items.size());
+        assertEquals("item 2", message(items.get(2)));
+        assertEquals("item 0\nitem 1\nitem 2", convert(callback, items));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> String convert(GrpcBridgeToolStreamCallback<?> callback, List<T> items) {
+        return ((GrpcBridgeToolStreamCallback<Message>) callback).getToolDefinition()
+                .resultConverter().get().convert((List<Message>) items);
+    }
+
+    @Test
+    public void testItemBudget() throws Exception {
+        var callback = newCallback(new GrpcBridgeToolOptions());
+        assertEquals(5, callback.call("{\"message\": \"item 100000\"}",
+                BridgeToolContext.EMPTY).size());
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testByteBudget() throws Exception {
+        GrpcBridgeToolOptions options = new GrpcBridgeToolOptions();
+        // Every message is 8 bytes
+        options.setDefaultStreamMaxBytes(20);
+        var callback = newCallback(options);
+        List<? extends Message> items = callback.call("{\"message\": \"item 100000\"}",
+                BridgeToolContext.EMPTY);
+        assertEquals(2, items.size());
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testResponseFields() throws Exception {
+        GrpcBridgeToolOptions options = new GrpcBridgeToolOptions();
+        options.setResponseFieldsArgument(true);
+        options.setDefaultStreamMaxBytes(20);
+        var callback = newCallback(options);
+        assertTrue(callback.getToolDefinition().inputSchema()
+                .contains(GrpcBridgeToolMethod.RESPONSE_FIELDS_ARGUMENT));
+        // Messages are selected before the byte budget, so only the item budget applies
+        List<? extends Message> items = callback.call(
+                "{\"message\": \"item 100000\", \"response_fields\": [\"elem1\"]}",
+                BridgeToolContext.EMPTY);
+        assertEquals(5, items.size());
+        for (Message item : items) {
+            assertEquals("", message(item));
+        }
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFlowControlAndCancel() throws Exception {
+        var callback = newCallback(new GrpcBridgeToolOptions());
+        List<Object> received = new CopyOnWriteArrayList<>();
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        callback.callStream("{\"message\": \"item 100000\"}", BridgeToolContext.EMPTY)
+                .subscribe(new Flow.Subscriber<Object>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription s) {
+                        subscription[0] = s;
+                        s.request(2);
+                    }
+
+                    @Override
+                    public void onNext(Object item) {
+                        received.add(item);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        received.add(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        received.add("complete");
+                    }
+                });
+        Thread.sleep(100);
+        // Only the requested messages are delivered
+        assertEquals(2, received.size());
+        subscription[0].cancel();
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        assertEquals(2, received.size());
+    }
+}
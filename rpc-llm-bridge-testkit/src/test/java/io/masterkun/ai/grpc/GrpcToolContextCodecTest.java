@@ -0,0 +1,264 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.Message;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.MetadataUtils;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.ai.tool.BridgeToolContext;
+import io.masterkun.ai.tool.BridgeToolResultCache;
+import io.masterkun.toolcall.proto.ForTestProto;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link GrpcToolContextCodec}.
+ */
+public class GrpcToolContextCodecTest {
+
+    private static List<Map<String, Object>> history(int turns) {
+        List<Map<String, Object>> history = new ArrayList<>();
+        for (int i = 0; i < turns; i++) {
+            history.add(Map.of("role", "assistant", "content", "turn " + i + " ".repeat(100)));
+        }
+        return history;
+    }
+
+    @Test
+    public void testHistoryIsNotForwarded() {
+        GrpcToolContextCodec codec = GrpcToolContextCodec.of(new GrpcBridgeToolOptions(), List.of());
+        byte[] shortConversation = codec.encode(new BridgeToolContext(Map.of(
+                "user", "alice", "tenant", 42, BridgeToolContext.TOOL_CALL_HISTORY, history(1))));
+        byte[] longConversation = codec.encode(new BridgeToolContext(Map.of(
+                "user", "alice", "tenant", 42, BridgeToolContext.TOOL_CALL_HISTORY, history(100))));
+        assertEquals(shortConversation.length, longConversation.length);
+        assertEquals(Map.of("user", "alice", "tenant", 42),
+                GrpcToolContextCodec.decode(longConversation).getContext());
+        assertEquals(2, codec.stats().calls());
+        assertEquals(2L * longConversation.length, codec.stats().encodedBytes());
+    }
+
+    @Test
+    public void testAllowlist() {
+        GrpcBridgeToolOptions options = new GrpcBridgeToolOptions();
+        options.setContextKeys(List.of("user", BridgeToolContext.TOOL_CALL_HISTORY));
+        BridgeToolContext context = new BridgeToolContext(Map.of(
+                "user", "alice", "secret", "x", BridgeToolContext.TOOL_CALL_HISTORY, history(1)));
+        assertEquals(Map.of("user", "alice", BridgeToolContext.TOOL_CALL_HISTORY, history(1)),
+                GrpcToolContextCodec.decode(GrpcToolContextCodec.of(options, List.of())
+                        .encode(context)).getContext());
+        // Method keys replace the keys of the registration
+        assertEquals(Map.of("secret", "x"), GrpcToolContextCodec.decode(GrpcToolContextCodec
+                .of(options, List.of("secret")).encode(context)).getContext());
+        assertNull(GrpcToolContextCodec.of(options, List.of("missing")).encode(context));
+    }
+
+    @Test
+    public void testLegacyHeader() {
+        BridgeToolContext context = new BridgeToolContext(Map.of(
+                "user", "alice", BridgeToolContext.TOOL_CALL_HISTORY, history(1)));
+        Metadata headers = new Metadata();
+        GrpcToolContextCodec.of(new GrpcBridgeToolOptions(), List.of())
+                .writeTo(headers, context, false);
+        assertNull(headers.get(GrpcBridgeToolContext.METADATA_KEY));
+
+        // Enabled while servers with the old interceptor are still deployed
+        GrpcBridgeToolOptions options = new GrpcBridgeToolOptions();
+        options.setLegacyContextHeader(true);
+        headers = new Metadata();
+        GrpcToolContextCodec.of(options, List.of()).writeTo(headers, context, false);
+        assertEquals(Map.of("user", "alice"),
+                LazyToolContext.legacy(headers.get(GrpcBridgeToolContext.METADATA_KEY))
+                        .get().getContext());
+        assertEquals(Map.of("user", "alice"), GrpcToolContextCodec.decode(
+                headers.get(GrpcBridgeToolContext.ENCODED_METADATA_KEY)).getContext());
+    }
+
+    @Test
+    public void testOversizedValues() {
+        GrpcBridgeToolOptions options = new GrpcBridgeToolOptions();
+        options.setContextMaxValueBytes(16);
+        BridgeToolContext context = new BridgeToolContext(Map.of(
+                "note", "这是一段很长的说明文字，会被截断",
+                "list", List.of("a very long value that is not a string"),
+                "user", "alice"));
+        GrpcToolContextCodec codec = GrpcToolContextCodec.of(options, List.of());
+        Map<String, Object> decoded = GrpcToolContextCodec.decode(codec.encode(context))
+                .getContext();
+        String note = (String) decoded.get("note");
+        assertTrue(note, note.startsWith("这是一") && note.endsWith("…"));
+        assertTrue(JSONUtils.toJsonBytes(note).length <= 16);
+        assertNull(decoded.get("list"));
+        assertEquals("alice", decoded.get("user"));
+        assertEquals(1, codec.stats().truncatedValues());
+        assertEquals(1, codec.stats().droppedValues());
+
+        options.setContextOversizePolicy(ContextOversizePolicy.DROP);
+        codec = GrpcToolContextCodec.of(options, List.of());
+        assertEquals(Map.of("user", "alice"),
+                GrpcToolContextCodec.decode(codec.encode(context)).getContext());
+        assertEquals(2, codec.stats().droppedValues());
+    }
+
+    @Test
+    public void testCompression() {
+        GrpcBridgeToolOptions options = new GrpcBridgeToolOptions();
+        options.setCompressContext(true);
+        options.setContextMaxValueBytes(0);
+        options.setContextMaxBytes(0);
+        BridgeToolContext context = new BridgeToolContext(Map.of("doc", "lorem ipsum ".repeat(100)));
+        byte[] compressed = GrpcToolContextCodec.of(options, List.of()).encode(context);
+        options.setCompressContext(false);
+        byte[] plain = GrpcToolContextCodec.of(options, List.of()).encode(context);
+        assertEquals(GrpcToolContextCodec.FORMAT_DEFLATE, compressed[0]);
+        assertEquals(GrpcToolContextCodec.FORMAT_PROTOBUF, plain[0]);
+        assertTrue(compressed.length * 4 < plain.length);
+        assertEquals(context.getContext(), GrpcToolContextCodec.decode(compressed).getContext());
+    }
+
+    private static Server startServer(String name, GrpcToolContextServerInterceptor interceptor)
+            throws Exception {
+        return InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(ServerInterceptors.intercept(new ForTestServiceGrpc.ForTestServiceImplBase() {
+                    @Override
+                    public void testGet(ForTestProto.TestReq request,
+                                        StreamObserver<ForTestProto.TestRes> responseObserver) {
+                        responseObserver.onNext(ForTestProto.TestRes.newBuilder()
+                                .setMessage(JSONUtils.toCanonicalJson(
+                                        GrpcBridgeToolContext.current().getContext()))
+                                .build());
+                        responseObserver.onCompleted();
+                    }
+                }, interceptor))
+                .build()
+                .start();
+    }
+
+    private static String message(Message res) throws Exception {
+        return ForTestProto.TestRes.parseFrom(res.toByteString()).getMessage();
+    }
+
+    @Test
+    public void testPropagation() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        GrpcToolContextServerInterceptor interceptor = new GrpcToolContextServerInterceptor();
+        Server server = startServer(name, interceptor);
+        ManagedChannel channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        try {
+            var callback = GrpcBridgeToolCallback.of(ForTestProto.getDescriptor()
+                    .findServiceByName("ForTestService")
+                    .findMethodByName("testGet"), channel);
+            for (int i = 0; i < 2; i++) {
+                Message res = callback.call("{\"message\": \"hi\"}", new BridgeToolContext(Map.of(
+                        "user", "alice", BridgeToolContext.TOOL_CALL_HISTORY, history(3))));
+                assertEquals("{\"user\":\"alice\"}", message(res));
+            }
+            // Contexts of callers not in reference mode are neither hashed nor cached
+            assertEquals(new BridgeToolResultCache.Stats(0, 0, 0, 0), interceptor.contextCacheStats());
+        } finally {
+            channel.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testByReference() throws Exception {
+        GrpcBridgeToolOptions options = new GrpcBridgeToolOptions();
+        options.setContextByReference(true);
+        GrpcBridgeToolMethod<? extends Message> toolMethod = GrpcBridgeToolMethod.of(
+                ForTestProto.getDescriptor()
+                        .findServiceByName("ForTestService")
+                        .findMethodByName("testGet"), options);
+        BridgeToolContext context = new BridgeToolContext(Map.of("user", "alice"));
+        String first = InProcessServerBuilder.generateName();
+        String second = InProcessServerBuilder.generateName();
+        GrpcToolContextServerInterceptor firstInterceptor = new GrpcToolContextServerInterceptor();
+        GrpcToolContextServerInterceptor secondInterceptor = new GrpcToolContextServerInterceptor();
+        Server firstServer = startServer(first, firstInterceptor);
+        Server secondServer = startServer(second, secondInterceptor);
+        ManagedChannel firstChannel = InProcessChannelBuilder.forName(first).directExecutor().build();
+        ManagedChannel secondChannel = InProcessChannelBuilder.forName(second).directExecutor().build();
+        try {
+            var callback = GrpcBridgeToolCallback.of(toolMethod, firstChannel);
+            assertEquals("{\"user\":\"alice\"}", message(callback.call("{}", context)));
+            assertEquals("{\"user\":\"alice\"}", message(callback.call("{}", context)));
+            assertEquals(1, toolMethod.getContextCodec().stats().referencedCalls());
+            assertEquals(1, firstInterceptor.contextCacheStats().hits());
+
+            // A full context with a wrong hash is not cached
+            Metadata headers = new Metadata();
+            byte[] encoded = GrpcToolContextCodec.DEFAULT.encode(
+                    new BridgeToolContext(Map.of("user", "mallory")));
+            byte[] hash = GrpcToolContextCodec.hash(GrpcToolContextCodec.DEFAULT.encode(
+                    new BridgeToolContext(Map.of("user", "bob"))));
+            headers.put(GrpcBridgeToolContext.ENCODED_METADATA_KEY, encoded);
+            headers.put(GrpcBridgeToolContext.REFERENCE_METADATA_KEY, hash);
+            var stub = ForTestServiceGrpc.newBlockingStub(firstChannel)
+                    .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+            assertEquals("{\"user\":\"mallory\"}",
+                    stub.testGet(ForTestProto.TestReq.getDefaultInstance()).getMessage());
+            headers.remove(GrpcBridgeToolContext.ENCODED_METADATA_KEY, encoded);
+            StatusRuntimeException e = assertThrows(StatusRuntimeException.class,
+                    () -> stub.testGet(ForTestProto.TestReq.getDefaultInstance()));
+            assertEquals(Status.Code.FAILED_PRECONDITION, e.getStatus().getCode());
+
+            // The second server has never seen the context, so the call is retried in full
+            callback = GrpcBridgeToolCallback.of(toolMethod, secondChannel);
+            assertEquals("{\"user\":\"alice\"}", message(callback.call("{}", context)));
+            assertEquals(2, toolMethod.getContextCodec().stats().referencedCalls());
+            assertEquals(4, toolMethod.getContextCodec().stats().calls());
+            assertEquals("{\"user\":\"alice\"}", message(callback.call("{}", context)));
+            assertEquals(3, toolMethod.getContextCodec().stats().referencedCalls());
+            assertEquals(1, secondInterceptor.contextCacheStats().hits());
+        } finally {
+            firstChannel.shutdownNow();
+            secondChannel.shutdownNow();
+            firstServer.shutdownNow();
+            secondServer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLazyDecoding() {
+        BridgeToolContext context = new BridgeToolContext(Map.of(
+                "user", "alice", "tenant", 42, "tags", List.of(Map.of("a", 1))));
+        LazyToolContext encoded = LazyToolContext.encoded(
+                GrpcToolContextCodec.DEFAULT.encode(context));
+        LazyToolContext legacy = LazyToolContext.legacy(
+                JSONUtils.toJsonBytes(Map.of("tags", List.of(Map.of("a", 1)), "tenant", 42)));
+        assertEquals(Integer.valueOf(42), encoded.get("tenant", Integer.class));
+        assertEquals(Integer.valueOf(42), legacy.get("tenant", Integer.class));
+        assertEquals("42", legacy.get("tenant", String.class));
+        assertNull(legacy.get("user", String.class));
+        // The decoded context is memoized
+        assertSame(encoded.get(), encoded.get());
+        assertEquals(context.getContext(), encoded.get().getContext());
+        assertEquals("alice", encoded.get("user", String.class));
+
+        // Malformed contexts only fail when accessed
+        LazyToolContext malformed = LazyToolContext.encoded(new byte[]{9});
+        try {
+            malformed.get();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
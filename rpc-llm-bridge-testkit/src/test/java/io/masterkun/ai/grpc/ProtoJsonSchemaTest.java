@@ -0,0 +1,119 @@
+package io.masterkun.ai.grpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import com.google.protobuf.Descriptors;
+import io.masterkun.toolcall.proto.ForTestProto;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the {@link SchemaProfile} handling of {@link ProtoJsonSchema}.
+ */
+public class ProtoJsonSchemaTest {
+
+    private static final List<Descriptors.Descriptor> TYPES = List.of(
+            ForTestProto.TestReq.getDescriptor(),
+            ForTestProto.TestRes.getDescriptor(),
+            ForTestProto.Elem3.getDescriptor(),
+            ForTestProto.TreeReq.getDescriptor());
+
+    /**
+     * Measures the size of the testkit schemas in every profile.
+     */
+    @Test
+    public void testProfileSizeReduction() {
+        int[] bytes = new int[SchemaProfile.values().length];
+        int[] tokens = new int[SchemaProfile.values().length];
+        for (Descriptors.Descriptor type : TYPES) {
+            for (SchemaProfile profile : SchemaProfile.values()) {
+                String schema = ProtoUtils.getJsonSchema(type, profile);
+                bytes[profile.ordinal()] += schema.getBytes().length;
+                tokens[profile.ordinal()] += TokenEstimator.estimate(schema);
+            }
+        }
+        for (SchemaProfile profile : SchemaProfile.values()) {
+            System.out.printf("%-8s bytes=%5d (%3d%%) tokens=%5d (%3d%%)%n", profile,
+                    bytes[profile.ordinal()],
+                    100 * bytes[profile.ordinal()] / bytes[0],
+                    tokens[profile.ordinal()],
+                    100 * tokens[profile.ordinal()] / tokens[0]);
+        }
+        int standard = SchemaProfile.STANDARD.ordinal();
+        int compact = SchemaProfile.COMPACT.ordinal();
+        assertTrue(bytes[compact] * 2 < bytes[standard]);
+        assertTrue(tokens[compact] < tokens[standard]);
+        assertTrue(bytes[SchemaProfile.MINIMAL.ordinal()] <= bytes[compact]);
+    }
+
+    @Test
+    public void testCompactSchemaValidation() throws Exception {
+        String compact = ProtoUtils.getJsonSchema(ForTestProto.TestReq.getDescriptor(),
+                SchemaProfile.COMPACT);
+        JsonNode schemaNode = JsonLoader.fromString(compact);
+        assertFalse(schemaNode.has("$schema"));
+        assertFalse(schemaNode.get("properties").get("map1").has("properties"));
+        assertEquals("elem1", schemaNode.get("not").get("required").get(0).asText());
+        assertEquals("elem2", schemaNode.get("not").get("required").get(1).asText());
+
+        JsonSchema schema = JsonSchemaFactory.byDefault().getJsonSchema(schemaNode);
+        assertTrue(schema.validate(JsonLoader.fromString(ProtoUtils.toJson(ProtoUtilsTest.REQ)))
+                .isSuccess());
+        assertTrue(schema.validate(JsonLoader.fromString(
+                "{\"message\": \"m\", \"list\": []}")).isSuccess());
+        assertFalse(schema.validate(JsonLoader.fromString(
+                "{\"message\": \"m\", \"list\": [], \"elem1\": {\"a3\": \"\"}, " +
+                "\"elem2\": {}}")).isSuccess());
+    }
+
+    @Test
+    public void testExcludedOneofFields() throws Exception {
+        for (SchemaProfile profile : SchemaProfile.values()) {
+            String text = ProtoUtils.getJsonSchema(ForTestProto.HiddenChoice.getDescriptor(),
+                    profile);
+            // Constraints only name declared properties, and a oneof left with one is dropped
+            assertFalse(text, text.contains("internal"));
+            assertFalse(text, text.contains("secret"));
+            JsonNode schemaNode = JsonLoader.fromString(text);
+            assertTrue(schemaNode.get("properties").has("c"));
+            JsonSchema schema = JsonSchemaFactory.byDefault().getJsonSchema(schemaNode);
+            assertTrue(schema.validate(JsonLoader.fromString("{\"a\": \"x\", \"c\": \"y\"}"))
+                    .isSuccess());
+            assertFalse(schema.validate(JsonLoader.fromString("{\"a\": \"x\", \"b\": \"y\"}"))
+                    .isSuccess());
+        }
+    }
+
+    @Test
+    public void testMethodProfile() {
+        Descriptors.ServiceDescriptor service = ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService");
+        GrpcBridgeToolOptions options = new GrpcBridgeToolOptions();
+        options.setSchemaProfile(SchemaProfile.MINIMAL);
+
+        // The method option takes precedence over the registration default
+        assertEquals(SchemaProfile.COMPACT, GrpcBridgeToolMethod.of(
+                service.findMethodByName("testCompact"), options).getSchemaProfile());
+        assertEquals(SchemaProfile.MINIMAL, GrpcBridgeToolMethod.of(
+                service.findMethodByName("testGet"), options).getSchemaProfile());
+        assertEquals(SchemaProfile.STANDARD, GrpcBridgeToolMethod.of(
+                service.findMethodByName("testGet")).getSchemaProfile());
+    }
+
+    @Test
+    public void testTokenEstimator() {
+        assertEquals(0, TokenEstimator.estimate(""));
+        assertEquals(0, TokenEstimator.estimate(" \n\t"));
+        assertEquals(1, TokenEstimator.estimate("abcd"));
+        assertEquals(2, TokenEstimator.estimate("abcde"));
+        assertEquals(7, TokenEstimator.estimate("{\"ab\": 1}"));
+        assertEquals(2, TokenEstimator.estimate("字段"));
+    }
+}
@@ -0,0 +1,150 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.StringValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.util.JsonFormat;
+import io.masterkun.toolcall.proto.ForTestProto;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link ProtoJsonTranscoder}, checked against {@link JsonFormat}.
+ */
+public class ProtoJsonTranscoderTest {
+
+    private static final ProtoJsonTranscoder TRANSCODER =
+            ProtoJsonTranscoder.of(ForTestProto.TestReq.getDescriptor());
+
+    private static void assertSameAsJsonFormat(String json) throws Exception {
+        ForTestProto.TestReq.Builder expected = ForTestProto.TestReq.newBuilder();
+        JsonFormat.parser().ignoringUnknownFields().merge(json, expected);
+        ForTestProto.TestReq actual = ForTestProto.TestReq.parseFrom(TRANSCODER.transcode(json));
+        assertEquals(expected.build(), actual);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertSameAsJsonFormat(ProtoUtils.toJson(ProtoUtilsTest.REQ));
+    }
+
+    @Test
+    public void testScalarConversions() throws Exception {
+        assertSameAsJsonFormat("""
+                {
+                  "message": "hello",
+                  "elem2": {"b1": "42", "b2": "true", "b3": "aGVsbG8="},
+                  "map1": {"a": 1.0, "b": "-2"},
+                  "map2": {"7": "d29ybGQ", "-8": ""},
+                  "map3": {"x": {
+                    "c1": "9007199254740993",
+                    "c2": "NaN",
+                    "c4": -1.5e10,
+                    "c5": ["AQID"],
+                    "c6": [1, "Infinity", 0],
+                    "c7": "CCC"
+                  }, "y": {"c7": 1}},
+                  "list": ["a", "", "c"]
+                }
+                """);
+    }
+
+    @Test
+    public void testDefaultsAndNulls() throws Exception {
+        assertSameAsJsonFormat("""
+                {"message": "", "elem1": {}, "map1": null, "list": null,
+                 "map3": {"z": {"c1": 0, "c2": 0, "c7": "AAA"}}}
+                """);
+        assertSameAsJsonFormat("{}");
+    }
+
+    @Test
+    public void testUnknownFieldsAndEnumValues() throws Exception {
+        assertSameAsJsonFormat("""
+                {
+                  "unknown": {"nested": [1, 2, {"deep": true}]},
+                  "message": "m",
+                  "elems": [{"a1": 1, "other": "x"}, {"a2": true}],
+                  "map3": {"k": {"c7": "DDD", "c6": [2.5]}}
+                }
+                """);
+    }
+
+    @Test
+    public void testInvalidInput() {
+        for (String json : new String[]{
+                "[]",
+                "{\"message\": ",
+                "{\"elem1\": {\"a1\": 2147483648}}",
+                "{\"elem1\": {\"a1\": 1.5}}",
+                "{\"elem1\": {\"a2\": \"yes\"}}",
+                "{\"list\": \"not a list\"}",
+                "{\"list\": [null]}",
+                "{\"elem1\": [1]}",
+                "{\"message\": \"a\", \"message\": \"b\"}",
+                "{\"message\": \"a\", \"message\": null}",
+                "{\"elem1\": {\"a1\": 1}, \"elem2\": {\"b1\": 2}}"}) {
+            try {
+                TRANSCODER.transcode(json);
+                fail("Expected failure for " + json);
+            } catch (RuntimeException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testRejectedLikeJsonFormat() {
+        // A field given by both of its names, and several fields of a oneof
+        assertRejected(DescriptorProtos.FieldDescriptorProto.newBuilder(),
+                "{\"type_name\": \"a\", \"typeName\": \"b\"}");
+        assertRejected(ForTestProto.TestReq.newBuilder(),
+                "{\"elem1\": {\"a1\": 1}, \"elem2\": {\"b1\": 2}}");
+    }
+
+    @Test
+    public void testTrailingContent() {
+        // Rejected like malformed input, while JsonFormat ignores what follows the first value
+        for (String json : List.of("{\"message\": \"a\"} {\"message\": \"b\"}",
+                "{\"message\": \"a\"}garbage", "{\"message\": \"a\"}]")) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> TRANSCODER.transcode(json));
+            assertTrue(json, e.getCause() instanceof IOException);
+        }
+        assertEquals(ForTestProto.TestReq.newBuilder().setMessage("a").build().toByteString(),
+                TRANSCODER.transcode(" {\"message\": \"a\"}\n"));
+    }
+
+    private static void assertRejected(Message.Builder builder, String json) {
+        try {
+            JsonFormat.parser().ignoringUnknownFields().merge(json, builder);
+            fail("Expected JsonFormat failure for " + json);
+        } catch (InvalidProtocolBufferException e) {
+            // expected
+        }
+        try {
+            ProtoJsonTranscoder.of(builder.getDescriptorForType()).transcode(json);
+            fail("Expected failure for " + json);
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWellKnownRootType() throws Exception {
+        assertEquals(StringValue.of("hello").toByteString(),
+                ProtoJsonTranscoder.of(StringValue.getDescriptor()).transcode("\"hello\""));
+        Struct.Builder expected = Struct.newBuilder();
+        JsonFormat.parser().merge("{\"a\": 1, \"b\": [true]}", expected);
+        assertEquals(expected.build(), Struct.parseFrom(ProtoJsonTranscoder
+                .of(Struct.getDescriptor()).transcode("{\"a\": 1, \"b\": [true]}")));
+    }
+}
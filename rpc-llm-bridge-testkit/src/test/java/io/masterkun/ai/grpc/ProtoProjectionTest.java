@@ -0,0 +1,118 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import io.masterkun.toolcall.proto.ForTestProto;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ProtoProjection}.
+ */
+public class ProtoProjectionTest {
+
+    private static GrpcBridgeToolMethod<? extends Message> method(String name) {
+        return GrpcBridgeToolMethod.of(ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName(name), new GrpcBridgeToolOptions());
+    }
+
+    private static ForTestProto.TestReq req(boolean audit) {
+        ForTestProto.TestReq.Builder builder = ForTestProto.TestReq.newBuilder()
+                .setMessage("projected")
+                .putMap1("k", 1);
+        for (int i = 0; i < 3; i++) {
+            ForTestProto.Elem1.Builder elem = ForTestProto.Elem1.newBuilder()
+                    .setA1(i)
+                    .setA3(ByteString.copyFromUtf8("element " + i));
+            if (audit) {
+                elem.setAudit("audit " + i);
+            }
+            builder.addElems(elem);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testStrip() throws Exception {
+        assertNull(ProtoProjection.of(ForTestProto.SingleField.getDescriptor()));
+        // Through the oneof field elem1
+        assertNotNull(ProtoProjection.of(ForTestProto.TestRes.getDescriptor()));
+
+        ProtoProjection projection = ProtoProjection.of(ForTestProto.TestReq.getDescriptor());
+        assertNotNull(projection);
+        assertEquals(req(false).toByteString(), projection.strip(req(true).toByteString().newInput()));
+        assertEquals(req(false), projection.marshaller(
+                        io.grpc.protobuf.ProtoUtils.marshaller(ForTestProto.TestReq.getDefaultInstance()))
+                .parse(req(true).toByteString().newInput()));
+
+        // The response marshaller of the bridge skips excluded fields
+        Message parsed = method("testGet").getRawMethod().getResponseMarshaller()
+                .parse(ForTestProto.TestRes.newBuilder()
+                        .setElem1(ForTestProto.Elem1.newBuilder().setA1(1).setAudit("audit"))
+                        .build()
+                        .toByteString()
+                        .newInput());
+        assertEquals(ForTestProto.TestRes.newBuilder()
+                .setElem1(ForTestProto.Elem1.newBuilder().setA1(1))
+                .build()
+                .toByteString(), parsed.toByteString());
+    }
+
+    @Test
+    public void testHidden() {
+        ForTestProto.Elem1 elem = ForTestProto.Elem1.newBuilder().setA1(1).setAudit("audit").build();
+        // A single visible scalar is written as the bare value
+        assertEquals("1", ProtoUtils.formatString(elem));
+        assertEquals("字段a1|字段a3\n|element 0\n1|element 1\n2|element 2",
+                new GrpcBridgeToolResultConverter<ForTestProto.Elem1>(ResultFormat.TABLE)
+                        .convertAll(req(true).getElemsList()));
+        assertFalse(ProtoUtils.getJsonSchema(ForTestProto.Elem1.getDescriptor()).contains("audit"));
+    }
+
+    @Test
+    public void testSelect() throws Exception {
+        ForTestProto.TestReq req = req(false);
+        ForTestProto.TestReq.Builder expected = ForTestProto.TestReq.newBuilder()
+                .setMessage("projected");
+        for (int i = 0; i < 3; i++) {
+            expected.addElems(ForTestProto.Elem1.newBuilder().setA1(i));
+        }
+        assertEquals(expected.build(), ProtoProjection.select(req, List.of("message", "elems.a1")));
+        // JSON names, paths into map fields select the whole map
+        assertEquals(ForTestProto.TestReq.newBuilder().putMap1("k", 1).build(),
+                ProtoProjection.select(req, List.of("map1.k", "unknown")));
+        // No known field at all
+        assertSame(req, ProtoProjection.select(req, List.of("unknown")));
+
+        DynamicMessage dynamic = DynamicMessage.parseFrom(ForTestProto.TestReq.getDescriptor(),
+                req.toByteString());
+        assertEquals(expected.build().toByteString(),
+                ProtoProjection.select(dynamic, List.of("message", "elems.a1")).toByteString());
+    }
+
+    @Test
+    public void testResponseFieldsArgument() {
+        assertFalse(method("testGet").hasResponseFieldsArgument());
+        assertFalse(method("testGet").getInputSchema().contains("response_fields"));
+        GrpcBridgeToolMethod<? extends Message> projected = method("testProjected");
+        assertTrue(projected.hasResponseFieldsArgument());
+        String schema = projected.getInputSchema();
+        assertTrue(schema, schema.contains("\"response_fields\""));
+        assertTrue(schema, schema.contains("Top-level fields: message, elem1, elem2, map1, map2, " +
+                                           "map3, list, elems"));
+        // The argument is ignored when the request is encoded
+        assertEquals(projected.getTranscoder().transcode("{\"message\":\"a\"}"),
+                projected.getTranscoder().transcode(
+                        "{\"message\":\"a\",\"response_fields\":[\"message\"]}"));
+    }
+}
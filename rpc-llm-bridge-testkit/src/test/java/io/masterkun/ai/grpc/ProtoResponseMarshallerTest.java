@@ -0,0 +1,110 @@
+package io.masterkun.ai.grpc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.StatusRuntimeException;
+import io.masterkun.toolcall.proto.ForTestProto;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Unit tests for {@link ProtoResponseMarshaller}.
+ */
+public class ProtoResponseMarshallerTest {
+
+    private static ForTestProto.TestReq req() {
+        ForTestProto.TestReq.Builder builder = ForTestProto.TestReq.newBuilder()
+                .setMessage("response")
+                .addList("text");
+        for (int i = 0; i < 3; i++) {
+            builder.addElems(ForTestProto.Elem1.newBuilder()
+                    .setA1(i)
+                    .setA3(ByteString.copyFromUtf8("element " + i)));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testKnownLength() {
+        // Streams of the transport know their length and are read into one array
+        ForTestProto.TestReq req = req();
+        byte[] bytes = req.toByteArray();
+        var marshaller = ProtoResponseMarshaller.of(
+                io.grpc.protobuf.ProtoUtils.marshaller(ForTestProto.TestReq.getDefaultInstance()), null);
+        assertEquals(req, marshaller.parse(new KnownLengthStream(bytes)));
+        assertEquals(req, marshaller.parse(new ByteArrayInputStream(bytes)));
+
+        // A stream shorter or longer than announced is still read as a whole
+        assertEquals(req, marshaller.parse(new KnownLengthStream(bytes) {
+            @Override
+            public synchronized int available() {
+                return bytes.length / 2;
+            }
+        }));
+        assertThrows(StatusRuntimeException.class, () -> marshaller.parse(new KnownLengthStream(
+                Arrays.copyOf(bytes, bytes.length - 1))));
+    }
+
+    @Test
+    public void testDynamicMessage() throws Exception {
+        // Like the responses of descriptor-built and auto-discovered methods
+        byte[] bytes = req().toByteArray();
+        Message prototype = DynamicMessage.getDefaultInstance(ForTestProto.TestReq.getDescriptor());
+        MethodDescriptor.Marshaller<Message> marshaller = ProtoResponseMarshaller.of(
+                io.grpc.protobuf.ProtoUtils.marshaller(prototype), null);
+        Message parsed = marshaller.parse(new KnownLengthStream(bytes));
+        assertEquals(DynamicMessage.parseFrom(ForTestProto.TestReq.getDescriptor(), bytes), parsed);
+        assertEquals(req(), ForTestProto.TestReq.parseFrom(parsed.toByteString()));
+    }
+
+    @Test
+    public void testAliasing() {
+        ForTestProto.TestReq req = req();
+        MethodDescriptor.Marshaller<ForTestProto.TestReq> defaultMarshaller =
+                io.grpc.protobuf.ProtoUtils.marshaller(ForTestProto.TestReq.getDefaultInstance());
+        ByteString aliased = ProtoResponseMarshaller.of(defaultMarshaller, null, true)
+                .parse(new KnownLengthStream(req.toByteArray())).getElems(0).getA3();
+        ByteString copied = ProtoResponseMarshaller.of(defaultMarshaller, null, false)
+                .parse(new KnownLengthStream(req.toByteArray())).getElems(0).getA3();
+        assertEquals(req.getElems(0).getA3(), aliased);
+        assertEquals(req.getElems(0).getA3(), copied);
+        // A slice of the response array, or a copy of its own size
+        assertEquals("BoundedByteString", aliased.getClass().getSimpleName());
+        assertEquals("LiteralByteString", copied.getClass().getSimpleName());
+
+        // Results that outlive the call are not aliased
+        var pages = new GrpcBridgeToolResultPages(16, 1024 * 1024, Duration.ofMinutes(1));
+        byte[] res = ForTestProto.TestRes.newBuilder().setElem1(req.getElems(0)).build()
+                .toByteArray();
+        for (String name : List.of("testGet", "testCached", "testPaged", "testProjected")) {
+            var method = GrpcBridgeToolMethod.of(ForTestProto.getDescriptor()
+                    .findServiceByName("ForTestService")
+                    .findMethodByName(name), new GrpcBridgeToolOptions(), pages);
+            boolean list = method.getOutputType().findFieldByName("elems") != null;
+            Message parsed = method.getRawMethod().parseResponse(
+                    new KnownLengthStream(list ? req.toByteArray() : res));
+            Message elem = (Message) (list ?
+                    parsed.getRepeatedField(parsed.getDescriptorForType().findFieldByName("elems"), 0) :
+                    parsed.getField(parsed.getDescriptorForType().findFieldByName("elem1")));
+            Object a3 = elem.getField(elem.getDescriptorForType().findFieldByName("a3"));
+            assertEquals(name, name.equals("testGet") ? "BoundedByteString" : "LiteralByteString",
+                    a3.getClass().getSimpleName());
+        }
+    }
+
+    private static class KnownLengthStream extends ByteArrayInputStream implements KnownLength {
+        KnownLengthStream(byte[] bytes) {
+            super(bytes);
+        }
+    }
+}
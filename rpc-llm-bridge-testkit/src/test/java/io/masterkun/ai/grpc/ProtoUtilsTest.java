@@ -11,6 +11,7 @@ import com.google.protobuf.DynamicMessage;
 import io.masterkun.toolcall.proto.ForTestProto;
 import org.junit.Test;
 
+import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.List;
 
@@ -116,6 +117,115 @@ public class ProtoUtilsTest {
                 .build()));
     }
 
+    @Test
+    public void testFormatOutput() throws Exception {
+        assertEquals("""
+
+                1. 请求内容: 'Test message'
+                2. 请求元素1:\s
+                  2.1. 字段a1: 123
+                  2.2. 字段a2: true
+                  2.3. 字段a3: 'test bytes'
+                3. MAP1: key1: 100, key2: 200
+                4. MAP2: 100: 'map2 value1', 200: 'map2 value2'
+                5. MAP3:\s
+                  5.1. key:\s
+                    5.1.1. c2: 123.567
+                    5.1.2. c5: ['c5 value1', 'c5 value2']
+                    5.1.3. c6: [789.5, 987.5]
+                    5.1.4. c7: BBB
+                6. LIST: ['item1', 'item2']
+                7. ELEMS:\s
+                  7.1.\s
+                    7.1.1. 字段a1: 456
+                    7.1.2. 字段a3: 'elem bytes'""", ProtoUtils.formatString(REQ));
+        assertEquals("""
+
+                1. 请求内容: 'Test message'
+                2. 请求元素1:\s
+                  2.1. 字段a1: 123
+                  2.2. 字段a2: true
+                  2.3. 字段a3: 'test bytes'
+                3. MAP1:\s
+                  3.1.\s
+                    3.1.1. key: 'key1'
+                    3.1.2. value: 100,\s
+                  3.2.\s
+                    3.2.1. key: 'key2'
+                    3.2.2. value: 200
+                4. MAP2:\s
+                  4.1.\s
+                    4.1.1. key: 100
+                    4.1.2. value: 'map2 value1',\s
+                  4.2.\s
+                    4.2.1. key: 200
+                    4.2.2. value: 'map2 value2'
+                5. MAP3:\s
+                  5.1.\s
+                    5.1.1. key: 'key'
+                    5.1.2. value:\s
+                      5.1.2.1. c2: 123.567
+                      5.1.2.2. c5: ['c5 value1', 'c5 value2']
+                      5.1.2.3. c6: [789.5, 987.5]
+                      5.1.2.4. c7: BBB
+                6. LIST: ['item1', 'item2']
+                7. ELEMS:\s
+                  7.1.\s
+                    7.1.1. 字段a1: 456
+                    7.1.2. 字段a3: 'elem bytes'""", ProtoUtils.formatString(DynamicMessage.parseFrom(
+                ForTestProto.TestReq.getDescriptor(), REQ.toByteString())));
+        assertEquals("""
+
+                1. 根节点:\s
+                  1.1. name: 'root'
+                  1.2. children:\s
+                    1.2.1.\s
+                      1.2.1.1. name: 'a'
+                      1.2.1.2. children:\s
+                        1.2.1.2.1.\s
+                          1.2.1.2.1.1. name: 'a1',\s
+                    1.2.2.\s
+                      1.2.2.1. name: 'b'
+                2. next:\s
+                  2.1. 根节点:\s
+                    2.1.1. name: 'next'""", ProtoUtils.formatString(ForTestProto.TreeReq.newBuilder()
+                .setRoot(ForTestProto.TreeNode.newBuilder()
+                        .setName("root")
+                        .addChildren(ForTestProto.TreeNode.newBuilder()
+                                .setName("a")
+                                .addChildren(ForTestProto.TreeNode.newBuilder().setName("a1")))
+                        .addChildren(ForTestProto.TreeNode.newBuilder().setName("b")))
+                .setNext(ForTestProto.TreeReq.newBuilder()
+                        .setRoot(ForTestProto.TreeNode.newBuilder().setName("next")))
+                .build()));
+        assertEquals("\n字段a1: 1\n字段a2: true\n字段a3: 'test'",
+                ProtoUtils.formatString(ForTestProto.Elem1.newBuilder()
+                        .setA1(1)
+                        .setA2(true)
+                        .setA3(ByteString.copyFromUtf8("test"))));
+        // An empty nested message is left out
+        assertEquals("\n1. 返回结果: 'm'", ProtoUtils.formatString(ForTestProto.TestRes.newBuilder()
+                .setMessage("m")
+                .setElem1(ForTestProto.Elem1.getDefaultInstance())
+                .build()));
+        assertEquals("\n1. LIST: ['x', 'y']", ProtoUtils.formatString(ForTestProto.TestReq.newBuilder()
+                .addList("x")
+                .addList("y")
+                .build()));
+        assertEquals("TEST MESSAGE", ProtoUtils.formatString(ForTestProto.SingleField.newBuilder()
+                .setField("TEST MESSAGE")
+                .build()));
+        assertEquals("CCC", ProtoUtils.formatString(ForTestProto.Elem3.newBuilder()
+                .setC7(ForTestProto.TestEnum.CCC)
+                .build()));
+        assertEquals("", ProtoUtils.formatString(ForTestProto.TestReq.getDefaultInstance()));
+
+        // Any appendable gets the same output
+        StringWriter writer = new StringWriter();
+        new ProtoFormatter().formatTo(REQ, writer);
+        assertEquals(ProtoUtils.formatString(REQ), writer.toString());
+    }
+
     @Test
     public void testToJsonConformsToSchema() throws Exception {
         ForTestProto.TestReq testReq = REQ;
@@ -588,17 +698,25 @@ public class ProtoUtilsTest {
         ObjectMapper mapper = new ObjectMapper();
         JsonNode schemaNode = mapper.readTree(jsonSchema);
 
+        // Elem1 is used twice, so it is emitted once under definitions
+        JsonNode elem1Def = schemaNode.get("definitions").get("Elem1");
+        assertEquals("object", elem1Def.get("type").asText());
+        assertTrue(elem1Def.has("properties"));
+
         // Verify elem1 field in schema (nested message)
         JsonNode propertiesNode = schemaNode.get("properties");
         assertTrue(propertiesNode.has("elem1"));
-        assertEquals("object", propertiesNode.get("elem1").get("type").asText());
-        assertTrue(propertiesNode.get("elem1").has("properties"));
+        assertEquals("#/definitions/Elem1", propertiesNode.get("elem1").get("$ref").asText());
 
         // Verify elems field in schema (repeated nested message)
         assertTrue(propertiesNode.has("elems"));
         assertEquals("array", propertiesNode.get("elems").get("type").asText());
-        assertEquals("object", propertiesNode.get("elems").get("items").get("type").asText());
-        assertTrue(propertiesNode.get("elems").get("items").has("properties"));
+        assertEquals("#/definitions/Elem1",
+                propertiesNode.get("elems").get("items").get("$ref").asText());
+
+        // Elem3 is only used once and stays inlined
+        assertEquals("object", propertiesNode.get("map3").get("additionalProperties")
+                .get("type").asText());
 
         // Validate JSON against schema
         JsonNode jsonNode = JsonLoader.fromString(json);
@@ -629,4 +747,33 @@ public class ProtoUtilsTest {
         assertTrue(parsedMessage.getElems(1).getA2());
         assertEquals("elem1-3 bytes", parsedMessage.getElems(1).getA3().toStringUtf8());
     }
+
+    /**
+     * Test that recursive message types are emitted with references instead of being expanded.
+     */
+    @Test
+    public void testRecursiveMessageSchema() throws Exception {
+        String jsonSchema = ProtoUtils.getJsonSchema(ForTestProto.TreeReq.getDescriptor());
+        assertTrue(jsonSchema == ProtoUtils.getJsonSchema(ForTestProto.TreeReq.getDescriptor()));
+
+        JsonNode schemaNode = new ObjectMapper().readTree(jsonSchema);
+        JsonNode propertiesNode = schemaNode.get("properties");
+        assertEquals("#", propertiesNode.get("next").get("$ref").asText());
+        assertEquals("#/definitions/TreeNode", propertiesNode.get("root").get("$ref").asText());
+        assertEquals("根节点", propertiesNode.get("root").get("description").asText());
+        assertEquals("#/definitions/TreeNode", schemaNode.get("definitions").get("TreeNode")
+                .get("properties").get("children").get("items").get("$ref").asText());
+
+        ForTestProto.TreeReq req = ForTestProto.TreeReq.newBuilder()
+                .setRoot(ForTestProto.TreeNode.newBuilder()
+                        .setName("a")
+                        .addChildren(ForTestProto.TreeNode.newBuilder().setName("b")))
+                .setNext(ForTestProto.TreeReq.newBuilder()
+                        .setRoot(ForTestProto.TreeNode.newBuilder().setName("c")))
+                .build();
+        JsonSchema schema = JsonSchemaFactory.byDefault()
+                .getJsonSchema(JsonLoader.fromString(jsonSchema));
+        ProcessingReport report = schema.validate(JsonLoader.fromString(ProtoUtils.toJson(req)));
+        assertTrue("Recursive JSON should conform to schema", report.isSuccess());
+    }
 }
@@ -0,0 +1,244 @@
+package io.masterkun.ai.grpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import io.masterkun.toolcall.proto.ForTestProto;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the {@link ResultFormat}s, and a measurement of their sizes.
+ */
+public class ResultFormatTest {
+
+    private static GrpcBridgeToolMethod<? extends Message> method(String name,
+                                                                  GrpcBridgeToolOptions options) {
+        return GrpcBridgeToolMethod.of(ForTestProto.getDescriptor()
+                .findServiceByName("ForTestService")
+                .findMethodByName(name), options);
+    }
+
+    private static String convert(ResultFormat format, Message message) {
+        return new GrpcBridgeToolResultConverter<Message>(format).convert(message);
+    }
+
+    private static ForTestProto.TestReq list(int size) {
+        ForTestProto.TestReq.Builder builder = ForTestProto.TestReq.newBuilder()
+                .setMessage("list");
+        for (int i = 0; i < size; i++) {
+            builder.addElems(ForTestProto.Elem1.newBuilder()
+                    .setA1(i)
+                    .setA2(i % 2 == 0)
+                    .setA3(ByteString.copyFromUtf8("element " + i)));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testResolveFormat() {
+        GrpcBridgeToolOptions options = new GrpcBridgeToolOptions();
+        assertEquals(ResultFormat.OUTLINE, method("testGet", options).getResultConverter().getFormat());
+        assertEquals(ResultFormat.TABLE, method("testTable", options).getResultConverter().getFormat());
+        options.setResultFormat(ResultFormat.JSON);
+        assertEquals(ResultFormat.JSON, method("testGet", options).getResultConverter().getFormat());
+        // Method options take precedence
+        assertEquals(ResultFormat.TABLE, method("testTable", options).getResultConverter().getFormat());
+    }
+
+    @Test
+    public void testTable() throws Exception {
+        ForTestProto.TestReq req = ForTestProto.TestReq.newBuilder()
+                .setMessage("a|b")
+                .addElems(ForTestProto.Elem1.newBuilder().setA1(1).setA3(ByteString.copyFromUtf8("x")))
+                .addElems(ForTestProto.Elem1.newBuilder().setA1(2).setA3(ByteString.copyFromUtf8("y\nz")))
+                .addElems(ForTestProto.Elem1.newBuilder().setA1(3).setA3(ByteString.copyFromUtf8("y\\nz\\|")))
+                .putMap1("k", 1)
+                .putMap3("e", ForTestProto.Elem3.newBuilder().setC1(3).build())
+                .addList("l1")
+                .addList("l2")
+                .build();
+        String expected = """
+                请求内容: a\\|b
+                MAP1: {k:1}
+                MAP3: {e:{"c1":"3"}}
+                LIST: [l1,l2]
+                ELEMS:
+                字段a1|字段a3
+                1|x
+                2|y\\nz
+                3|y\\\\nz\\\\\\|""";
+        assertEquals(expected, convert(ResultFormat.TABLE, req));
+        assertEquals(expected, convert(ResultFormat.TABLE, DynamicMessage.parseFrom(
+                ForTestProto.TestReq.getDescriptor(), req.toByteString())));
+        assertEquals("{\"message\":\"a|b\",\"list\":[\"l1\",\"l2\"]}",
+                convert(ResultFormat.JSON, ForTestProto.TestReq.newBuilder()
+                        .setMessage("a|b")
+                        .addList("l1")
+                        .addList("l2")
+                        .build()));
+    }
+
+    @Test
+    public void testStreamTable() {
+        var converter = new GrpcBridgeToolResultConverter<ForTestProto.Elem1>(ResultFormat.TABLE);
+        assertEquals("字段a1|字段a2\n1|\n2|true", converter.convertAll(List.of(
+                ForTestProto.Elem1.newBuilder().setA1(1).build(),
+                ForTestProto.Elem1.newBuilder().setA1(2).setA2(true).build())));
+        assertEquals("", converter.convertAll(List.of()));
+        assertEquals("[{\"a1\":1},{\"a1\":2}]",
+                new GrpcBridgeToolResultConverter<ForTestProto.Elem1>(ResultFormat.JSON)
+                        .convertAll(List.of(ForTestProto.Elem1.newBuilder().setA1(1).build(),
+                                ForTestProto.Elem1.newBuilder().setA1(2).build())));
+    }
+
+    @Test
+    public void testBudget() {
+        ForTestProto.TestReq req = list(1000);
+        for (ResultFormat format : ResultFormat.values()) {
+            String text = new GrpcBridgeToolResultConverter<ForTestProto.TestReq>(format, 2000)
+                    .convert(req);
+            assertTrue(text.getBytes(StandardCharsets.UTF_8).length <= 2000);
+            if (format == ResultFormat.JSON) {
+                continue;
+            }
+            // The text ends after the last complete element
+            Matcher matcher = Pattern.compile("element (\\d+)'?\n…and ([\\d,]+) more items$")
+                    .matcher(text);
+            assertTrue(text, matcher.find());
+            int written = Integer.parseInt(matcher.group(1)) + 1;
+            assertEquals(1000 - written, Integer.parseInt(matcher.group(2).replace(",", "")));
+        }
+        // A result within the budget is complete
+        assertEquals(convert(ResultFormat.TABLE, list(10)),
+                new GrpcBridgeToolResultConverter<ForTestProto.TestReq>(ResultFormat.TABLE, 2000)
+                        .convert(list(10)));
+
+        // Stream items are counted as a whole
+        List<ForTestProto.Elem1> items = list(1000).getElemsList();
+        String text = new GrpcBridgeToolResultConverter<ForTestProto.Elem1>(ResultFormat.OUTLINE, 200)
+                .convertAll(items);
+        assertTrue(text, text.endsWith("'element 3'\n…and 996 more items"));
+    }
+
+    @Test
+    public void testJsonBudget() throws Exception {
+        // Valid JSON with the most elements that fit, followed by the number of omitted ones
+        String text = new GrpcBridgeToolResultConverter<ForTestProto.TestReq>(ResultFormat.JSON,
+                2000).convert(list(1000));
+        assertTrue(text.getBytes(StandardCharsets.UTF_8).length <= 2000);
+        Matcher matcher = Pattern.compile("\n…and ([\\d,]+) more items$").matcher(text);
+        assertTrue(text, matcher.find());
+        ForTestProto.TestReq.Builder builder = ForTestProto.TestReq.newBuilder();
+        JsonFormat.parser().merge(text.substring(0, matcher.start()), builder);
+        assertEquals("list", builder.getMessage());
+        int written = builder.getElemsCount();
+        assertTrue(written > 0);
+        assertEquals(list(written), builder.build());
+        assertEquals(1000 - written, Integer.parseInt(matcher.group(1).replace(",", "")));
+
+        // Stream items are closed after the last complete element
+        List<ForTestProto.Elem1> items = list(1000).getElemsList();
+        text = new GrpcBridgeToolResultConverter<ForTestProto.Elem1>(ResultFormat.JSON, 200)
+                .convertAll(items);
+        matcher = Pattern.compile("\n…and ([\\d,]+) more items$").matcher(text);
+        assertTrue(text, matcher.find());
+        JsonNode array = JSONUtils.fromJson(text.substring(0, matcher.start()), JsonNode.class);
+        assertTrue(array.size() > 0);
+        assertEquals(1000 - array.size(), Integer.parseInt(matcher.group(1).replace(",", "")));
+        for (int i = 0; i < array.size(); i++) {
+            assertEquals(i, array.get(i).path("a1").asInt());
+        }
+        assertEquals("[]\n…and 1,000 more items",
+                new GrpcBridgeToolResultConverter<ForTestProto.Elem1>(ResultFormat.JSON, 40)
+                        .convertAll(items));
+    }
+
+    @Test
+    public void testPaging() {
+        GrpcBridgeToolResultPages pages = new GrpcBridgeToolResultPages(16, 1024 * 1024,
+                Duration.ofMinutes(1));
+        @SuppressWarnings("unchecked")
+        var toolMethod = (GrpcBridgeToolMethod<Message>) GrpcBridgeToolMethod.of(
+                ForTestProto.getDescriptor()
+                        .findServiceByName("ForTestService")
+                        .findMethodByName("testPaged"), new GrpcBridgeToolOptions(), pages);
+        assertTrue(toolMethod.isPaged());
+        assertFalse(method("testTable", new GrpcBridgeToolOptions()).isPaged());
+        GrpcBridgeToolPageCallback pageTool = GrpcBridgeToolPageCallback.of(toolMethod);
+        assertEquals(toolMethod.getName() + ".nextPage", pageTool.getToolDefinition().name());
+
+        // A result within a page is not buffered
+        assertEquals(convert(ResultFormat.TABLE, list(3)),
+                toolMethod.getResultConverter().convert(list(3)));
+        assertEquals(0, pages.size());
+
+        Pattern cursor = Pattern.compile("with cursor \"([^\"]+)\" for the next page$");
+        String first = toolMethod.getResultConverter().convert(list(8));
+        Matcher matcher = cursor.matcher(first);
+        assertTrue(first, matcher.find());
+        assertTrue(first, first.startsWith("请求内容: list\nELEMS:\n"));
+        assertTrue(first, first.contains("\n2|true|element 2\n…items 1-3 of 8, call "));
+        assertEquals(1, pages.size());
+
+        // Further pages only contain the paged field
+        String second = pageTool.call("{\"cursor\":\"" + matcher.group(1) + "\"}", null);
+        assertEquals("""
+                ELEMS:
+                字段a1|字段a2|字段a3
+                3||element 3
+                4|true|element 4
+                5||element 5""", second.substring(0, second.indexOf("\n…")));
+        matcher = cursor.matcher(second);
+        assertTrue(second, matcher.find());
+        String next = matcher.group(1);
+        String last = pageTool.call("{\"cursor\":\"" + next + "\"}", null);
+        assertTrue(last, last.endsWith("7||element 7\n…items 7-8 of 8"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> pageTool.call("{\"cursor\":\"unknown:3\"}", null));
+        assertThrows(IllegalArgumentException.class,
+                () -> pageTool.call("{\"cursor\":\"" + next + "x\"}", null));
+        assertThrows(IllegalArgumentException.class, () -> pageTool.call("{}", null));
+    }
+
+    /**
+     * Compares the bytes and estimated tokens of every format for results of growing size, counted
+     * like the schema sizes, see {@link TokenEstimator}.
+     */
+    @Test
+    public void testMeasure() {
+        System.out.printf("%-8s %-8s %10s %10s%n", "size", "format", "bytes", "tokens");
+        for (int size : new int[]{1, 10, 100}) {
+            ForTestProto.TestReq req = list(size);
+            int outline = 0;
+            int table = 0;
+            for (ResultFormat format : ResultFormat.values()) {
+                String text = convert(format, req);
+                int tokens = TokenEstimator.estimate(text);
+                System.out.printf("%-8d %-8s %10d %10d%n", size, format,
+                        text.getBytes(StandardCharsets.UTF_8).length, tokens);
+                if (format == ResultFormat.OUTLINE) {
+                    outline = tokens;
+                } else if (format == ResultFormat.TABLE) {
+                    table = tokens;
+                }
+            }
+            if (size >= 10) {
+                assertTrue(table * 2 <= outline);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.masterkun.ai.grpc.registry;
 
 import com.google.protobuf.Descriptors;
+import io.masterkun.ai.proto.ToolProto;
 import io.masterkun.toolcall.proto.TestDiscoveryProto;
 import io.masterkun.toolcall.proto.TestDiscovery2Proto;
 import org.junit.Before;
@@ -9,10 +10,14 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -246,4 +251,42 @@ public class GrpcBridgeToolGroupSetTest {
                 .anyMatch(tool -> tool.methodDescriptor().getName().equals("test3"));
         assertFalse("TestDiscovery2Service3 should not include test3", hasTest3);
     }
+
+    /**
+     * Test that every change publishes a new snapshot with a higher generation, while the groups
+     * already read stay unchanged, and that a failed reload keeps the previous groups.
+     */
+    @Test
+    public void testSnapshot() throws IOException {
+        assertEquals(0, toolGroupSet.generation());
+        assertTrue(toolGroupSet.getGroups().isEmpty());
+
+        toolGroupSet.reloadByAutoDiscovery(services, fileDescriptors);
+        assertEquals(1, toolGroupSet.generation());
+        List<GrpcBridgeToolGroup> groups = toolGroupSet.getGroups();
+        assertSame(groups, toolGroupSet.getGroups());
+        assertThrows(UnsupportedOperationException.class, () -> groups.remove(0));
+
+        ToolProto.BridgeToolGroupSet saved = toolGroupSet.save();
+        toolGroupSet.reload(saved);
+        assertEquals(2, toolGroupSet.generation());
+        assertEquals(groups.stream().map(GrpcBridgeToolGroup::name).toList(),
+                toolGroupSet.getGroups().stream().map(GrpcBridgeToolGroup::name).toList());
+
+        toolGroupSet.removeGroup("io.masterkun.test.TestDiscoveryService");
+        assertEquals(3, toolGroupSet.generation());
+        assertFalse(toolGroupSet.containsGroup("io.masterkun.test.TestDiscoveryService"));
+        assertTrue(groups.stream()
+                .anyMatch(g -> g.name().equals("io.masterkun.test.TestDiscoveryService")));
+
+        List<GrpcBridgeToolGroup> before = toolGroupSet.getGroups();
+        ToolProto.BridgeToolGroupSet broken = saved.toBuilder()
+                .addGroups(ToolProto.BridgeToolGroup.newBuilder()
+                        .setName("broken")
+                        .addTools(ToolProto.BridgeTool.newBuilder().setFilename("missing.proto")))
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> toolGroupSet.reload(broken));
+        assertEquals(3, toolGroupSet.generation());
+        assertSame(before, toolGroupSet.getGroups());
+    }
 }
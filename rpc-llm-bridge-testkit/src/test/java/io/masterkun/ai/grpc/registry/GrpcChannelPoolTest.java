@@ -0,0 +1,131 @@
+package io.masterkun.ai.grpc.registry;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.toolcall.proto.ForTestProto;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GrpcChannelPool}. The test service holds all calls until
+ * {@link #reply()} is invoked.
+ */
+public class GrpcChannelPoolTest {
+
+    private final List<StreamObserver<ForTestProto.TestRes>> pending = new ArrayList<>();
+    private final List<ManagedChannel> created = new ArrayList<>();
+    private Server server;
+    private String name;
+
+    @Before
+    public void setUp() throws Exception {
+        name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new ForTestServiceGrpc.ForTestServiceImplBase() {
+                    @Override
+                    public void testCoalesced(ForTestProto.TestReq request,
+                                              StreamObserver<ForTestProto.TestRes> responseObserver) {
+                        synchronized (pending) {
+                            pending.add(responseObserver);
+                        }
+                    }
+                })
+                .build()
+                .start();
+    }
+
+    @After
+    public void tearDown() {
+        created.forEach(ManagedChannel::shutdownNow);
+        server.shutdownNow();
+    }
+
+    private GrpcChannelPool newPool(int initialSize, int maxSize, int maxStreamsPerChannel) {
+        return new GrpcChannelPool(() -> {
+            ManagedChannel channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+            created.add(channel);
+            return channel;
+        }, initialSize, maxSize, maxStreamsPerChannel);
+    }
+
+    private void reply() {
+        synchronized (pending) {
+            for (StreamObserver<ForTestProto.TestRes> observer : pending) {
+                observer.onNext(ForTestProto.TestRes.getDefaultInstance());
+                observer.onCompleted();
+            }
+            pending.clear();
+        }
+    }
+
+    @Test
+    public void testGrowOnSaturation() throws Exception {
+        GrpcChannelPool pool = newPool(1, 3, 2);
+        var stub = ForTestServiceGrpc.newFutureStub(pool);
+        List<ListenableFuture<ForTestProto.TestRes>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(stub.testCoalesced(ForTestProto.TestReq.getDefaultInstance()));
+        }
+        assertEquals(1, pool.size());
+        assertEquals(2, pool.outstanding());
+
+        // The single channel is saturated, then the second one
+        futures.add(stub.testCoalesced(ForTestProto.TestReq.getDefaultInstance()));
+        assertEquals(2, pool.size());
+        futures.add(stub.testCoalesced(ForTestProto.TestReq.getDefaultInstance()));
+        assertEquals(2, pool.size());
+        futures.add(stub.testCoalesced(ForTestProto.TestReq.getDefaultInstance()));
+        assertEquals(3, pool.size());
+        futures.add(stub.testCoalesced(ForTestProto.TestReq.getDefaultInstance()));
+
+        // At its maximum size the pool keeps the calls on the least loaded channel
+        futures.add(stub.testCoalesced(ForTestProto.TestReq.getDefaultInstance()));
+        assertEquals(3, pool.size());
+        assertEquals(7, pool.outstanding());
+        assertEquals(3, pool.saturations());
+
+        reply();
+        for (ListenableFuture<ForTestProto.TestRes> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(0, pool.outstanding());
+        assertEquals(3, created.size());
+
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(pool.isTerminated());
+    }
+
+    @Test
+    public void testFactory() {
+        GrpcBridgeToolChannel single = new GrpcBridgeToolChannelFactory().create("localhost:1",
+                Map.of());
+        GrpcBridgeToolChannel pooled = new GrpcBridgeToolChannelFactory().create("localhost:1",
+                Map.of("channelPoolSize", "2", "channelPoolMaxSize", "4"));
+        try {
+            assertFalse(single.channel() instanceof GrpcChannelPool);
+            assertEquals(2, ((GrpcChannelPool) pooled.channel()).size());
+        } finally {
+            single.channel().shutdownNow();
+            pooled.channel().shutdownNow();
+        }
+        assertThrows(IllegalArgumentException.class, () -> newPool(2, 1, 1));
+    }
+}
@@ -0,0 +1,113 @@
+package io.masterkun.ai.grpc.registry;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.ai.registry.BridgeToolChannelFactory;
+import io.masterkun.ai.registry.BridgeToolChannelHolder;
+import io.masterkun.ai.registry.BridgeToolChannelReaper;
+import io.masterkun.toolcall.proto.ForTestProto;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for reaping idle channels with {@link BridgeToolChannelReaper}, and for calls through
+ * a reaped channel.
+ */
+public class GrpcChannelReaperTest {
+
+    private final List<ManagedChannel> created = new ArrayList<>();
+    private final BridgeToolChannelReaper reaper = new BridgeToolChannelReaper();
+    private Server server;
+    private BridgeToolChannelFactory<GrpcBridgeToolChannel> factory;
+
+    @Before
+    public void setUp() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new ForTestServiceGrpc.ForTestServiceImplBase() {
+                    @Override
+                    public void testGet(ForTestProto.TestReq request,
+                                        StreamObserver<ForTestProto.TestRes> responseObserver) {
+                        responseObserver.onNext(ForTestProto.TestRes.newBuilder()
+                                .setMessage(request.getMessage())
+                                .build());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+        factory = (target, options) -> {
+            ManagedChannel channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+            created.add(channel);
+            return new GrpcBridgeToolChannel(channel);
+        };
+    }
+
+    @After
+    public void tearDown() {
+        reaper.close();
+        created.forEach(ManagedChannel::shutdownNow);
+        server.shutdownNow();
+    }
+
+    private static String call(GrpcBridgeToolHolderChannel channel, String message) {
+        return ForTestServiceGrpc.newBlockingStub(channel)
+                .testGet(ForTestProto.TestReq.newBuilder().setMessage(message).build())
+                .getMessage();
+    }
+
+    @Test
+    public void testReapAndReconnect() throws Exception {
+        var idle = new BridgeToolChannelHolder<>(factory, "idle", Map.of(), Duration.ZERO, reaper);
+        var busy = new BridgeToolChannelHolder<>(factory, "busy", Map.of(), Duration.ofHours(1),
+                reaper);
+        var channel = GrpcBridgeToolHolderChannel.of(idle);
+        assertEquals("a", call(channel, "a"));
+        busy.get();
+        assertEquals(new BridgeToolChannelReaper.Stats(2, 0, 0, 0, 0, Duration.ZERO, Duration.ZERO),
+                reaper.stats());
+
+        ManagedChannel first = idle.get().channel();
+        assertEquals(1, reaper.reap());
+        assertTrue(first.isShutdown());
+        assertFalse(idle.isLive());
+        assertTrue(busy.isLive());
+
+        // The next call creates the channel again
+        assertEquals("b", call(channel, "b"));
+        assertNotSame(first, idle.get().channel());
+        assertEquals(3, created.size());
+        BridgeToolChannelReaper.Stats stats = reaper.stats();
+        for (int i = 0; i < 100 && stats.maxReconnectLatency().isZero(); i++) {
+            Thread.sleep(10);
+            stats = reaper.stats();
+        }
+        assertEquals(2, stats.live());
+        assertEquals(1, stats.reaped());
+        assertEquals(1, stats.reconnects());
+        assertEquals(0, stats.failedReconnects());
+        assertFalse(stats.maxReconnectLatency().isZero());
+
+        // Closed holders are no longer reaped nor counted
+        idle.close();
+        busy.close();
+        assertEquals(0, reaper.reap());
+        assertEquals(0, reaper.stats().live());
+    }
+}
@@ -0,0 +1,162 @@
+package io.masterkun.ai.grpc.registry;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.masterkun.ai.registry.BridgeToolChannelHolder;
+import io.masterkun.ai.registry.MemoryBridgeToolRegistrationStore;
+import io.masterkun.toolcall.proto.ForTestProto;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for draining the in-flight calls of replaced registrations.
+ */
+public class GrpcRegistrationDrainTest {
+
+    private final Map<String, StreamObserver<ForTestProto.TestRes>> pending =
+            new ConcurrentHashMap<>();
+    private Server server;
+    private ManagedChannel managedChannel;
+    private BridgeToolChannelHolder<GrpcBridgeToolChannel> holder;
+
+    @Before
+    public void setUp() throws Exception {
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .directExecutor()
+                .addService(new ForTestServiceGrpc.ForTestServiceImplBase() {
+                    @Override
+                    public void testGet(ForTestProto.TestReq request,
+                                        StreamObserver<ForTestProto.TestRes> responseObserver) {
+                        // Answered by the test
+                        pending.put(request.getMessage(), responseObserver);
+                    }
+                })
+                .build()
+                .start();
+        managedChannel = InProcessChannelBuilder.forName(name).directExecutor().build();
+        holder = new BridgeToolChannelHolder<>((target, options) ->
+                new GrpcBridgeToolChannel(managedChannel), name, Map.of());
+    }
+
+    @After
+    public void tearDown() {
+        holder.close();
+        managedChannel.shutdownNow();
+        server.shutdownNow();
+    }
+
+    private static ListenableFuture<ForTestProto.TestRes> call(GrpcBridgeToolHolderChannel channel,
+                                                               String message) {
+        return ForTestServiceGrpc.newFutureStub(channel)
+                .testGet(ForTestProto.TestReq.newBuilder().setMessage(message).build());
+    }
+
+    private void answer(String message) {
+        StreamObserver<ForTestProto.TestRes> observer = pending.remove(message);
+        observer.onNext(ForTestProto.TestRes.newBuilder().setMessage(message).build());
+        observer.onCompleted();
+    }
+
+    @Test
+    public void testDrain() throws Exception {
+        GrpcBridgeToolHolderChannel channel = GrpcBridgeToolHolderChannel.of(holder);
+        var slow = call(channel, "slow");
+        var hang = call(channel, "hang");
+        var done = call(channel, "done");
+        answer("done");
+        assertEquals("done", done.get().getMessage());
+        assertEquals(2, channel.inFlightCalls());
+
+        Thread answerer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            answer("slow");
+        });
+        answerer.start();
+        // The slow call completes while draining, the hanging one is cancelled at the deadline
+        assertEquals(1, channel.drain(Duration.ofSeconds(1)));
+        answerer.join();
+        assertEquals("slow", slow.get().getMessage());
+        try {
+            hang.get(1, TimeUnit.SECONDS);
+            fail("Expected cancellation");
+        } catch (ExecutionException e) {
+            assertEquals(Status.Code.CANCELLED, Status.fromThrowable(e.getCause()).getCode());
+        }
+        assertEquals(0, channel.inFlightCalls());
+        // The shared channel itself keeps serving
+        assertFalse(managedChannel.isShutdown());
+    }
+
+    @Test
+    public void testClosedHolder() throws Exception {
+        // A retired holder of a shared channel, which stays live for the replacement
+        BridgeToolChannelHolder<GrpcBridgeToolChannel> retired = new BridgeToolChannelHolder<>(
+                (target, options) -> new GrpcBridgeToolChannel(managedChannel, () -> { }),
+                "retired", Map.of());
+        GrpcBridgeToolHolderChannel channel = GrpcBridgeToolHolderChannel.of(retired);
+        var before = call(channel, "before");
+        answer("before");
+        assertEquals("before", before.get().getMessage());
+        retired.close();
+        assertFalse(managedChannel.isShutdown());
+
+        var after = call(channel, "after");
+        try {
+            after.get(1, TimeUnit.SECONDS);
+            fail("Expected the call to fail");
+        } catch (ExecutionException e) {
+            assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(e.getCause()).getCode());
+        }
+        assertFalse(pending.containsKey("after"));
+        assertEquals(0, channel.inFlightCalls());
+    }
+
+    @Test
+    public void testSwap() throws Exception {
+        MemoryBridgeToolRegistrationStore store =
+                new MemoryBridgeToolRegistrationStore(Duration.ofSeconds(1));
+        GrpcBridgeToolRegistration old = new GrpcBridgeToolRegistration("test", "localhost:1");
+        GrpcBridgeToolRegistration replacement = new GrpcBridgeToolRegistration("test", "localhost:1");
+        store.add(old);
+        old.getChannelHolder().get();
+        store.update(replacement);
+        assertSame(replacement, store.get("test"));
+        store.remove("test");
+
+        MemoryBridgeToolRegistrationStore.Stats stats = store.stats();
+        for (int i = 0; i < 100 && stats.drained() < 2; i++) {
+            Thread.sleep(10);
+            stats = store.stats();
+        }
+        assertEquals(0, stats.draining());
+        assertEquals(2, stats.drained());
+        assertEquals(0, stats.abandonedCalls());
+        assertTrue(stats.maxDrainDuration().compareTo(Duration.ofSeconds(1)) < 0);
+        assertThrows(IllegalStateException.class, old.getChannelHolder()::get);
+    }
+}
@@ -0,0 +1,130 @@
+package io.masterkun.ai.grpc.registry;
+
+import com.google.protobuf.Descriptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.masterkun.ai.registry.BridgeToolChannelFactory;
+import io.masterkun.ai.registry.DefaultBridgeToolRegistry;
+import io.masterkun.ai.registry.MemoryBridgeToolRegistrationStore;
+import io.masterkun.toolcall.proto.ForTestServiceGrpc;
+import io.masterkun.toolcall.proto.TestDiscoveryProto;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for connecting and warming up registrations before they take calls, against an
+ * in-process server. Registrations targeting an unknown server name never get ready.
+ */
+public class GrpcRegistrationWarmUpTest {
+
+    private final List<ManagedChannel> created = new ArrayList<>();
+    private final BridgeToolChannelFactory<GrpcBridgeToolChannel> factory = (target, options) -> {
+        ManagedChannel channel = InProcessChannelBuilder.forName(target).build();
+        created.add(channel);
+        return new GrpcBridgeToolChannel(channel);
+    };
+    private Server server;
+    private String name;
+
+    @Before
+    public void setUp() throws Exception {
+        name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(new ForTestServiceGrpc.ForTestServiceImplBase() {
+                })
+                .build()
+                .start();
+    }
+
+    @After
+    public void tearDown() {
+        created.forEach(ManagedChannel::shutdownNow);
+        server.shutdownNow();
+    }
+
+    private GrpcBridgeToolRegistration registration(String target) {
+        GrpcBridgeToolRegistration registration = new GrpcBridgeToolRegistration("test", target,
+                Map.of(), factory);
+        Descriptors.FileDescriptor file = TestDiscoveryProto.getDescriptor();
+        registration.groupSet().reloadByAutoDiscovery(
+                Set.of(file.getServices().get(0).getFullName()), Map.of(file.getName(), file));
+        assertFalse(registration.groupSet().getGroups().isEmpty());
+        return registration;
+    }
+
+    @Test
+    public void testWhenReady() throws Exception {
+        GrpcBridgeToolChannel channel = factory.create(name, Map.of());
+        channel.whenReady().get(5, TimeUnit.SECONDS);
+
+        // Never ready if the server does not exist
+        GrpcBridgeToolChannel unknown = factory.create("unknown-" + name, Map.of());
+        assertThrows(TimeoutException.class,
+                () -> unknown.whenReady().get(200, TimeUnit.MILLISECONDS));
+
+        // Failed once the channel is shut down, also while waiting
+        var waiting = unknown.whenReady();
+        unknown.close();
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> waiting.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        channel.close();
+        e = assertThrows(ExecutionException.class,
+                () -> channel.whenReady().get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testRegistrationWarmUp() {
+        GrpcBridgeToolRegistration ready = registration(name);
+        assertTrue(ready.warmUp(Duration.ofSeconds(5), 2));
+        assertTrue(ready.getChannelHolder().isLive());
+
+        GrpcBridgeToolRegistration unready = registration("unknown-" + name);
+        long start = System.nanoTime();
+        assertFalse(unready.warmUp(Duration.ofMillis(200), 2));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        ready.close();
+        unready.close();
+    }
+
+    @Test
+    public void testRegistryWarmUp() {
+        MemoryBridgeToolRegistrationStore store = new MemoryBridgeToolRegistrationStore();
+        var registry = new DefaultBridgeToolRegistry(store, Duration.ofMillis(200), 1);
+
+        // Registered whether its channel gets ready in time or not
+        GrpcBridgeToolRegistration unready = registration("unknown-" + name);
+        registry.register(unready);
+        assertSame(unready, store.get("test"));
+        assertTrue(unready.getChannelHolder().isLive());
+
+        GrpcBridgeToolRegistration ready = registration(name);
+        registry.updateRegistration(ready);
+        assertSame(ready, store.get("test"));
+        assertTrue(ready.getChannelHolder().isLive());
+
+        // Without a timeout registrations are not warmed up, and connect on the first call
+        var lazy = new DefaultBridgeToolRegistry(new MemoryBridgeToolRegistrationStore());
+        GrpcBridgeToolRegistration cold = registration(name);
+        lazy.register(cold);
+        assertFalse(cold.getChannelHolder().isLive());
+    }
+}
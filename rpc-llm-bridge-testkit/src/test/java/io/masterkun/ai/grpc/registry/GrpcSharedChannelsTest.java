@@ -0,0 +1,103 @@
+package io.masterkun.ai.grpc.registry;
+
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.masterkun.ai.grpc.JSONUtils;
+import io.masterkun.ai.registry.BridgeToolChannelHolder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GrpcSharedChannels}.
+ */
+public class GrpcSharedChannelsTest {
+
+    private final GrpcSharedChannels sharedChannels = new GrpcSharedChannels();
+    private final List<ManagedChannel> created = new ArrayList<>();
+
+    private static GrpcChannelOptions options(Map<String, String> options) {
+        return JSONUtils.OBJECT_MAPPER.convertValue(options, GrpcChannelOptions.class);
+    }
+
+    private GrpcBridgeToolChannel acquire(String target, Map<String, String> options) {
+        return sharedChannels.acquire(target, options(options), () -> {
+            ManagedChannel channel = InProcessChannelBuilder.forName(target).build();
+            created.add(channel);
+            return channel;
+        });
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals(GrpcSharedChannels.normalize(options(Map.of())),
+                GrpcSharedChannels.normalize(options(Map.of("channelPoolSize", "1",
+                        "resultFormat", "JSON", "defaultCacheTtl", "PT5M"))));
+        assertNotEquals(GrpcSharedChannels.normalize(options(Map.of())),
+                GrpcSharedChannels.normalize(options(Map.of("keepAliveTime", "PT30S"))));
+    }
+
+    @Test
+    public void testShare() {
+        GrpcBridgeToolChannel tenant1 = acquire("backend", Map.of("resultFormat", "TABLE"));
+        GrpcBridgeToolChannel tenant2 = acquire("backend", Map.of("resultFormat", "JSON"));
+        GrpcBridgeToolChannel other = acquire("backend", Map.of("maxInboundMessageSize", "1024"));
+        GrpcBridgeToolChannel otherTarget = acquire("other", Map.of());
+        assertSame(tenant1.channel(), tenant2.channel());
+        assertNotSame(tenant1.channel(), other.channel());
+        assertNotSame(tenant1.channel(), otherTarget.channel());
+        assertEquals(3, sharedChannels.size());
+        assertEquals(4, sharedChannels.references());
+
+        // Released twice by the same holder, the channel is still in use by the other one
+        tenant1.close();
+        tenant1.close();
+        assertFalse(tenant2.channel().isShutdown());
+        assertEquals(3, sharedChannels.references());
+        tenant2.close();
+        assertTrue(tenant2.channel().isShutdown());
+        assertEquals(2, sharedChannels.size());
+
+        // A new holder gets a new channel
+        GrpcBridgeToolChannel again = acquire("backend", Map.of());
+        assertNotSame(tenant1.channel(), again.channel());
+        assertEquals(4, created.size());
+        again.close();
+        other.close();
+        otherTarget.close();
+        assertEquals(0, sharedChannels.size());
+        created.forEach(channel -> assertTrue(channel.isShutdown()));
+    }
+
+    @Test
+    public void testHolder() {
+        GrpcBridgeToolChannelFactory factory = new GrpcBridgeToolChannelFactory(sharedChannels);
+        var holder1 = new BridgeToolChannelHolder<>(factory, "localhost:1", Map.of());
+        var holder2 = new BridgeToolChannelHolder<>(factory, "localhost:1",
+                Map.<String, String>of("resultFormat", "JSON"));
+        var unshared = new BridgeToolChannelHolder<>(factory, "localhost:1",
+                Map.of("shareChannel", "false"));
+        ManagedChannel shared = holder1.get().channel();
+        assertSame(shared, holder2.get().channel());
+        assertNotSame(shared, unshared.get().channel());
+        assertEquals(1, sharedChannels.size());
+        ManagedChannel own = unshared.get().channel();
+        holder1.close();
+        holder2.close();
+        unshared.close();
+        assertEquals(0, sharedChannels.size());
+        assertTrue(shared.isShutdown());
+        assertTrue(own.isShutdown());
+        assertThrows(IllegalStateException.class, holder1::get);
+    }
+}